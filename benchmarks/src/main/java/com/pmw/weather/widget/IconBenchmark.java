@@ -0,0 +1,65 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pmw.weather.widget;
+
+import java.awt.Image;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The icon lookup behind WeatherWidgetFrame.setIconTemperature. The call to
+ * TrayIcon.setImage is left out since it needs a desktop session, so this
+ * runs on headless machines. Temperatures cycle through a realistic daily
+ * range so the cached case sees the same mix of hits as the tray.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class IconBenchmark {
+
+	private static final int RANGE = 25;
+
+	private final TemperatureIcons cached = new TemperatureIcons();
+	private final TemperatureIcons uncached = new TemperatureIcons(0);
+	private long temperature = 60;
+
+	private Long nextTemperature() {
+		temperature = 60 + (temperature - 59) % RANGE;
+		return temperature;
+	}
+
+	@Benchmark
+	public Image cachedIcon() {
+		return cached.get(nextTemperature());
+	}
+
+	@Benchmark
+	public Image renderedIcon() {
+		return uncached.get(nextTemperature());
+	}
+}
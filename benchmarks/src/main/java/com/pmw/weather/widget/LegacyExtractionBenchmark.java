@@ -0,0 +1,66 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pmw.weather.widget;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The line-at-a-time value extraction that WeatherWidget used before the
+ * streaming parser, one field per call, on lines taken from the recorded
+ * payloads.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LegacyExtractionBenchmark {
+
+	private final String jsonLine = Payloads.OPENWEATHERMAP_JSON.trim();
+	private final String xmlLine = Payloads.line(Payloads.WEATHER_GOV_XML, "<temp_f>").trim();
+	private final String pipeLine = Payloads.line(Payloads.PIPE_TEXT, "current_wx|").trim();
+
+	@Benchmark
+	public String jsonValue() {
+		return WeatherWidget.getJSONValue(jsonLine, "main");
+	}
+
+	@Benchmark
+	public double jsonDouble() {
+		return WeatherWidget.getJSONDouble(jsonLine, "temp");
+	}
+
+	@Benchmark
+	public String xmlValue() {
+		return WeatherWidget.getXMLValue(xmlLine, "<temp_f>");
+	}
+
+	@Benchmark
+	public String weatherValue() {
+		return WeatherWidget.getWeatherValue(pipeLine, "current_wx|");
+	}
+}
@@ -0,0 +1,362 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadInfo;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drives the polling engine against a {@link StubWeatherServer} across many
+ * simulated locations and reports sustained polls per second, poll latency
+ * percentiles, allocation and GC activity and heap use. Each round polls
+ * every location at once, as the engine does when they are all due, and the
+ * next round starts as soon as the last one has been published.
+ *
+ *     java -cp target/benchmarks.jar com.pmw.weather.widget.LoadTest --locations=500 --errors=0.01
+ *
+ * Results can be written as JSON with --out and compared with an earlier run
+ * with --baseline, so the effect of a commit can be measured with the same
+ * settings before and after it.
+ */
+public class LoadTest {
+
+	private static final String USAGE = "Options, with defaults:\n"
+			+ "  --locations=300       simulated locations\n"
+			+ "  --formats=json,xml,pipe  payload formats, assigned to locations in turn\n"
+			+ "  --warmup=5            seconds polled before measuring\n"
+			+ "  --duration=30         seconds measured\n"
+			+ "  --latency=20          stub response delay in ms\n"
+			+ "  --jitter=10           extra random delay up to this many ms\n"
+			+ "  --rate=0              requests per second the stub answers before 429s, 0 for no limit\n"
+			+ "  --errors=0            fraction of requests answered with 503\n"
+			+ "  --drip=0              fraction of bodies sent slowly\n"
+			+ "  --drip-chunk=256      bytes per write of a slow body\n"
+			+ "  --drip-delay=10       ms between writes of a slow body\n"
+			+ "  --oversize=0          fraction of bodies padded out\n"
+			+ "  --oversize-bytes=1048576  size of a padded body\n"
+			+ "  --seed=1              random seed of the stub\n"
+			+ "  --properties=FILE     widget settings for the engine, such as fetchDeadline\n"
+			+ "  --out=FILE            write the results as JSON\n"
+			+ "  --baseline=FILE       compare with results written earlier\n";
+
+	private static final Pattern NUMBER_FIELD = Pattern.compile("\"(\\w+)\":\\s*(-?[0-9.eE+-]+)");
+
+	public static void main(String[] args) throws Exception {
+		Map<String,String> options = new LinkedHashMap<String,String>();
+		for (String arg : args) {
+			if (!arg.startsWith("--")) usage("Unexpected argument " + arg);
+			int eq = arg.indexOf('=');
+			options.put(eq > 0 ? arg.substring(2, eq) : arg.substring(2), eq > 0 ? arg.substring(eq + 1) : "");
+		}
+		if (options.containsKey("help")) usage(null);
+
+		StubWeatherServer.Settings stub = new StubWeatherServer.Settings();
+		int locationCount;
+		String[] formats;
+		long warmup;
+		long duration;
+		try {
+			locationCount = Integer.parseInt(options.getOrDefault("locations", "300"));
+			formats = options.getOrDefault("formats", "json,xml,pipe").split(",");
+			warmup = Long.parseLong(options.getOrDefault("warmup", "5"));
+			duration = Long.parseLong(options.getOrDefault("duration", "30"));
+			stub.latencyMillis = Long.parseLong(options.getOrDefault("latency", "20"));
+			stub.jitterMillis = Long.parseLong(options.getOrDefault("jitter", "10"));
+			stub.maxRequestsPerSecond = Integer.parseInt(options.getOrDefault("rate", "0"));
+			stub.errorRate = Double.parseDouble(options.getOrDefault("errors", "0"));
+			stub.dripRate = Double.parseDouble(options.getOrDefault("drip", "0"));
+			stub.dripChunk = Integer.parseInt(options.getOrDefault("drip-chunk", "256"));
+			stub.dripDelayMillis = Long.parseLong(options.getOrDefault("drip-delay", "10"));
+			stub.oversizeRate = Double.parseDouble(options.getOrDefault("oversize", "0"));
+			stub.oversizeBytes = Integer.parseInt(options.getOrDefault("oversize-bytes", "1048576"));
+			stub.seed = Long.parseLong(options.getOrDefault("seed", "1"));
+		}
+		catch (NumberFormatException ex) {
+			usage("Invalid number: " + ex.getMessage());
+			return;
+		}
+
+		Properties props = new Properties();
+		String propertiesFile = options.get("properties");
+		if (propertiesFile != null) {
+			try (Reader in = Files.newBufferedReader(Paths.get(propertiesFile), StandardCharsets.UTF_8)) {
+				props.load(in);
+			}
+		}
+
+		StubWeatherServer server = new StubWeatherServer(stub);
+		server.start();
+		try {
+			Map<String,Object> results = run(server, props, locationCount, formats, warmup, duration);
+			Map<String,Object> report = new LinkedHashMap<String,Object>();
+			report.put("commit", commit());
+			report.put("java", System.getProperty("java.version"));
+			report.put("processors", Runtime.getRuntime().availableProcessors());
+			report.put("settings", options);
+			report.put("results", results);
+
+			print(results);
+			String baseline = options.get("baseline");
+			if (baseline != null) compare(results, Paths.get(baseline));
+			String out = options.get("out");
+			if (out != null) {
+				Files.write(Paths.get(out), toJSON(report).getBytes(StandardCharsets.UTF_8));
+				System.out.println("Results written to " + out);
+			}
+		}
+		finally {
+			server.stop();
+		}
+	}
+
+	private static void usage(String error) {
+		if (error != null) System.err.println(error);
+		System.err.print(USAGE);
+		System.exit(error != null ? 2 : 0);
+	}
+
+	private static Map<String,Object> run(StubWeatherServer server, Properties props, int locationCount, String[] formats,
+			long warmup, long duration) {
+		List<Location> locations = new ArrayList<Location>();
+		for (int i = 1; i <= locationCount; i++) {
+			String format = formats[(i - 1) % formats.length].trim();
+			locations.add(new Location(i, format + " " + i, server.url(format, i)));
+		}
+		PollingEngine engine = new PollingEngine(locations, props);
+		Recorder recorder = new Recorder();
+		engine.addListener(recorder);
+
+		System.out.println("Polling " + locationCount + " locations: " + warmup + " s warmup, " + duration + " s measured");
+		poll(engine, recorder, warmup * 1_000_000_000L);
+
+		// Measure from a collected heap, with fresh counters
+		System.gc();
+		recorder.reset();
+		long requestsBefore = server.getRequests();
+		long bytesBefore = server.getBytesSent();
+		AllocationMeter allocation = new AllocationMeter();
+		long gcCountBefore = gcCount();
+		long gcTimeBefore = gcTime();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) pool.resetPeakUsage();
+
+		long start = System.nanoTime();
+		long rounds = poll(engine, recorder, duration * 1_000_000_000L);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long allocated = allocation.allocated();
+		long gcCount = gcCount() - gcCountBefore;
+		long gcTime = gcTime() - gcTimeBefore;
+		long peakHeap = peakHeap();
+		System.gc();
+		long heapAfterGc = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		engine.shutdown();
+
+		long polls = recorder.successes.sum() + recorder.failures.sum();
+		LatencySummary latency = recorder.latency.summarize();
+		Map<String,Object> results = new LinkedHashMap<String,Object>();
+		results.put("seconds", seconds);
+		results.put("rounds", rounds);
+		results.put("polls", polls);
+		results.put("successes", recorder.successes.sum());
+		results.put("failures", recorder.failures.sum());
+		results.put("pollsPerSecond", polls / seconds);
+		results.put("requests", server.getRequests() - requestsBefore);
+		results.put("bytesReceivedPerSecond", (server.getBytesSent() - bytesBefore) / seconds);
+		results.put("latencyMeanMillis", latency.getMean());
+		results.put("latencyP50Millis", latency.getP50());
+		results.put("latencyP90Millis", latency.getP90());
+		results.put("latencyP99Millis", latency.getP99());
+		results.put("latencyMaxMillis", latency.getMax());
+		results.put("allocatedBytesPerPoll", polls > 0 ? (double) allocated / polls : 0.0);
+		results.put("allocatedBytesPerSecond", allocated / seconds);
+		results.put("gcCount", gcCount);
+		results.put("gcTimeMillis", gcTime);
+		results.put("peakHeapBytes", peakHeap);
+		results.put("heapAfterGcBytes", heapAfterGc);
+		return results;
+	}
+
+	/** Polls every location in rounds until <code>nanos</code> have passed, returning the rounds run */
+	private static long poll(PollingEngine engine, Recorder recorder, long nanos) {
+		long end = System.nanoTime() + nanos;
+		long rounds = 0;
+		while (System.nanoTime() < end) {
+			recorder.roundStart = System.nanoTime();
+			engine.poll();
+			rounds++;
+		}
+		return rounds;
+	}
+
+	/** Counts outcomes and records each location's latency from the start of its round */
+	private static final class Recorder implements ObservationListener {
+		volatile long roundStart;
+		volatile LatencyHistogram latency = new LatencyHistogram();
+		final LongAdder successes = new LongAdder();
+		final LongAdder failures = new LongAdder();
+
+		void reset() {
+			latency = new LatencyHistogram();
+			successes.reset();
+			failures.reset();
+		}
+
+		@Override
+		public void observationUpdated(Location location, Observation observation) {
+			latency.recordNanos(System.nanoTime() - roundStart);
+			successes.increment();
+		}
+
+		@Override
+		public void pollFailed(Location location, Throwable cause) {
+			latency.recordNanos(System.nanoTime() - roundStart);
+			failures.increment();
+		}
+	}
+
+	/**
+	 * Bytes allocated by every thread except the stub server's since the meter
+	 * was made. Threads that end before {@link #allocated()} are not counted,
+	 * which the engine's pooled threads rarely do within a run.
+	 */
+	private static final class AllocationMeter {
+		private final com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		private final Map<Long,Long> start = new HashMap<Long,Long>();
+
+		AllocationMeter() {
+			for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+				if (info != null && counted(info)) start.put(info.getThreadId(), threads.getThreadAllocatedBytes(info.getThreadId()));
+			}
+		}
+
+		long allocated() {
+			long total = 0;
+			for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+				if (info == null || !counted(info)) continue;
+				long bytes = threads.getThreadAllocatedBytes(info.getThreadId());
+				if (bytes >= 0) total += bytes - start.getOrDefault(info.getThreadId(), 0L);
+			}
+			return total;
+		}
+
+		private static boolean counted(ThreadInfo info) {
+			String name = info.getThreadName();
+			return !name.startsWith("stub-") && !name.startsWith("HTTP-Dispatcher");
+		}
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) count += Math.max(0, gc.getCollectionCount());
+		return count;
+	}
+
+	private static long gcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) time += Math.max(0, gc.getCollectionTime());
+		return time;
+	}
+
+	private static long peakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) peak += pool.getPeakUsage().getUsed();
+		}
+		return peak;
+	}
+
+	/** The abbreviated commit of the working directory, or null outside a git checkout */
+	private static String commit() {
+		try {
+			Process git = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+			String out = new String(git.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+			return git.waitFor() == 0 && !out.isEmpty() ? out : null;
+		}
+		catch (IOException ex) {
+			return null;
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	private static void print(Map<String,Object> results) {
+		System.out.println(String.format(Locale.ROOT, "%,.0f polls/s over %.1f s (%d polls, %d failed)",
+				results.get("pollsPerSecond"), results.get("seconds"), results.get("polls"), results.get("failures")));
+		System.out.println(String.format(Locale.ROOT, "latency ms: mean %.1f  p50 %.1f  p90 %.1f  p99 %.1f  max %.1f",
+				results.get("latencyMeanMillis"), results.get("latencyP50Millis"), results.get("latencyP90Millis"),
+				results.get("latencyP99Millis"), results.get("latencyMaxMillis")));
+		System.out.println(String.format(Locale.ROOT, "allocation: %,.0f B/poll, %,.1f MB/s; GC: %d collections, %d ms",
+				results.get("allocatedBytesPerPoll"), (Double) results.get("allocatedBytesPerSecond") / 1e6,
+				results.get("gcCount"), results.get("gcTimeMillis")));
+		System.out.println(String.format(Locale.ROOT, "heap: peak %,.1f MB, %,.1f MB after GC",
+				(Long) results.get("peakHeapBytes") / 1e6, (Long) results.get("heapAfterGcBytes") / 1e6));
+	}
+
+	/** Prints each result next to its value in a results file from an earlier run */
+	private static void compare(Map<String,Object> results, Path file) throws IOException {
+		String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+		int start = json.indexOf("\"results\"");
+		Map<String,Double> baseline = new HashMap<String,Double>();
+		Matcher m = NUMBER_FIELD.matcher(start >= 0 ? json.substring(start) : json);
+		while (m.find()) baseline.put(m.group(1), Double.parseDouble(m.group(2)));
+
+		System.out.println("Compared with " + file + ":");
+		for (Map.Entry<String,Object> e : results.entrySet()) {
+			Double before = baseline.get(e.getKey());
+			if (before == null) continue;
+			double now = ((Number) e.getValue()).doubleValue();
+			String change = before != 0 ? String.format(Locale.ROOT, "%+.1f%%", (now - before) / before * 100) : "";
+			System.out.println(String.format(Locale.ROOT, "  %-24s %14.1f %14.1f  %s", e.getKey(), before, now, change));
+		}
+	}
+
+	private static String toJSON(Map<?,?> map) {
+		StringBuilder sb = new StringBuilder("{");
+		boolean first = true;
+		for (Map.Entry<?,?> e : map.entrySet()) {
+			if (!first) sb.append(',');
+			first = false;
+			sb.append("\n  \"").append(e.getKey()).append("\": ");
+			Object value = e.getValue();
+			if (value instanceof Map) sb.append(toJSON((Map<?,?>) value).replace("\n", "\n  "));
+			else if (value instanceof Number || value == null) sb.append(value);
+			else sb.append('"').append(value.toString().replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+		}
+		return sb.append("\n}").toString();
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pmw.weather.widget;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Recorded responses in each format the parser understands, as served by the
+ * providers.
+ */
+final class Payloads {
+
+	static final String OPENWEATHERMAP_JSON = load("openweathermap.json");
+	static final String WEATHER_GOV_XML = load("weather-gov.xml");
+	static final String PIPE_TEXT = load("conditions.txt");
+
+	private Payloads() {}
+
+	static String get(String format) {
+		switch (format) {
+		case "json": return OPENWEATHERMAP_JSON;
+		case "xml": return WEATHER_GOV_XML;
+		case "pipe": return PIPE_TEXT;
+		default: throw new IllegalArgumentException("Unknown payload format " + format);
+		}
+	}
+
+	/** The first line of a payload that contains <code>text</code> */
+	static String line(String payload, String text) {
+		for (String line : payload.split("\n")) {
+			if (line.contains(text)) return line;
+		}
+		throw new IllegalArgumentException("No line containing " + text);
+	}
+
+	private static String load(String name) {
+		try (InputStream in = Payloads.class.getResourceAsStream("/payloads/" + name)) {
+			if (in == null) throw new IllegalStateException("Missing payload " + name);
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pmw.weather.widget;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The work done for each location on every poll once the response has
+ * arrived: parsing the body into an observation and building the tooltip
+ * text from it.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PollBenchmark {
+
+	@Param({ "json", "xml", "pipe" })
+	public String format;
+
+	private final Location location = new Location(1, "Home", "http://localhost/conditions");
+	private ObservationParser parser;
+	private final ToolTipFormatter formatter = new ToolTipFormatter();
+	private String payload;
+	private Observation observation;
+
+	@Setup
+	public void setUp() throws IOException {
+		payload = Payloads.get(format);
+		parser = new WeatherProviders().forContent(payload).newParser();
+		// Fail fast rather than measure a parse that throws
+		observation = parser.parse(new StringReader(payload));
+	}
+
+	@Benchmark
+	public Observation parse() throws IOException {
+		return parser.parse(new StringReader(payload));
+	}
+
+	@Benchmark
+	public String format() {
+		return formatter.format(location, observation, 0);
+	}
+
+	@Benchmark
+	public String parseAndFormat() throws IOException {
+		return formatter.format(location, parser.parse(new StringReader(payload)), 0);
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server replaying the recorded payloads, so the polling pipeline
+ * can be driven hard without touching a real provider. Location N is served
+ * at /json/N, /xml/N and /pipe/N with the Content-Type the provider uses.
+ *
+ * Latency, a request rate limit, errors, slowly dripped bodies and oversized
+ * bodies can be injected. Which requests are affected is drawn from a seeded
+ * random, so a run with the same settings sees the same mix. Every response
+ * is sent with Cache-Control: no-store so that each poll is a real fetch.
+ * Its threads are named stub-N so they can be told apart from the widget's.
+ */
+final class StubWeatherServer {
+
+	private static final String[] FORMATS = { "json", "xml", "pipe" };
+	private static final String[] CONTENT_TYPES = {
+		"application/json; charset=utf-8", "text/xml; charset=utf-8", "text/plain; charset=utf-8"
+	};
+
+	static final class Settings {
+		long latencyMillis = 20;
+		long jitterMillis = 10;
+		/** Requests answered per second before the rest get 429, or 0 for no limit */
+		int maxRequestsPerSecond;
+		/** Fraction of requests answered with 503 */
+		double errorRate;
+		/** Fraction of responses sent dripChunk bytes at a time, dripDelayMillis apart */
+		double dripRate;
+		int dripChunk = 256;
+		long dripDelayMillis = 10;
+		/** Fraction of responses padded out to oversizeBytes */
+		double oversizeRate;
+		int oversizeBytes = 1 << 20;
+		long seed = 1;
+	}
+
+	private final Settings settings;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final SplittableRandom random;
+
+	private final byte[][] payloads = new byte[3][];
+	private final byte[][] oversized = new byte[3][];
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong throttled = new AtomicLong();
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	private long windowStart;
+	private int windowRequests;
+
+	StubWeatherServer(Settings settings) throws IOException {
+		this.settings = settings;
+		this.random = new SplittableRandom(settings.seed);
+		for (int f = 0; f < FORMATS.length; f++) {
+			String payload = Payloads.get(FORMATS[f]);
+			payloads[f] = payload.getBytes(StandardCharsets.UTF_8);
+			oversized[f] = pad(FORMATS[f], payload, settings.oversizeBytes).getBytes(StandardCharsets.UTF_8);
+		}
+		AtomicInteger threadCount = new AtomicInteger();
+		executor = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "stub-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+	}
+
+	/**
+	 * Pads a payload to about <code>size</code> bytes with a field the parsers
+	 * skip, placed where they still have to read past it.
+	 */
+	private static String pad(String format, String payload, int size) {
+		String filler = "x".repeat(Math.max(0, size - payload.length()));
+		switch (format) {
+		case "json":
+			return "{\"padding\":\"" + filler + "\"," + payload.substring(payload.indexOf('{') + 1);
+		case "xml":
+			int close = payload.lastIndexOf("</");
+			return payload.substring(0, close) + "<padding>" + filler + "</padding>\n" + payload.substring(close);
+		default:
+			return "padding|" + filler + "\n" + payload;
+		}
+	}
+
+	void start() {
+		server.start();
+	}
+
+	void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/** URL of location <code>index</code> in a format: json, xml or pipe */
+	String url(String format, int index) {
+		InetSocketAddress address = server.getAddress();
+		return "http://" + address.getHostString() + ":" + address.getPort() + "/" + format + "/" + index;
+	}
+
+	long getRequests() { return requests.get(); }
+
+	long getErrors() { return errors.get(); }
+
+	long getThrottled() { return throttled.get(); }
+
+	long getBytesSent() { return bytesSent.get(); }
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			requests.incrementAndGet();
+			String path = exchange.getRequestURI().getPath();
+			int f = format(path);
+			if (f < 0) {
+				send(exchange, 404, "text/plain", "Not found\n".getBytes(StandardCharsets.UTF_8), false);
+				return;
+			}
+
+			double errorDraw, dripDraw, oversizeDraw;
+			long delay;
+			synchronized (random) {
+				errorDraw = random.nextDouble();
+				dripDraw = random.nextDouble();
+				oversizeDraw = random.nextDouble();
+				delay = settings.latencyMillis + (settings.jitterMillis > 0 ? random.nextLong(settings.jitterMillis + 1) : 0);
+			}
+			if (delay > 0) TimeUnit.MILLISECONDS.sleep(delay);
+
+			if (!admit()) {
+				throttled.incrementAndGet();
+				send(exchange, 429, "text/plain", "Too many requests\n".getBytes(StandardCharsets.UTF_8), false);
+			}
+			else if (errorDraw < settings.errorRate) {
+				errors.incrementAndGet();
+				send(exchange, 503, "text/plain", "Injected error\n".getBytes(StandardCharsets.UTF_8), false);
+			}
+			else {
+				byte[] body = oversizeDraw < settings.oversizeRate ? oversized[f] : payloads[f];
+				send(exchange, 200, CONTENT_TYPES[f], body, dripDraw < settings.dripRate);
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		catch (IOException ex) {
+			// The client gave up, e.g. on a request timeout
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	private static int format(String path) {
+		for (int f = 0; f < FORMATS.length; f++) {
+			if (path.startsWith("/" + FORMATS[f] + "/")) return f;
+		}
+		return -1;
+	}
+
+	/** Fixed one second windows, which is all the precision a stub needs */
+	private synchronized boolean admit() {
+		if (settings.maxRequestsPerSecond <= 0) return true;
+		long now = System.nanoTime();
+		if (now - windowStart >= 1_000_000_000L) {
+			windowStart = now;
+			windowRequests = 0;
+		}
+		return ++windowRequests <= settings.maxRequestsPerSecond;
+	}
+
+	private void send(HttpExchange exchange, int status, String contentType, byte[] body, boolean drip)
+			throws IOException, InterruptedException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.getResponseHeaders().set("Cache-Control", "no-store");
+		exchange.sendResponseHeaders(status, drip ? 0 : body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			if (!drip) {
+				out.write(body);
+			}
+			else {
+				for (int off = 0; off < body.length; off += settings.dripChunk) {
+					out.write(body, off, Math.min(settings.dripChunk, body.length - off));
+					out.flush();
+					TimeUnit.MILLISECONDS.sleep(settings.dripDelayMillis);
+				}
+			}
+		}
+		bytesSent.addAndGet(body.length);
+	}
+}
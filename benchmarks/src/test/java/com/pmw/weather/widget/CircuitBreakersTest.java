@@ -0,0 +1,112 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pmw.weather.widget;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that only the probe a half-open server handed out decides whether
+ * it closes or opens again.
+ */
+class CircuitBreakersTest {
+
+	private static final URI PRIMARY = URI.create("http://primary.example/conditions");
+	private static final URI ALTERNATE = URI.create("http://alternate.example/conditions");
+
+	private static CircuitBreakers.Breaker openBreaker(CircuitBreakers breakers, long now) {
+		CircuitBreakers.Breaker breaker = breakers.get(PRIMARY);
+		for (int i = 0; i < 5; i++) breaker.record(false, 0, now);
+		assertEquals(CircuitBreakers.State.OPEN, breaker.getState());
+		return breaker;
+	}
+
+	private static CircuitBreakers newBreakers() {
+		Properties props = new Properties();
+		props.setProperty("failoverCooldown", "60");
+		props.setProperty("failoverProbes", "2");
+		return new CircuitBreakers(props);
+	}
+
+	@Test
+	void ignoresOtherRequestsWhileProbing() {
+		CircuitBreakers breakers = newBreakers();
+		long now = 1_000_000;
+		CircuitBreakers.Breaker breaker = openBreaker(breakers, now);
+		now += 60_000;
+		assertTrue(breaker.isWaitingForProbe(now));
+		long probe = breaker.tryProbe(now);
+		assertNotEquals(0, probe);
+		assertFalse(breaker.isWaitingForProbe(now));
+		assertEquals(0, breaker.tryProbe(now));
+
+		// Another location's request to the same server fails while the probe is out
+		breaker.record(false, 0, now);
+		assertEquals(CircuitBreakers.State.HALF_OPEN, breaker.getState());
+		assertFalse(breaker.isWaitingForProbe(now));
+
+		breaker.record(probe, true, 0, now);
+		assertEquals(CircuitBreakers.State.HALF_OPEN, breaker.getState());
+		assertTrue(breaker.isWaitingForProbe(now));
+		breaker.record(false, 0, now);
+		breaker.record(breaker.tryProbe(now), true, 0, now);
+		assertEquals(CircuitBreakers.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	void ignoresAProbeFromBeforeTheServerOpenedAgain() {
+		CircuitBreakers breakers = newBreakers();
+		long now = 1_000_000;
+		CircuitBreakers.Breaker breaker = openBreaker(breakers, now);
+		now += 60_000;
+		long first = breaker.tryProbe(now);
+		breaker.record(first, false, 0, now);
+		assertEquals(CircuitBreakers.State.OPEN, breaker.getState());
+
+		// A duplicate report of the failed probe doesn't reopen the next probe period
+		now += 120_000;
+		long second = breaker.tryProbe(now);
+		assertNotEquals(first, second);
+		breaker.record(first, false, 0, now);
+		assertEquals(CircuitBreakers.State.HALF_OPEN, breaker.getState());
+		breaker.record(second, true, 0, now);
+		assertEquals(CircuitBreakers.State.HALF_OPEN, breaker.getState());
+	}
+
+	@Test
+	void choosesAServerWaitingForAProbeWithoutClaimingIt() {
+		CircuitBreakers breakers = newBreakers();
+		long now = 1_000_000;
+		CircuitBreakers.Breaker breaker = openBreaker(breakers, now);
+		URI[] alternates = { ALTERNATE };
+		assertEquals(1, breakers.choose(PRIMARY, alternates, 0, now));
+		now += 60_000;
+		assertEquals(0, breakers.choose(PRIMARY, alternates, 0, now));
+		assertEquals(0, breakers.choose(PRIMARY, alternates, 0, now));
+		assertNotEquals(0, breaker.tryProbe(now));
+		assertEquals(1, breakers.choose(PRIMARY, alternates, 0, now));
+		assertEquals(-1, breakers.choose(PRIMARY, alternates, 2, now));
+	}
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pmw.weather.widget;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round-trips records through the block encoding of {@link HistoryArchive}
+ * and through archive files built from a {@link HistoryFile}.
+ */
+class HistoryArchiveTest {
+
+	private static final int COLUMNS = 6;
+	private static final long START = 1718985600000L;
+	private static final long MINUTE = 60000;
+
+	@TempDir
+	File dir;
+
+	private static double[][] columns(int count) {
+		return new double[COLUMNS][count];
+	}
+
+	private static void assertRoundTrip(long[] times, double[][] columns, int count) {
+		byte[] out = new byte[HistoryArchive.BLOCK_RECORDS * 64];
+		int length = HistoryArchive.encode(times, columns, count, out);
+		long[] decodedTimes = new long[count];
+		double[][] decoded = columns(count);
+		HistoryArchive.decode(out, count, times[0], decodedTimes, decoded);
+		for (int i = 0; i < count; i++) {
+			assertEquals(times[i], decodedTimes[i], "time " + i);
+			for (int c = 0; c < COLUMNS; c++) {
+				assertEquals(Double.doubleToLongBits(columns[c][i]), Double.doubleToLongBits(decoded[c][i]),
+						"column " + c + " of record " + i + " of " + length + " bytes");
+			}
+		}
+	}
+
+	@Test
+	void encodesSteadyReadingsCompactly() {
+		int count = HistoryArchive.BLOCK_RECORDS;
+		long[] times = new long[count];
+		double[][] columns = columns(count);
+		for (int i = 0; i < count; i++) {
+			times[i] = START + i * MINUTE;
+			for (int c = 0; c < COLUMNS; c++) columns[c][i] = 50 + c;
+		}
+		assertRoundTrip(times, columns, count);
+		// One byte per time after the second, and per repeated value after the first
+		int length = HistoryArchive.encode(times, columns, count, new byte[count * 64]);
+		assertTrue(length < count * (1 + COLUMNS) + 64, length + " bytes");
+	}
+
+	@Test
+	void roundTripsSingleAndPairedRecords() {
+		long[] times = { START, START + MINUTE };
+		double[][] columns = columns(2);
+		for (int c = 0; c < COLUMNS; c++) {
+			columns[c][0] = c - 2.5;
+			columns[c][1] = -c;
+		}
+		assertRoundTrip(times, columns, 1);
+		assertRoundTrip(times, columns, 2);
+	}
+
+	@Test
+	void roundTripsNaNAndSpecialValues() {
+		double[] values = {
+			Double.NaN, Double.NaN, 68.5, Double.NaN, -0.0, 0.0, Double.POSITIVE_INFINITY,
+			Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, 68.5
+		};
+		long[] times = new long[values.length];
+		double[][] columns = columns(values.length);
+		for (int i = 0; i < values.length; i++) {
+			times[i] = START + i * MINUTE;
+			for (int c = 0; c < COLUMNS; c++) columns[c][i] = values[(i + c) % values.length];
+		}
+		assertRoundTrip(times, columns, values.length);
+	}
+
+	@Test
+	void roundTripsEqualAndOutOfOrderTimes() {
+		long[] times = {
+			START, START, START, START + MINUTE, START - MINUTE, START + 5 * MINUTE, START + 5 * MINUTE,
+			0, Long.MAX_VALUE, Long.MIN_VALUE, -1, START
+		};
+		double[][] columns = columns(times.length);
+		for (int i = 0; i < times.length; i++) {
+			for (int c = 0; c < COLUMNS; c++) columns[c][i] = i * 0.1 + c;
+		}
+		assertRoundTrip(times, columns, times.length);
+	}
+
+	@Test
+	void roundTripsRandomBlocks() {
+		SplittableRandom random = new SplittableRandom(7);
+		int count = HistoryArchive.BLOCK_RECORDS;
+		long[] times = new long[count];
+		double[][] columns = columns(count);
+		for (int block = 0; block < 20; block++) {
+			long time = random.nextLong();
+			for (int i = 0; i < count; i++) {
+				// Mostly steady, with gaps, repeats and jumps back
+				int kind = random.nextInt(10);
+				time += kind < 6 ? MINUTE : kind < 8 ? random.nextLong(0, 86400000) : kind < 9 ? 0 : -random.nextLong(0, 3600000);
+				times[i] = time;
+				for (int c = 0; c < COLUMNS; c++) {
+					int value = random.nextInt(10);
+					columns[c][i] = value < 4 && i > 0 ? columns[c][i - 1]
+							: value < 5 ? Double.NaN
+							: value < 9 ? Math.round(random.nextDouble(-100, 1100) * 100) / 100.0
+							: Double.longBitsToDouble(random.nextLong());
+				}
+			}
+			assertRoundTrip(times, columns, count);
+		}
+	}
+
+	private static double reading(int i, int column) {
+		// A missing humidity every 7th record and a missing wind every 11th
+		if (column == 2 && i % 7 == 0) return Double.NaN;
+		if (column >= 4 && i % 11 == 0) return Double.NaN;
+		return 50 + column + (i % 13) * 0.25;
+	}
+
+	private static void append(HistoryFile history, int i, long time) {
+		history.append(time, reading(i, 0), reading(i, 1), reading(i, 2), reading(i, 3), reading(i, 4), reading(i, 5));
+	}
+
+	private static List<long[]> scan(HistoryArchive archive, long from, long to) throws IOException {
+		List<long[]> records = new ArrayList<>();
+		archive.scan(from, to, (time, temperature, dewPoint, humidity, pressure, windSpeed, windDirection) -> {
+			long[] record = { time, Double.doubleToLongBits(temperature), Double.doubleToLongBits(dewPoint),
+					Double.doubleToLongBits(humidity), Double.doubleToLongBits(pressure),
+					Double.doubleToLongBits(windSpeed), Double.doubleToLongBits(windDirection) };
+			records.add(record);
+		});
+		return records;
+	}
+
+	private static void assertRecord(int i, long[] record) {
+		assertEquals(START + i * MINUTE, record[0]);
+		for (int c = 0; c < COLUMNS; c++) {
+			assertEquals(Double.doubleToLongBits(reading(i, c)), record[c + 1], "column " + c + " of record " + i);
+		}
+	}
+
+	@Test
+	void archivesAcrossBlockBoundaries() throws IOException {
+		int blocks = 3;
+		int records = blocks * HistoryArchive.BLOCK_RECORDS + 100;
+		File archiveFile = new File(dir, "location-0.archive");
+		try (HistoryFile history = HistoryFile.open(new File(dir, "location-0.history"), 4 * HistoryArchive.BLOCK_RECORDS);
+				HistoryArchive archive = HistoryArchive.open(archiveFile)) {
+			for (int i = 0; i < records; i++) {
+				append(history, i, START + i * MINUTE);
+				// A repeated poll and a late one, which the ring ignores
+				append(history, i, START + i * MINUTE);
+				if (i > 0 && i % 100 == 0) append(history, i, START + (i - 1) * MINUTE);
+			}
+			assertEquals(records, history.size());
+
+			assertEquals(blocks * HistoryArchive.BLOCK_RECORDS, archive.archive(history));
+			assertEquals(0, archive.archive(history));
+			assertEquals(START + (blocks * HistoryArchive.BLOCK_RECORDS - 1) * MINUTE, archive.getLastTime());
+
+			List<long[]> all = scan(archive, Long.MIN_VALUE, Long.MAX_VALUE);
+			assertEquals(blocks * HistoryArchive.BLOCK_RECORDS, all.size());
+			for (int i = 0; i < all.size(); i++) assertRecord(i, all.get(i));
+
+			// A range that starts and ends inside blocks
+			int from = HistoryArchive.BLOCK_RECORDS - 10;
+			int to = 2 * HistoryArchive.BLOCK_RECORDS + 10;
+			List<long[]> range = scan(archive, START + from * MINUTE, START + to * MINUTE);
+			assertEquals(to - from, range.size());
+			for (int i = 0; i < range.size(); i++) assertRecord(from + i, range.get(i));
+		}
+
+		try (HistoryArchive archive = HistoryArchive.openReadOnly(archiveFile)) {
+			assertEquals(START + (blocks * HistoryArchive.BLOCK_RECORDS - 1) * MINUTE, archive.getLastTime());
+			assertEquals(blocks * HistoryArchive.BLOCK_RECORDS, scan(archive, Long.MIN_VALUE, Long.MAX_VALUE).size());
+			assertTrue(scan(archive, START + records * MINUTE, Long.MAX_VALUE).isEmpty());
+		}
+	}
+
+	@Test
+	void dropsATornBlockAndArchivesItAgain() throws IOException {
+		File archiveFile = new File(dir, "location-0.archive");
+		int records = 2 * HistoryArchive.BLOCK_RECORDS;
+		long oneBlock;
+		try (HistoryFile history = HistoryFile.open(new File(dir, "location-0.history"), records);
+				HistoryArchive archive = HistoryArchive.open(archiveFile)) {
+			for (int i = 0; i < HistoryArchive.BLOCK_RECORDS; i++) append(history, i, START + i * MINUTE);
+			archive.archive(history);
+			oneBlock = archive.getSize();
+			for (int i = HistoryArchive.BLOCK_RECORDS; i < records; i++) append(history, i, START + i * MINUTE);
+			archive.archive(history);
+		}
+		try (RandomAccessFile file = new RandomAccessFile(archiveFile, "rw")) {
+			file.setLength(file.length() - 5);
+		}
+
+		try (HistoryFile history = HistoryFile.open(new File(dir, "location-0.history"), records);
+				HistoryArchive archive = HistoryArchive.open(archiveFile)) {
+			assertEquals(oneBlock, archive.getSize());
+			assertEquals(oneBlock, archiveFile.length());
+			assertEquals(START + (HistoryArchive.BLOCK_RECORDS - 1) * MINUTE, archive.getLastTime());
+			assertEquals(HistoryArchive.BLOCK_RECORDS, archive.archive(history));
+			List<long[]> all = scan(archive, Long.MIN_VALUE, Long.MAX_VALUE);
+			assertEquals(records, all.size());
+			for (int i = 0; i < records; i++) assertRecord(i, all.get(i));
+		}
+	}
+
+	@Test
+	void keepsPartialBlocksInTheRing() throws IOException {
+		try (HistoryFile history = HistoryFile.open(new File(dir, "location-0.history"), 2 * HistoryArchive.BLOCK_RECORDS);
+				HistoryArchive archive = HistoryArchive.open(new File(dir, "location-0.archive"))) {
+			for (int i = 0; i < HistoryArchive.BLOCK_RECORDS - 1; i++) append(history, i, START + i * MINUTE);
+			assertEquals(0, archive.archive(history));
+			assertEquals(Long.MIN_VALUE, archive.getLastTime());
+			assertTrue(scan(archive, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+			assertFalse(history.append(START - MINUTE, 0, 0, 0, 0, 0, 0));
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pmw.weather.widget;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a {@link HistoryFile} keeps its newest records when it is
+ * reopened with another capacity, in place, however often that happens.
+ */
+class HistoryFileTest {
+
+	private static final long START = 1718985600000L;
+	private static final long MINUTE = 60000;
+
+	@TempDir
+	File dir;
+
+	private static void append(HistoryFile history, int from, int to) {
+		for (int i = from; i < to; i++) history.append(START + i * MINUTE, i, i + 0.5, 50, 30, 5, 180);
+	}
+
+	private static List<Long> times(HistoryFile history) {
+		List<Long> times = new ArrayList<>();
+		history.scan(Long.MIN_VALUE, Long.MAX_VALUE, (time, temperature, dewPoint, humidity, pressure, windSpeed, windDirection) -> {
+			assertEquals((time - START) / MINUTE, temperature, 0);
+			times.add(time);
+		});
+		return times;
+	}
+
+	private static void assertHolds(HistoryFile history, int from, int to) {
+		List<Long> times = times(history);
+		assertEquals(to - from, times.size());
+		for (int i = from; i < to; i++) assertEquals(START + i * MINUTE, times.get(i - from));
+		assertEquals(START + (to - 1) * MINUTE, history.getLastTime());
+	}
+
+	@Test
+	void resizesTwiceWithinOneRun() throws IOException {
+		File file = new File(dir, "location-0.history");
+		try (HistoryFile history = HistoryFile.open(file, 100)) {
+			append(history, 0, 250);
+			assertHolds(history, 150, 250);
+		}
+		// A reader still maps the file while it is shrunk
+		try (HistoryFile reader = HistoryFile.openReadOnly(file)) {
+			try (HistoryFile history = HistoryFile.open(file, 40)) {
+				assertEquals(40, history.getCapacity());
+				assertHolds(history, 210, 250);
+				append(history, 250, 260);
+				assertHolds(history, 220, 260);
+			}
+			assertEquals(100, reader.getCapacity());
+		}
+		try (HistoryFile history = HistoryFile.open(file, 300)) {
+			assertEquals(300, history.getCapacity());
+			assertHolds(history, 220, 260);
+			append(history, 260, 300);
+			assertHolds(history, 220, 300);
+		}
+		try (HistoryFile history = HistoryFile.open(file, 300)) {
+			assertHolds(history, 220, 300);
+			assertFalse(history.append(START, 0, 0, 0, 0, 0, 0));
+		}
+		assertFalse(new File(dir, "location-0.history.resize").exists());
+	}
+
+	@Test
+	void resizesEmptyAndPartlyFilledFiles() throws IOException {
+		File file = new File(dir, "location-0.history");
+		HistoryFile.open(file, 10).close();
+		try (HistoryFile history = HistoryFile.open(file, 20)) {
+			assertTrue(times(history).isEmpty());
+			append(history, 0, 5);
+		}
+		try (HistoryFile history = HistoryFile.open(file, 3)) {
+			assertHolds(history, 2, 5);
+		}
+		try (HistoryFile reader = HistoryFile.openReadOnly(file)) {
+			assertEquals(3, reader.getCapacity());
+			assertHolds(reader, 2, 5);
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pmw.weather.widget;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks NumberFormatter against String.format. String.format rounds a double
+ * half-up on its shortest decimal form, so the expected text is formatted
+ * from the exact binary value rounded half-even, which is what DecimalFormat
+ * and the tooltips have always shown.
+ */
+class NumberFormatterTest {
+
+	private static String format(double value, int decimals) {
+		return NumberFormatter.append(new StringBuilder(), value, decimals).toString();
+	}
+
+	private static String expected(double value, int decimals) {
+		BigDecimal rounded = new BigDecimal(value).setScale(decimals, RoundingMode.HALF_EVEN);
+		return String.format(Locale.ROOT, "%." + decimals + "f", rounded);
+	}
+
+	private static void assertFormats(double value) {
+		for (int decimals = 0; decimals <= 6; decimals++) {
+			assertEquals(expected(value, decimals), format(value, decimals), value + " with " + decimals + " decimals");
+		}
+	}
+
+	@Test
+	void matchesStringFormatAwayFromTies() {
+		assertEquals(String.format(Locale.ROOT, "%.1f", 68.54), format(68.54, 1));
+		assertEquals(String.format(Locale.ROOT, "%.2f", 30.016), format(30.016, 2));
+		assertEquals(String.format(Locale.ROOT, "%.0f", 219.7), format(219.7, 0));
+		assertEquals(String.format(Locale.ROOT, "%.1f", -12.34), format(-12.34, 1));
+		assertEquals(String.format(Locale.ROOT, "%.3f", 0.0004), format(0.0004, 3));
+	}
+
+	@Test
+	void roundsTiesOnTheExactValue() {
+		// 66.55 is really 66.549999..., which String.format rounds up
+		assertEquals("66.6", String.format(Locale.ROOT, "%.1f", 66.55));
+		assertEquals("66.5", format(66.55, 1));
+		// 0.15 is really 0.1499999...
+		assertEquals("0.1", format(0.15, 1));
+		// 1.005 is really 1.00499999...
+		assertEquals("1.00", format(1.005, 2));
+		// 0.35 is really 0.34999999..., 0.45 is 0.450000000000000011...
+		assertEquals("0.3", format(0.35, 1));
+		assertEquals("0.5", format(0.45, 1));
+	}
+
+	@Test
+	void roundsExactTiesToEven() {
+		assertEquals("0", format(0.5, 0));
+		assertEquals("2", format(1.5, 0));
+		assertEquals("2", format(2.5, 0));
+		assertEquals("-2", format(-2.5, 0));
+		assertEquals("0.12", format(0.125, 2));
+		assertEquals("0.38", format(0.375, 2));
+		assertEquals("10.2", format(10.25, 1));
+		assertEquals("10.4", format(10.375, 1));
+	}
+
+	@Test
+	void carriesIntoTheWholePart() {
+		assertEquals("10.0", format(9.96, 1));
+		assertEquals("9.9", format(9.95, 1));
+		assertEquals("100.00", format(99.999, 2));
+		assertEquals("-100.00", format(-99.999, 2));
+		assertEquals("1000000", format(999999.5, 0));
+		assertEquals("1.000000", format(0.9999996, 6));
+	}
+
+	@Test
+	void formatsBoundariesLikeStringFormat() {
+		double[] values = {
+			0, 0.05, 0.5, 0.95, 1, 9.95, 9.995, 66.55, 99.5, 99.95, 1.0005, 2.675, 1e-7, 4.35, 1.45,
+			123456.789, 0.1 + 0.2, Math.nextUp(0.5), Math.nextDown(0.5), Math.nextUp(2.5), Math.nextDown(2.5)
+		};
+		for (double value : values) {
+			assertFormats(value);
+			assertFormats(-value);
+		}
+	}
+
+	@Test
+	void dropsTheSignOfValuesThatRoundToZero() {
+		assertEquals("0.0", format(-0.04, 1));
+		assertEquals("0", format(-0.4, 0));
+		assertEquals("0.00", format(-0.0, 2));
+		assertEquals("-0.1", format(-0.05, 1));
+	}
+
+	@Test
+	void appendsNonFiniteAndLargeValuesLikeDoubleToString() {
+		assertEquals(String.format(Locale.ROOT, "%.1f", Double.NaN), format(Double.NaN, 1));
+		assertEquals(String.format(Locale.ROOT, "%.1f", Double.POSITIVE_INFINITY), format(Double.POSITIVE_INFINITY, 1));
+		assertEquals(String.format(Locale.ROOT, "%.1f", Double.NEGATIVE_INFINITY), format(Double.NEGATIVE_INFINITY, 1));
+		assertEquals(Double.toString(1e12), format(1e12, 2));
+		assertEquals(Double.toString(-3.5e15), format(-3.5e15, 0));
+		assertEquals(Double.toString(Double.MAX_VALUE), format(Double.MAX_VALUE, 6));
+		// The largest values written in full
+		assertFormats(999999999999.9);
+		assertFormats(-999999999999.9);
+		assertFormats(Math.nextDown(1e12));
+	}
+
+	@Test
+	void matchesStringFormatAndDecimalFormatOnRandomValues() {
+		DecimalFormat[] decimalFormats = new DecimalFormat[7];
+		for (int decimals = 0; decimals < decimalFormats.length; decimals++) {
+			decimalFormats[decimals] = new DecimalFormat("0" + (decimals > 0 ? "." + "0".repeat(decimals) : ""),
+					DecimalFormatSymbols.getInstance(Locale.ROOT));
+		}
+		SplittableRandom random = new SplittableRandom(42);
+		for (int i = 0; i < 100000; i++) {
+			// Readings with few decimals, so that many land on or near ties
+			double value = Math.round(random.nextDouble(-2000, 2000) * 1000) / 1000.0;
+			if (i % 2 == 1) value = random.nextDouble(-1e6, 1e6);
+			int decimals = i % decimalFormats.length;
+			String text = format(value, decimals);
+			assertEquals(expected(value, decimals), text, value + " with " + decimals + " decimals");
+			String decimalFormat = decimalFormats[decimals].format(value);
+			// DecimalFormat keeps the sign of a negative value that rounds to zero
+			if (decimalFormat.startsWith("-") && new BigDecimal(decimalFormat).signum() == 0) {
+				decimalFormat = decimalFormat.substring(1);
+			}
+			assertEquals(decimalFormat, text, value + " with " + decimals + " decimals");
+		}
+	}
+
+	@Test
+	void rejectsUnsupportedDecimals() {
+		assertThrows(IllegalArgumentException.class, () -> format(1, -1));
+		assertThrows(IllegalArgumentException.class, () -> format(1, 7));
+	}
+}
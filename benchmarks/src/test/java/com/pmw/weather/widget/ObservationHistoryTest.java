@@ -0,0 +1,61 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pmw.weather.widget;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks which histories {@link ObservationHistory} keeps open as the
+ * locations are reconfigured.
+ */
+class ObservationHistoryTest {
+
+	@TempDir
+	File dir;
+
+	@Test
+	void closesTheHistoriesOfRemovedLocations() throws IOException {
+		Properties props = new Properties();
+		props.setProperty("historyRetention", "1");
+		Location first = new Location(0, "first", "http://first.example/conditions");
+		Location second = new Location(1, "second", "http://second.example/conditions");
+		ObservationHistory histories = new ObservationHistory(dir, List.of(first, second), props);
+		try {
+			HistoryFile kept = histories.get(first);
+			HistoryFile removed = histories.get(second);
+			assertNotNull(removed);
+
+			histories.open(List.of(first), props);
+			assertSame(kept, histories.get(first));
+			assertNull(histories.get(second));
+		}
+		finally {
+			histories.close();
+		}
+	}
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pmw.weather.widget;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Feeds the recorded responses of each provider, whole, cut short and with
+ * fields taken out, through its {@link ObservationParser}.
+ */
+class ObservationParserTest {
+
+	private static final double DELTA = 1e-9;
+	private static final double HPA_PER_INCH = 33.863889532610884;
+
+	private static Observation parse(WeatherProvider provider, String payload) throws IOException {
+		return provider.newParser().parse(new StringReader(payload));
+	}
+
+	private static String cutBefore(String payload, String text) {
+		int index = payload.indexOf(text);
+		if (index < 0) throw new IllegalArgumentException("No " + text + " in payload");
+		return payload.substring(0, index);
+	}
+
+	private static String remove(String payload, String text) {
+		if (!payload.contains(text)) throw new IllegalArgumentException("No " + text + " in payload");
+		return payload.replace(text, "");
+	}
+
+	@Test
+	void readsOpenWeatherMap() throws IOException {
+		Observation obs = parse(new OpenWeatherMapProvider(), Payloads.get("json"));
+		assertEquals(68.54, obs.getTemperature(), DELTA);
+		assertEquals(68.72, obs.getFeelsLike(), DELTA);
+		assertEquals(78, obs.getHumidity(), DELTA);
+		assertEquals(1012 / HPA_PER_INCH, obs.getPressure(), DELTA);
+		assertEquals(9.22, obs.getWindSpeed(), DELTA);
+		assertEquals(210, obs.getWindDirection(), DELTA);
+		assertEquals(0.43 / 25.4, obs.getRain(), DELTA);
+		assertEquals(1718985600000L, obs.getObservationTime());
+		assertEquals("Rain", obs.getWeather());
+		assertTrue(Double.isNaN(obs.getDewPoint()));
+		assertNull(obs.getForecast());
+	}
+
+	@Test
+	void rejectsTruncatedOpenWeatherMap() {
+		String payload = Payloads.get("json");
+		OpenWeatherMapProvider provider = new OpenWeatherMapProvider();
+		assertThrows(IOException.class, () -> parse(provider, cutBefore(payload, "\"wind\"")));
+		assertThrows(IOException.class, () -> parse(provider, cutBefore(payload, "Rain\"")));
+		assertThrows(IOException.class, () -> parse(provider, cutBefore(payload, "[{")));
+		assertThrows(IOException.class, () -> parse(provider, payload.substring(0, payload.lastIndexOf('}'))));
+		assertThrows(IOException.class, () -> parse(provider, "{\"weather\":[{\"main\":\"Ra\\"));
+	}
+
+	@Test
+	void leavesMissingOpenWeatherMapFieldsEmpty() throws IOException {
+		String payload = remove(Payloads.get("json"), "\"rain\":{\"1h\":0.43},");
+		payload = remove(payload, "\"temp\":68.54,");
+		Observation obs = parse(new OpenWeatherMapProvider(), payload);
+		assertTrue(Double.isNaN(obs.getRain()));
+		// temp_min and temp_max must not stand in for temp
+		assertTrue(Double.isNaN(obs.getTemperature()));
+		assertEquals(68.72, obs.getFeelsLike(), DELTA);
+		assertEquals(9.22, obs.getWindSpeed(), DELTA);
+	}
+
+	@Test
+	void readsOpenWeatherMapOnlyFromItsOwnObjects() throws IOException {
+		Observation obs = parse(new OpenWeatherMapProvider(),
+				"{\"sys\":{\"speed\":1,\"temp\":2},\"wind\":{\"speed\":3},\"main\":{\"temp\":4}}");
+		assertEquals(3, obs.getWindSpeed(), DELTA);
+		assertEquals(4, obs.getTemperature(), DELTA);
+		assertTrue(Double.isNaN(obs.getWindDirection()));
+		assertNull(obs.getWeather());
+	}
+
+	@Test
+	void readsOpenWeatherMapBatchAndForecast() throws IOException {
+		String city = Payloads.get("json").trim();
+		ObservationParser parser = new OpenWeatherMapProvider().newParser();
+		Map<String,Observation> batch = new HashMap<>();
+		parser.parseBatch(new StringReader("{\"cnt\":1,\"list\":[" + city + "]}"), batch);
+		assertEquals(68.54, batch.get("5128581").getTemperature(), DELTA);
+
+		List<Observation> forecast = new ArrayList<>();
+		parser.parseForecast(new StringReader("{\"cnt\":2,\"list\":[" + city + "," + city + "]}"), forecast);
+		assertEquals(2, forecast.size());
+		assertEquals(9.22, forecast.get(1).getWindSpeed(), DELTA);
+
+		assertThrows(IOException.class,
+				() -> parser.parseBatch(new StringReader("{\"cnt\":1,\"list\":[" + city), new HashMap<>()));
+	}
+
+	@Test
+	void readsWeatherGov() throws IOException {
+		Observation obs = parse(new WeatherGovProvider(), Payloads.get("xml"));
+		assertEquals(84.0, obs.getTemperature(), DELTA);
+		assertEquals(62.1, obs.getDewPoint(), DELTA);
+		assertEquals(48, obs.getHumidity(), DELTA);
+		assertEquals(30.01, obs.getPressure(), DELTA);
+		assertEquals(9.2, obs.getWindSpeed(), DELTA);
+		assertEquals(220, obs.getWindDirection(), DELTA);
+		assertEquals("Southwest at 9.2 MPH (8 KT)", obs.getWind());
+		assertEquals("Partly Cloudy", obs.getWeather());
+		assertEquals(1718985120000L, obs.getObservationTime());
+		assertTrue(Double.isNaN(obs.getRain()));
+	}
+
+	@Test
+	void keepsWhatWasReadOfTruncatedWeatherGov() throws IOException {
+		Observation obs = parse(new WeatherGovProvider(), cutBefore(Payloads.get("xml"), "<wind_degrees>"));
+		assertEquals(84.0, obs.getTemperature(), DELTA);
+		assertEquals("Southwest at 9.2 MPH (8 KT)", obs.getWind());
+		assertTrue(Double.isNaN(obs.getWindDirection()));
+		assertTrue(Double.isNaN(obs.getPressure()));
+		assertTrue(Double.isNaN(obs.getDewPoint()));
+
+		// Cut inside a tag name and inside a value
+		obs = parse(new WeatherGovProvider(), cutBefore(Payloads.get("xml"), "_f>84.0"));
+		assertTrue(Double.isNaN(obs.getTemperature()));
+		obs = parse(new WeatherGovProvider(), cutBefore(Payloads.get("xml"), ".0</temp_f>"));
+		assertEquals(84, obs.getTemperature(), DELTA);
+	}
+
+	@Test
+	void leavesMissingWeatherGovFieldsEmpty() throws IOException {
+		String payload = remove(Payloads.get("xml"), "<temp_f>84.0</temp_f>");
+		payload = remove(payload, "<weather>Partly Cloudy</weather>");
+		Observation obs = parse(new WeatherGovProvider(), payload);
+		// temperature_string and temp_c must not stand in for temp_f
+		assertTrue(Double.isNaN(obs.getTemperature()));
+		assertNull(obs.getWeather());
+		assertEquals(62.1, obs.getDewPoint(), DELTA);
+
+		obs = parse(new WeatherGovProvider(), "<current_observation><temp_f/><weather></weather></current_observation>");
+		assertTrue(obs.isEmpty());
+	}
+
+	@Test
+	void readsPipeFeed() throws IOException {
+		Observation obs = parse(new PipeFeedProvider(), Payloads.get("pipe"));
+		assertEquals(83.7, obs.getTemperature(), DELTA);
+		assertEquals(61.9, obs.getDewPoint(), DELTA);
+		assertEquals(48, obs.getHumidity(), DELTA);
+		assertEquals(30.02, obs.getPressure(), DELTA);
+		assertEquals(0, obs.getRain(), DELTA);
+		assertEquals("SW 8 G 14 MPH", obs.getWind());
+		assertEquals("Partly Cloudy", obs.getWeather());
+		assertEquals("This Afternoon: Partly sunny, with a high near 90. Southwest wind 7 to 11 mph.", obs.getForecast());
+		assertEquals(0, obs.getObservationTime());
+	}
+
+	@Test
+	void keepsWhatWasReadOfTruncatedPipeFeed() throws IOException {
+		Observation obs = parse(new PipeFeedProvider(), cutBefore(Payloads.get("pipe"), ".7\n"));
+		assertEquals(83, obs.getTemperature(), DELTA);
+		assertTrue(Double.isNaN(obs.getDewPoint()));
+		assertNull(obs.getWeather());
+
+		obs = parse(new PipeFeedProvider(), cutBefore(Payloads.get("pipe"), "|61.9"));
+		assertEquals(83.7, obs.getTemperature(), DELTA);
+		assertTrue(Double.isNaN(obs.getDewPoint()));
+	}
+
+	@Test
+	void leavesMissingPipeFeedFieldsEmpty() throws IOException {
+		String payload = remove(Payloads.get("pipe"), Payloads.line(Payloads.get("pipe"), "dew_point|") + "\n");
+		Observation obs = parse(new PipeFeedProvider(), payload.replace("\n", "\r\n"));
+		assertTrue(Double.isNaN(obs.getDewPoint()));
+		assertEquals(83.7, obs.getTemperature(), DELTA);
+		assertEquals("SW 8 G 14 MPH", obs.getWind());
+
+		obs = parse(new PipeFeedProvider(), "temperature|\nhumidity|n/a\n");
+		assertTrue(obs.isEmpty());
+	}
+
+	@Test
+	void readsNothingFromAnEmptyResponse() throws IOException {
+		assertTrue(parse(new OpenWeatherMapProvider(), "").isEmpty());
+		assertTrue(parse(new WeatherGovProvider(), "  \n").isEmpty());
+		assertTrue(parse(new PipeFeedProvider(), "").isEmpty());
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pmw.weather.widget;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Saves and reloads observations through {@link ObservationSnapshot}.
+ */
+class ObservationSnapshotTest {
+
+	private static final String URL = "https://api.openweathermap.org/data/2.5/weather?id=5128581&appid=0123456789abcdef";
+
+	@TempDir
+	File dir;
+
+	@Test
+	void reloadsByURLWithoutStoringIt() throws IOException {
+		File file = new File(dir, "snapshot.bin");
+		Location location = new Location(0, "New York", URL);
+		Observation observation = new Observation.Builder().observationTime(1718985600000L).temperature(68.5).weather("Rain").build();
+		new ObservationSnapshot(file, List.of(location)).observationUpdated(location, observation);
+
+		String contents = new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+		assertFalse(contents.contains("0123456789abcdef"));
+		assertFalse(contents.contains("openweathermap"));
+
+		Map<Location,Observation> loaded = new ObservationSnapshot(file, List.of(location)).load();
+		assertEquals(68.5, loaded.get(location).getTemperature(), 0);
+		assertEquals("Rain", loaded.get(location).getWeather());
+
+		// Another URL under the same number drops the snapshot
+		Location moved = new Location(0, "New York", URL.replace("5128581", "5128638"));
+		assertTrue(new ObservationSnapshot(file, List.of(moved)).load().isEmpty());
+	}
+
+	@Test
+	void ignoresAnOlderVersion() throws IOException {
+		File file = new File(dir, "snapshot.bin");
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+			out.writeInt(0x57575331);
+			out.writeInt(1);
+			out.writeInt(1);
+			out.writeInt(100);
+			out.writeInt(0);
+			out.writeUTF(URL);
+		}
+		assertTrue(new ObservationSnapshot(file, List.of(new Location(0, "New York", URL))).load().isEmpty());
+	}
+}
@@ -20,17 +20,31 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class pmwApplication {
 
+	/** How long to let an editor finish writing before the file is reloaded */
+	private static final long RELOAD_DELAY = 250;
+
 	private String appName;
 	private String appVersion;
     private String appCopyright;
     private String appAuthor;
-    private Properties appProperties;
+    private volatile Properties appProperties = new Properties();
     private File appPropertiesFile;
-    private long appPropertiesLastLoaded;
+    private final List<AppPropertiesListener> appPropertiesListeners = new CopyOnWriteArrayList<AppPropertiesListener>();
+    private Thread appPropertiesWatcher;
         
     public pmwApplication(String name, String version, String copyright, String author) {
     	this.appName = name;
@@ -47,50 +61,161 @@ public class pmwApplication {
     
     public final String getAppCopyright() { return appCopyright; }
     
+    /**
+     * The current settings. The object returned is a snapshot that is replaced,
+     * never changed, when the settings change, so it can be read without locking
+     * and must not be modified; use {@link #setAppProperty} instead.
+     */
     public Properties getAppProperties() { return appProperties; }
 
     public void setAppProperties(Properties props) {
-    	this.appProperties = props;
+    	Properties copy = new Properties();
+    	copy.putAll(props);
+    	this.appProperties = copy;
     }
-    
+
+    public synchronized void setAppProperty(String key, String value) {
+    	Properties copy = new Properties();
+    	copy.putAll(appProperties);
+    	copy.setProperty(key, value);
+    	this.appProperties = copy;
+    }
+
     public void loadAppProperties(String propFile) throws IOException {
-	    synchronized (this) {
-	    	this.appPropertiesFile = new File(propFile);
-	    	this.appProperties = new Properties();
-	
-	    	if (new File(propFile).exists()) {
-	    		FileInputStream is = new FileInputStream(propFile);
-			  		appProperties.load(is);
-			  		is.close();
-	    	}
-	
-			this.appPropertiesLastLoaded = appPropertiesFile.lastModified();
-	    }
+    	this.appPropertiesFile = new File(propFile);
+    	this.appProperties = readAppProperties(appPropertiesFile);
     }
 
-    public void reloadAppProperties() {
-    	reloadAppProperties(false);
+    private static Properties readAppProperties(File propFile) throws IOException {
+    	Properties props = new Properties();
+    	if (propFile.exists()) {
+    		try (FileInputStream is = new FileInputStream(propFile)) {
+    			props.load(is);
+    		}
+    	}
+    	return props;
     }
 
-    public void reloadAppProperties(boolean force) {
-    	if (appPropertiesFile != null && (appPropertiesFile.lastModified() > appPropertiesLastLoaded || force)) {
+    /**
+     * Re-reads the properties file and, if its contents differ from the current
+     * settings, publishes them and tells the listeners.
+     */
+    public void reloadAppProperties() {
+    	if (appPropertiesFile == null) return;
+    	Properties props;
+    	try {
+    		props = readAppProperties(appPropertiesFile);
+    	}
+    	catch (Exception ex) {
+    		System.err.println("Error reloading properties file: " + ex.getMessage());
+    		return;
+    	}
+    	synchronized (this) {
+    		if (props.equals(appProperties)) return;
+    		appProperties = props;
+    	}
+    	for (AppPropertiesListener listener : appPropertiesListeners) {
     		try {
-    			loadAppProperties(appPropertiesFile.getAbsolutePath());
+    			listener.appPropertiesChanged(props);
     		}
-    		catch (Exception ex) {
-    			System.err.println("Error reloading properties file: " + ex.getMessage());
+    		catch (RuntimeException ex) {
+    			ex.printStackTrace();
     		}
     	}
     }
 
+    public void addAppPropertiesListener(AppPropertiesListener listener) {
+    	appPropertiesListeners.add(listener);
+    }
+
+    /**
+     * Starts a daemon thread that reloads the properties file whenever it is
+     * created or modified. Does nothing if already watching or no file has been
+     * loaded.
+     */
+    public synchronized void watchAppProperties() throws IOException {
+    	if (appPropertiesWatcher != null || appPropertiesFile == null) return;
+
+    	final Path file = appPropertiesFile.getAbsoluteFile().toPath();
+    	final WatchService watchService = file.getFileSystem().newWatchService();
+    	try {
+    		file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    	}
+    	catch (IOException ex) {
+    		watchService.close();
+    		throw ex;
+    	}
+
+    	appPropertiesWatcher = new Thread(new Runnable() {
+    		@Override
+    		public void run() {
+    			watchAppProperties(watchService, file.getFileName());
+    		}
+    	}, appName + " properties watcher");
+    	appPropertiesWatcher.setDaemon(true);
+    	appPropertiesWatcher.start();
+    }
+
+    private void watchAppProperties(WatchService watchService, Path fileName) {
+    	try (WatchService ws = watchService) {
+    		while (true) {
+    			WatchKey key = ws.take();
+    			boolean changed = false;
+    			for (WatchEvent<?> event : key.pollEvents()) {
+    				if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+    					changed = true;
+    				}
+    			}
+    			if (!key.reset()) {
+    				System.err.println("Stopped watching properties file: folder is no longer accessible");
+    				return;
+    			}
+    			if (changed) {
+    				// Editors often save in several writes; reload once they settle
+    				Thread.sleep(RELOAD_DELAY);
+    				while ((key = ws.poll()) != null) {
+    					key.pollEvents();
+    					key.reset();
+    				}
+    				reloadAppProperties();
+    			}
+    		}
+    	}
+    	catch (InterruptedException ex) {
+    		Thread.currentThread().interrupt();
+    	}
+    	catch (IOException ex) {
+    		System.err.println("Error watching properties file: " + ex.getMessage());
+    	}
+    }
+
     public void saveAppProperties() throws IOException {
     	saveAppProperties(this.appPropertiesFile);
     }
     
+    /**
+     * Writes the settings to a temporary file beside <code>propFile</code>,
+     * syncs it to disk and moves it into place, so readers and the watcher only
+     * ever see a complete file.
+     */
     public void saveAppProperties(File propFile) throws IOException {
-		FileOutputStream os = new FileOutputStream(propFile);
-		appProperties.store(os, null);
-		os.close();
+    	File dir = propFile.getAbsoluteFile().getParentFile();
+    	File temp = File.createTempFile(propFile.getName(), ".tmp", dir);
+    	try {
+    		try (FileOutputStream os = new FileOutputStream(temp)) {
+    			appProperties.store(os, null);
+    			os.getFD().sync();
+    		}
+    		try {
+    			Files.move(temp.toPath(), propFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    		}
+    		catch (AtomicMoveNotSupportedException ex) {
+    			Files.move(temp.toPath(), propFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    		}
+    	}
+    	finally {
+    		Files.deleteIfExists(temp.toPath());
+    	}
     }
 
     private String userHomeDir;
@@ -109,22 +234,39 @@ public class pmwApplication {
     	
     	if (userAppDataDir != null && !userAppDataDir.isEmpty()) return userAppDataDir;
     	
+    	userAppDataDir = appDataDir(appName);
+		return userAppDataDir;
+    }
+
+    /**
+     * The folder an application keeps its settings and data in for the current
+     * user, created if it does not exist yet.
+     */
+    public static String appDataDir(String appName) {
+    	String dir;
 		if ( System.getProperty("os.name").startsWith("Windows") ) {
-			userAppDataDir = System.getenv("APPDATA");
+			dir = System.getenv("APPDATA");
 		}
 		else if ( System.getProperty("os.name").contains("Mac OS X") ) {
-			userAppDataDir = System.getenv("HOME");
-			if ( !userAppDataDir.equals("") ) {
-				userAppDataDir += "/Library/Application Support";
+			dir = System.getenv("HOME");
+			if ( !dir.equals("") ) {
+				dir += "/Library/Application Support";
+			}
+		}
+		else {
+			// Linux and other desktops keep settings under the XDG config folder
+			dir = System.getenv("XDG_CONFIG_HOME");
+			if ( dir == null || dir.equals("") ) {
+				dir = System.getProperty("user.home") + "/.config";
 			}
 		}
-		if ( !userAppDataDir.equals("") ) {
-			userAppDataDir += "/com.pmw/" + appName;
-			File f = new File(userAppDataDir);
+		if ( dir != null && !dir.equals("") ) {
+			dir += "/com.pmw/" + appName;
+			File f = new File(dir);
 			if ( !f.exists() ) {
 				f.mkdirs();
 			}
 		}
-		return userAppDataDir;
+		return dir;
     }
 }
\ No newline at end of file
@@ -0,0 +1,200 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * Evaluates the {@link AlertRule}s in the properties as each observation
+ * arrives and tells the listener when one turns on. Each location has a slot
+ * per input its rules read: one per field, and one per field and period of
+ * the change rules, which keep that field in a {@link SlidingWindow}. An
+ * observation updates the slots in place and re-runs only the rules whose
+ * slot changed, so the work per poll grows with the rules that could have
+ * changed their answer rather than with all of them. Estimated observations
+ * are ignored.
+ */
+public class AlertEngine implements ObservationListener {
+
+	/** Told when a rule turns on. Called on the polling thread. */
+	public interface Listener {
+		void alertRaised(Location location, AlertRule rule, String message);
+	}
+
+	private final Listener listener;
+	private volatile Map<Location,LocationAlerts> alerts = new HashMap<Location,LocationAlerts>();
+
+	public AlertEngine(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Compiles the rules in <code>props</code> for <code>locations</code>.
+	 * A rule that is unchanged keeps whether it is on, so editing the
+	 * properties file doesn't raise alerts again.
+	 */
+	public synchronized void configure(List<Location> locations, Properties props) {
+		List<AlertRule> rules = compile(props);
+		Map<Location,LocationAlerts> previous = alerts;
+		Map<Location,LocationAlerts> configured = new HashMap<Location,LocationAlerts>();
+		for (Location location : locations) {
+			List<AlertRule> applicable = new ArrayList<AlertRule>();
+			for (AlertRule rule : rules) {
+				if (rule.appliesTo(location)) applicable.add(rule);
+			}
+			if (applicable.isEmpty()) continue;
+			LocationAlerts la = new LocationAlerts(applicable);
+			LocationAlerts old = previous.get(location);
+			if (old != null) la.inherit(old);
+			configured.put(location, la);
+		}
+		alerts = configured;
+	}
+
+	/** Compiles every alert.NAME property, reporting and skipping those that are invalid */
+	static List<AlertRule> compile(Properties props) {
+		TreeSet<String> names = new TreeSet<String>();
+		for (String key : props.stringPropertyNames()) {
+			if (key.startsWith("alert.") && key.indexOf('.', 6) < 0 && key.length() > 6) names.add(key.substring(6));
+		}
+		List<AlertRule> rules = new ArrayList<AlertRule>();
+		for (String name : names) {
+			String prefix = "alert." + name;
+			try {
+				rules.add(AlertRule.compile(name, props.getProperty(prefix), props.getProperty(prefix + ".hysteresis"),
+						props.getProperty(prefix + ".message"), props.getProperty(prefix + ".locations")));
+			}
+			catch (IllegalArgumentException ex) {
+				System.err.println("Invalid " + prefix + ": " + ex.getMessage());
+			}
+		}
+		return rules;
+	}
+
+	@Override
+	public void observationUpdated(Location location, Observation observation) {
+		if (observation.isEstimated()) return;
+		LocationAlerts la = alerts.get(location);
+		if (la == null) return;
+		long time = observation.getObservationTime() > 0 ? observation.getObservationTime() : System.currentTimeMillis();
+		la.update(location, observation, time, listener);
+	}
+
+	@Override
+	public void pollFailed(Location location, Throwable cause) {
+	}
+
+	/** The compiled rules of one location and what they last saw */
+	private static final class LocationAlerts {
+
+		final AlertRule[] rules;
+		final boolean[] active;
+		/** Field read by each input slot, and the period of the change slots */
+		final int[] inputFields;
+		final long[] inputSpans;
+		final SlidingWindow[] windows;
+		/** Last value of each input slot, NaN until one is known */
+		final double[] values;
+		/** Rules reading each input slot, by index into rules */
+		final int[][] rulesByInput;
+
+		LocationAlerts(List<AlertRule> applicable) {
+			rules = applicable.toArray(new AlertRule[0]);
+			active = new boolean[rules.length];
+
+			// A slot per field read, then per distinct field and period of change
+			List<Long> keys = new ArrayList<Long>();
+			int[] ruleInputs = new int[rules.length];
+			for (int r = 0; r < rules.length; r++) {
+				long key = rules[r].getChangeSpan() * AlertRule.FIELDS.length + rules[r].getField();
+				int slot = keys.indexOf(key);
+				if (slot < 0) {
+					slot = keys.size();
+					keys.add(key);
+				}
+				ruleInputs[r] = slot;
+			}
+			int n = keys.size();
+			inputFields = new int[n];
+			inputSpans = new long[n];
+			windows = new SlidingWindow[n];
+			values = new double[n];
+			rulesByInput = new int[n][];
+			int[] counts = new int[n];
+			for (int slot = 0; slot < n; slot++) {
+				long key = keys.get(slot);
+				inputFields[slot] = (int) (key % AlertRule.FIELDS.length);
+				inputSpans[slot] = key / AlertRule.FIELDS.length;
+				if (inputSpans[slot] > 0) windows[slot] = new SlidingWindow(inputSpans[slot]);
+				values[slot] = Double.NaN;
+			}
+			for (int r = 0; r < rules.length; r++) counts[ruleInputs[r]]++;
+			for (int slot = 0; slot < n; slot++) rulesByInput[slot] = new int[counts[slot]];
+			for (int r = rules.length - 1; r >= 0; r--) rulesByInput[ruleInputs[r]][--counts[ruleInputs[r]]] = r;
+		}
+
+		/**
+		 * Takes over whether the rules that are the same in an earlier
+		 * configuration are on. Inputs start unknown, so every rule runs on the
+		 * next observation, and change rules start their windows afresh.
+		 */
+		void inherit(LocationAlerts old) {
+			synchronized (old) {
+				for (int r = 0; r < rules.length; r++) {
+					for (int o = 0; o < old.rules.length; o++) {
+						if (rules[r].sameAs(old.rules[o])) active[r] = old.active[o];
+					}
+				}
+			}
+		}
+
+		synchronized void update(Location location, Observation observation, long time, Listener listener) {
+			for (int slot = 0; slot < values.length; slot++) {
+				double value = AlertRule.value(observation, inputFields[slot]);
+				SlidingWindow window = windows[slot];
+				if (window != null) {
+					window.add(time, value);
+					value = change(window);
+				}
+				double previous = values[slot];
+				if (value == previous || (Double.isNaN(value) && Double.isNaN(previous))) continue;
+				values[slot] = value;
+				for (int r : rulesByInput[slot]) {
+					boolean on = rules[r].evaluate(value, active[r]);
+					if (on && !active[r]) listener.alertRaised(location, rules[r], rules[r].message(location, value));
+					active[r] = on;
+				}
+			}
+		}
+
+		/**
+		 * The change across a window, scaled to its whole period, once its
+		 * readings span at least half of it; NaN before then.
+		 */
+		private static double change(SlidingWindow window) {
+			if (window.size() < 2) return Double.NaN;
+			long covered = window.getNewestTime() - window.getOldestTime();
+			if (covered * 2 < window.getSpan()) return Double.NaN;
+			return (window.getNewestValue() - window.getOldestValue()) * window.getSpan() / covered;
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.util.Locale;
+
+/**
+ * One alert rule from the properties file, compiled from text such as
+ * <pre>
+ *   alert.freeze=temperature &lt; 32
+ *   alert.comfort=humidity outside 30 and 60
+ *   alert.storm=pressure falling 0.06 in 3 hours
+ * </pre>
+ * A rule compares one input, either an observation field or its change over
+ * a period, with constant bounds. It turns on when the comparison holds and
+ * off again once the input is back past the bound by alert.NAME.hysteresis,
+ * so a reading hovering at the bound raises one alert rather than many.
+ * alert.NAME.message replaces the notification text, with {location},
+ * {value} and {rule} filled in, and alert.NAME.locations limits the rule to
+ * a list of location numbers.
+ */
+public final class AlertRule {
+
+	/** Fields a rule can name, numbered as {@link #value} reads them */
+	static final String[] FIELDS = {
+		"temperature", "dewPoint", "feelsLike", "humidity", "pressure", "windSpeed", "windDirection", "rain"
+	};
+
+	private static final int ABOVE = 0;
+	private static final int BELOW = 1;
+	private static final int BETWEEN = 2;
+	private static final int OUTSIDE = 3;
+
+	private final String name;
+	private final String text;
+	private final int field;
+	/** Period of a change rule in milliseconds, or 0 for the field itself */
+	private final long changeSpan;
+	private final int kind;
+	private final boolean inclusive;
+	private final double low;
+	private final double high;
+	private final double hysteresis;
+	private final String message;
+	/** Location numbers the rule applies to, or null for all */
+	private final int[] locations;
+
+	private AlertRule(String name, String text, int field, long changeSpan, int kind, boolean inclusive,
+			double low, double high, double hysteresis, String message, int[] locations) {
+		this.name = name;
+		this.text = text;
+		this.field = field;
+		this.changeSpan = changeSpan;
+		this.kind = kind;
+		this.inclusive = inclusive;
+		this.low = low;
+		this.high = high;
+		this.hysteresis = hysteresis;
+		this.message = message;
+		this.locations = locations;
+	}
+
+	/**
+	 * Compiles a rule. The optional settings may be null.
+	 *
+	 * @throws IllegalArgumentException if the rule or a setting can't be understood
+	 */
+	public static AlertRule compile(String name, String text, String hysteresis, String message, String locations) {
+		String[] words = text.trim().split("\\s+");
+		if (words.length < 3) throw new IllegalArgumentException("expected a field, a comparison and a value");
+		int field = field(words[0]);
+		double h = hysteresis == null || hysteresis.isBlank() ? 0 : number(hysteresis.trim());
+		if (h < 0) throw new IllegalArgumentException("hysteresis can't be negative");
+		int[] where = locations == null || locations.isBlank() ? null : locationNumbers(locations);
+		String op = words[1].toLowerCase(Locale.ROOT);
+
+		if (words.length == 3) {
+			double value = number(words[2]);
+			switch (op) {
+			case ">": return new AlertRule(name, text, field, 0, ABOVE, false, value, value, h, message, where);
+			case ">=": return new AlertRule(name, text, field, 0, ABOVE, true, value, value, h, message, where);
+			case "<": return new AlertRule(name, text, field, 0, BELOW, false, value, value, h, message, where);
+			case "<=": return new AlertRule(name, text, field, 0, BELOW, true, value, value, h, message, where);
+			default: throw new IllegalArgumentException("unknown comparison " + words[1]);
+			}
+		}
+		if (words.length == 5 && (op.equals("between") || op.equals("outside")) && words[3].equalsIgnoreCase("and")) {
+			double a = number(words[2]);
+			double b = number(words[4]);
+			return new AlertRule(name, text, field, 0, op.equals("between") ? BETWEEN : OUTSIDE, true,
+					Math.min(a, b), Math.max(a, b), h, message, where);
+		}
+		if (words.length == 6 && (op.equals("rising") || op.equals("falling")) && words[3].equalsIgnoreCase("in")) {
+			double amount = number(words[2]);
+			if (amount <= 0) throw new IllegalArgumentException("the change must be positive");
+			long span = span(number(words[4]), words[5]);
+			return op.equals("rising")
+					? new AlertRule(name, text, field, span, ABOVE, true, amount, amount, h, message, where)
+					: new AlertRule(name, text, field, span, BELOW, true, -amount, -amount, h, message, where);
+		}
+		throw new IllegalArgumentException("expected e.g. \"temperature < 32\", \"humidity between 30 and 60\" "
+				+ "or \"pressure falling 0.06 in 3 hours\"");
+	}
+
+	private static int field(String word) {
+		for (int i = 0; i < FIELDS.length; i++) {
+			if (FIELDS[i].equalsIgnoreCase(word)) return i;
+		}
+		throw new IllegalArgumentException("unknown field " + word);
+	}
+
+	private static double number(String word) {
+		try {
+			double value = Double.parseDouble(word);
+			if (Double.isNaN(value) || Double.isInfinite(value)) throw new NumberFormatException();
+			return value;
+		}
+		catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("not a number: " + word);
+		}
+	}
+
+	private static long span(double count, String unit) {
+		long millis;
+		switch (unit.toLowerCase(Locale.ROOT)) {
+		case "minute": case "minutes": millis = 60_000L; break;
+		case "hour": case "hours": millis = 3_600_000L; break;
+		default: throw new IllegalArgumentException("unknown unit " + unit + ", expected minutes or hours");
+		}
+		if (count <= 0) throw new IllegalArgumentException("the period must be positive");
+		return (long) (count * millis);
+	}
+
+	private static int[] locationNumbers(String list) {
+		String[] parts = list.split(",");
+		int[] numbers = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			try {
+				numbers[i] = Integer.parseInt(parts[i].trim());
+			}
+			catch (NumberFormatException ex) {
+				throw new IllegalArgumentException("not a location number: " + parts[i].trim());
+			}
+		}
+		return numbers;
+	}
+
+	/** Reads a field of an observation by its number in {@link #FIELDS} */
+	static double value(Observation obs, int field) {
+		switch (field) {
+		case 0: return obs.getTemperature();
+		case 1: return obs.getDewPoint();
+		case 2: return obs.getFeelsLike();
+		case 3: return obs.getHumidity();
+		case 4: return obs.getPressure();
+		case 5: return obs.getWindSpeed();
+		case 6: return obs.getWindDirection();
+		case 7: return obs.getRain();
+		default: return Double.NaN;
+		}
+	}
+
+	public String getName() { return name; }
+
+	public String getText() { return text; }
+
+	/** The field the rule reads, as an index into {@link #FIELDS} */
+	int getField() { return field; }
+
+	/** The period a change rule measures over in milliseconds, or 0 if it reads the field itself */
+	long getChangeSpan() { return changeSpan; }
+
+	boolean appliesTo(Location location) {
+		if (locations == null) return true;
+		for (int number : locations) {
+			if (number == location.getIndex()) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Whether the rule is on after its input reads <code>value</code>, given
+	 * whether it was on before. NaN leaves it as it was.
+	 */
+	boolean evaluate(double value, boolean active) {
+		if (Double.isNaN(value)) return active;
+		switch (kind) {
+		case ABOVE:
+			if (active) return inclusive ? value >= low - hysteresis : value > low - hysteresis;
+			return inclusive ? value >= low : value > low;
+		case BELOW:
+			if (active) return inclusive ? value <= high + hysteresis : value < high + hysteresis;
+			return inclusive ? value <= high : value < high;
+		case BETWEEN:
+			if (active) return value >= low - hysteresis && value <= high + hysteresis;
+			return value >= low && value <= high;
+		case OUTSIDE:
+			if (active) return value < low + hysteresis || value > high - hysteresis;
+			return value < low || value > high;
+		default:
+			return false;
+		}
+	}
+
+	/** The notification text for the rule turning on at a location */
+	String message(Location location, double value) {
+		StringBuilder v = NumberFormatter.append(new StringBuilder(), value, 2);
+		if (message == null) return name + ": " + text + " (now " + v + ")";
+		return message.replace("{location}", location.getDisplayName()).replace("{value}", v).replace("{rule}", text);
+	}
+
+	/** Whether two rules would behave the same, so one can take over the other's state */
+	boolean sameAs(AlertRule other) {
+		return name.equals(other.name) && text.equals(other.text) && hysteresis == other.hysteresis;
+	}
+
+	@Override
+	public String toString() {
+		return name + "=" + text;
+	}
+}
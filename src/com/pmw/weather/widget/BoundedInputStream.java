@@ -0,0 +1,148 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fails a response body that grows past a size limit or is not read to the
+ * end by a deadline. When the deadline passes the underlying stream is closed
+ * from a timer thread, which wakes a read blocked on a server that has
+ * stopped sending; that read then fails with an {@link HttpTimeoutException}.
+ * Closing the stream first removes its deadline from the timer.
+ */
+class BoundedInputStream extends FilterInputStream {
+
+	/** Shared by every stream, dropping a deadline as soon as it is cancelled */
+	private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+	private final String source;
+	private final long maxBytes;
+	private final long deadline;
+	private final long timeoutNanos;
+	private final ScheduledFuture<?> timer;
+	private volatile boolean expired;
+	private long bytes;
+
+	/**
+	 * @param maxBytes largest body allowed, or 0 for no limit
+	 * @param deadline System.nanoTime() by which the body must be read, or 0 for none
+	 * @param timeoutNanos the time allowed for the whole request, for the message
+	 */
+	BoundedInputStream(InputStream in, String source, long maxBytes, long deadline, long timeoutNanos) {
+		super(in);
+		this.source = source;
+		this.maxBytes = maxBytes;
+		this.deadline = deadline;
+		this.timeoutNanos = timeoutNanos;
+		if (deadline != 0) {
+			long delay = Math.max(0, deadline - System.nanoTime());
+			timer = TIMER.schedule(this::expire, delay, TimeUnit.NANOSECONDS);
+		}
+		else {
+			timer = null;
+		}
+	}
+
+	private static ScheduledThreadPoolExecutor createTimer() {
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread t = new Thread(r, "weather-fetch-deadline");
+			t.setDaemon(true);
+			return t;
+		});
+		timer.setRemoveOnCancelPolicy(true);
+		return timer;
+	}
+
+	private void expire() {
+		expired = true;
+		try {
+			in.close();
+		}
+		catch (IOException ignore) {}
+	}
+
+	@Override
+	public int read() throws IOException {
+		checkDeadline();
+		int b;
+		try {
+			b = super.read();
+		}
+		catch (IOException ex) {
+			checkDeadline();
+			throw ex;
+		}
+		if (b >= 0) count(1);
+		return b;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		checkDeadline();
+		int n;
+		try {
+			n = super.read(buffer, offset, length);
+		}
+		catch (IOException ex) {
+			checkDeadline();
+			throw ex;
+		}
+		if (n > 0) count(n);
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		if (n <= 0) return 0;
+		// Through read, so skipped bytes count against the limit
+		byte[] scratch = new byte[(int) Math.min(n, 2048)];
+		long skipped = 0;
+		while (skipped < n) {
+			int r = read(scratch, 0, (int) Math.min(scratch.length, n - skipped));
+			if (r < 0) break;
+			skipped += r;
+		}
+		return skipped;
+	}
+
+	private void checkDeadline() throws HttpTimeoutException {
+		if (expired || (deadline != 0 && System.nanoTime() - deadline > 0)) {
+			throw new HttpTimeoutException("Response from " + source + " not complete within "
+					+ TimeUnit.NANOSECONDS.toSeconds(timeoutNanos) + " s");
+		}
+	}
+
+	private void count(int n) throws IOException {
+		bytes += n;
+		if (maxBytes > 0 && bytes > maxBytes) {
+			throw new IOException("Response from " + source + " is larger than " + maxBytes + " bytes");
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (timer != null) timer.cancel(false);
+		super.close();
+	}
+}
@@ -0,0 +1,298 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tracks the health of each server the locations are fetched from and picks
+ * which of a location's URLs to use for a poll. A server is identified by
+ * scheme, host and port, so every location fetched from the same provider
+ * shares its record.
+ *
+ * Each server has a circuit breaker. While closed it takes normal traffic and
+ * remembers the outcome of its last failoverWindow requests (20); once at
+ * least failoverMinRequests (5) of them are known and failoverErrorRate of
+ * them (0.5) have failed, it opens. A request that succeeds but takes longer
+ * than failoverSlowRequest seconds (10) counts as failed. An open server gets
+ * no requests for failoverCooldown seconds (60), then is half-open: it is sent
+ * one request at a time in place of normal traffic, and closes again after
+ * failoverProbes (3) of them succeed in a row. A failed probe opens it again
+ * for twice as long as before, up to failoverMaxCooldown seconds (1800).
+ *
+ * Requests are shared between the closed servers in proportion to their
+ * recent success rate squared over their recent response time. Failures are
+ * forgotten over about failoverCooldown seconds without requests, so a server
+ * that lost its share of traffic is tried again now and then.
+ */
+public class CircuitBreakers {
+
+	public enum State { CLOSED, OPEN, HALF_OPEN }
+
+	/** Weight of each new outcome in the running success rate and response time */
+	private static final double SMOOTHING = 0.2;
+	/** Added to response times so that one very fast server doesn't take everything */
+	private static final double LATENCY_FLOOR_MILLIS = 50;
+
+	private final int window;
+	private final int minRequests;
+	private final double errorRate;
+	private final long slowNanos;
+	private final long cooldown;
+	private final long maxCooldown;
+	private final int probes;
+
+	private final Map<String,Breaker> breakers = new ConcurrentHashMap<String,Breaker>();
+
+	public CircuitBreakers(Properties props) {
+		window = (int) Math.min(1000, number(props, "failoverWindow", 20));
+		minRequests = (int) Math.min(window, number(props, "failoverMinRequests", 5));
+		errorRate = rate(props, "failoverErrorRate", 0.5);
+		slowNanos = number(props, "failoverSlowRequest", 10) * 1_000_000_000L;
+		cooldown = number(props, "failoverCooldown", 60) * 1000;
+		maxCooldown = Math.max(cooldown, number(props, "failoverMaxCooldown", 1800) * 1000);
+		probes = (int) number(props, "failoverProbes", 3);
+	}
+
+	private static long number(Properties props, String key, long defaultValue) {
+		String value = props.getProperty(key);
+		if (value == null) return defaultValue;
+		try {
+			return Math.max(1, Long.parseLong(value.trim()));
+		}
+		catch (NumberFormatException ex) {
+			System.err.println("Invalid " + key + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	private static double rate(Properties props, String key, double defaultValue) {
+		String value = props.getProperty(key);
+		if (value == null) return defaultValue;
+		try {
+			double rate = Double.parseDouble(value.trim());
+			if (rate > 0 && rate <= 1) return rate;
+		}
+		catch (NumberFormatException ex) {
+			// fall through
+		}
+		System.err.println("Invalid " + key + ": " + value);
+		return defaultValue;
+	}
+
+	/**
+	 * Carries over the state of each server from the previous settings, so a
+	 * server that is open stays open.
+	 */
+	void inherit(CircuitBreakers previous) {
+		for (Breaker old : previous.breakers.values()) {
+			breakers.put(old.name, new Breaker(old));
+		}
+	}
+
+	/** The breaker of the server <code>uri</code> is on */
+	public Breaker get(URI uri) {
+		String name = uri.getScheme() + "://" + uri.getRawAuthority();
+		Breaker breaker = breakers.get(name);
+		return breaker != null ? breaker : breakers.computeIfAbsent(name, Breaker::new);
+	}
+
+	/**
+	 * Picks the URL to fetch next from <code>primary</code> and
+	 * <code>alternates</code>, numbered from 0 for the primary, skipping those
+	 * whose bit is set in <code>tried</code>. A server waiting for a probe is
+	 * picked first, and the caller claims the probe with
+	 * {@link Breaker#tryProbe}; otherwise a closed one, at random by weight.
+	 * Returns -1 if every remaining server is open or already being probed.
+	 */
+	public int choose(URI primary, URI[] alternates, int tried, long now) {
+		int n = alternates.length + 1;
+		for (int e = 0; e < n; e++) {
+			if ((tried & 1 << e) == 0 && get(endpoint(primary, alternates, e)).isWaitingForProbe(now)) return e;
+		}
+		double total = 0;
+		double[] weights = new double[n];
+		for (int e = 0; e < n; e++) {
+			if ((tried & 1 << e) != 0) continue;
+			weights[e] = get(endpoint(primary, alternates, e)).getWeight(now);
+			total += weights[e];
+		}
+		if (total <= 0) return -1;
+		double pick = ThreadLocalRandom.current().nextDouble(total);
+		int chosen = -1;
+		for (int e = 0; e < n; e++) {
+			if (weights[e] <= 0) continue;
+			chosen = e;
+			pick -= weights[e];
+			if (pick < 0) break;
+		}
+		return chosen;
+	}
+
+	static URI endpoint(URI primary, URI[] alternates, int e) {
+		return e == 0 ? primary : alternates[e - 1];
+	}
+
+	/** The circuit breaker and recent health of one server */
+	public final class Breaker {
+		private final String name;
+		/** Whether each of the last requests failed, oldest overwritten first */
+		private final boolean[] outcomes = new boolean[window];
+		private int requests;
+		private int failures;
+		private int next;
+
+		private double successRate = 1;
+		private double latencyMillis;
+		private long lastRecorded;
+
+		private State state = State.CLOSED;
+		private long openUntil;
+		private long openFor = cooldown;
+		/** Token of the probe in flight, or 0 */
+		private long probe;
+		private long probesSent;
+		private int probeSuccesses;
+
+		Breaker(String name) {
+			this.name = name;
+		}
+
+		/** Copies the state of a breaker made under other settings */
+		Breaker(Breaker previous) {
+			this(previous.name);
+			synchronized (previous) {
+				successRate = previous.successRate;
+				latencyMillis = previous.latencyMillis;
+				lastRecorded = previous.lastRecorded;
+				if (previous.state != State.CLOSED) {
+					state = State.OPEN;
+					openUntil = previous.openUntil;
+					openFor = Math.min(maxCooldown, Math.max(cooldown, previous.openFor));
+				}
+			}
+		}
+
+		public String getName() { return name; }
+
+		public synchronized State getState() { return state; }
+
+		/** Relative share of normal traffic, or 0 when not closed */
+		synchronized double getWeight(long now) {
+			if (state != State.CLOSED) return 0;
+			double rate = 1 - (1 - successRate) * Math.exp(-Math.max(0, now - lastRecorded) / (double) cooldown);
+			return rate * rate / (latencyMillis + LATENCY_FLOOR_MILLIS);
+		}
+
+		/** Whether the server is open past its cooldown, or half-open with no probe in flight */
+		synchronized boolean isWaitingForProbe(long now) {
+			return state == State.OPEN ? now >= openUntil : state == State.HALF_OPEN && probe == 0;
+		}
+
+		/**
+		 * Claims the single probe of a half-open server, turning an open one
+		 * half-open once its cooldown is over. Returns the probe's token, which
+		 * the caller passes to {@link #record(long, boolean, long, long)} with
+		 * the outcome of the one request it then sends, or 0 if there is no
+		 * probe to claim.
+		 */
+		synchronized long tryProbe(long now) {
+			if (state == State.OPEN && now >= openUntil) {
+				state = State.HALF_OPEN;
+				probeSuccesses = 0;
+				System.out.println("Probing " + name + " again");
+			}
+			if (state != State.HALF_OPEN || probe != 0) return 0;
+			probe = ++probesSent;
+			return probe;
+		}
+
+		/**
+		 * Records the outcome of a request that was not a probe and took
+		 * <code>nanos</code>. Returns whether it counted as a success, which a
+		 * slow request doesn't.
+		 */
+		public boolean record(boolean succeeded, long nanos, long now) {
+			return record(0, succeeded, nanos, now);
+		}
+
+		/**
+		 * Records the outcome of a request that took <code>nanos</code>, sent as
+		 * the probe whose token is <code>probe</code>, or 0 if it wasn't one.
+		 * Only the probe in flight decides whether a half-open server closes or
+		 * opens again. Returns whether it counted as a success.
+		 */
+		public synchronized boolean record(long probe, boolean succeeded, long nanos, long now) {
+			boolean failed = !succeeded || nanos > slowNanos;
+			if (lastRecorded > 0) successRate = 1 - (1 - successRate) * Math.exp(-Math.max(0, now - lastRecorded) / (double) cooldown);
+			lastRecorded = now;
+			successRate += SMOOTHING * ((failed ? 0 : 1) - successRate);
+			double millis = nanos / 1e6;
+			latencyMillis = latencyMillis == 0 ? millis : latencyMillis + SMOOTHING * (millis - latencyMillis);
+
+			switch (state) {
+			case HALF_OPEN:
+				// Other requests, and probes from before the server last opened, don't count
+				if (probe == 0 || probe != this.probe) break;
+				this.probe = 0;
+				if (failed) {
+					open(now, Math.min(maxCooldown, openFor * 2), "a probe failed");
+				}
+				else if (++probeSuccesses >= probes) {
+					state = State.CLOSED;
+					openFor = cooldown;
+					requests = failures = next = 0;
+					System.out.println("Closed the circuit to " + name + " after " + probes + " good probes");
+				}
+				break;
+			case CLOSED:
+				if (requests == window) {
+					if (outcomes[next]) failures--;
+				}
+				else {
+					requests++;
+				}
+				outcomes[next] = failed;
+				if (failed) failures++;
+				next = (next + 1) % window;
+				if (requests >= minRequests && failures >= errorRate * requests) {
+					open(now, cooldown, failures + " of the last " + requests + " requests failed");
+				}
+				break;
+			case OPEN:
+				break;
+			}
+			return !failed;
+		}
+
+		private void open(long now, long millis, String reason) {
+			state = State.OPEN;
+			openFor = millis;
+			openUntil = now + millis;
+			System.err.println("Opened the circuit to " + name + " for " + millis / 1000 + " s: " + reason);
+		}
+
+		@Override
+		public synchronized String toString() {
+			return name + " " + state + " success=" + Math.round(successRate * 100) + "% latency=" + Math.round(latencyMillis) + " ms";
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the validators and freshness lifetime of the last response from
+ * each conditions URL. While a response is fresh according to Cache-Control
+ * max-age or Expires no request is made at all; after that the request is
+ * made conditional with If-None-Match / If-Modified-Since so an unchanged
+ * observation comes back as an empty 304.
+ *
+ * Only the headers are kept: the caller already holds the observation parsed
+ * from the last full response, which is still current on a hit or a 304.
+ */
+public class FetchCache {
+
+	private static class Entry {
+		final String etag;
+		final String lastModified;
+		final long expires;
+
+		Entry(String etag, String lastModified, long expires) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.expires = expires;
+		}
+	}
+
+	private final Map<URI,Entry> entries = new ConcurrentHashMap<URI,Entry>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong revalidations = new AtomicLong();
+
+	/** Requests skipped because the last response was still fresh */
+	public long getHits() { return hits.get(); }
+
+	/** Requests answered with a full response */
+	public long getMisses() { return misses.get(); }
+
+	/** Requests answered with 304 Not Modified */
+	public long getRevalidations() { return revalidations.get(); }
+
+	/**
+	 * Returns true, and counts a hit, if the last response from
+	 * <code>uri</code> may be used without asking the server.
+	 */
+	public boolean isFresh(URI uri, long now) {
+		Entry entry = entries.get(uri);
+		if (entry != null && now < entry.expires) {
+			hits.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/** Forgets the last response from <code>uri</code>, so the next request fetches it in full */
+	public void invalidate(URI uri) {
+		entries.remove(uri);
+	}
+
+	public void addConditionalHeaders(URI uri, HttpRequest.Builder request) {
+		Entry entry = entries.get(uri);
+		if (entry == null) return;
+		if (entry.etag != null) request.header("If-None-Match", entry.etag);
+		if (entry.lastModified != null) request.header("If-Modified-Since", entry.lastModified);
+	}
+
+	/**
+	 * Records the validators and lifetime of a response. Returns true if it is
+	 * a 304, meaning the previous observation is still current and the body
+	 * should not be parsed.
+	 */
+	public boolean update(URI uri, HttpResponse<?> response, long now) {
+		int status = response.statusCode();
+		if (status == 304) {
+			revalidations.incrementAndGet();
+			Entry previous = entries.get(uri);
+			HttpHeaders headers = response.headers();
+			String etag = headers.firstValue("ETag").orElse(previous != null ? previous.etag : null);
+			String lastModified = headers.firstValue("Last-Modified").orElse(previous != null ? previous.lastModified : null);
+			entries.put(uri, new Entry(etag, lastModified, expires(headers, now)));
+			return true;
+		}
+
+		misses.incrementAndGet();
+		if (status != 200 || isNoStore(response.headers())) {
+			entries.remove(uri);
+		}
+		else {
+			HttpHeaders headers = response.headers();
+			entries.put(uri, new Entry(headers.firstValue("ETag").orElse(null),
+					headers.firstValue("Last-Modified").orElse(null),
+					expires(headers, now)));
+		}
+		return false;
+	}
+
+	private static boolean isNoStore(HttpHeaders headers) {
+		for (String value : headers.allValues("Cache-Control")) {
+			if (value.toLowerCase().contains("no-store")) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Works out when a response stops being fresh, preferring max-age over
+	 * Expires as HTTP requires. Expires is taken relative to the server's Date
+	 * header so a skewed local clock does not matter.
+	 */
+	static long expires(HttpHeaders headers, long now) {
+		long maxAge = -1;
+		for (String value : headers.allValues("Cache-Control")) {
+			for (String directive : value.split(",")) {
+				directive = directive.trim().toLowerCase();
+				if (directive.equals("no-cache")) {
+					return now;
+				}
+				if (directive.startsWith("max-age=")) {
+					try {
+						maxAge = Long.parseLong(directive.substring(8).trim());
+					}
+					catch (NumberFormatException ignore) {}
+				}
+			}
+		}
+		if (maxAge >= 0) {
+			long age = 0;
+			try {
+				age = Math.max(0, headers.firstValueAsLong("Age").orElse(0));
+			}
+			catch (NumberFormatException ignore) {}
+			return now + Math.max(0, maxAge - age) * 1000;
+		}
+
+		String expires = headers.firstValue("Expires").orElse(null);
+		if (expires != null) {
+			long expiresAt = parseDate(expires);
+			if (expiresAt < 0) return now;
+			long date = parseDate(headers.firstValue("Date").orElse(""));
+			return date < 0 ? expiresAt : now + Math.max(0, expiresAt - date);
+		}
+		return now;
+	}
+
+	private static long parseDate(String value) {
+		try {
+			return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+		}
+		catch (DateTimeParseException ex) {
+			return -1;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "hits=" + hits.get() + " misses=" + misses.get() + " revalidations=" + revalidations.get();
+	}
+}
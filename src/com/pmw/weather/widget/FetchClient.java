@@ -0,0 +1,219 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pmw.weather.widget;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * The HTTP client used for every conditions request. One client is shared by
+ * all locations, so connections are kept alive and reused per host, HTTP/2 is
+ * negotiated where the server offers it, and TLS sessions are resumed.
+ * Responses are requested compressed and decompressed as they are read.
+ *
+ * If trustStore names a key store, as a classpath resource or a file, its
+ * certificates are trusted for these requests only; the JVM default is left
+ * alone. Timeouts are set in seconds with connectTimeout (10) and
+ * requestTimeout (30), the latter covering the wait for response headers, and
+ * fetchDeadline (60) limits the whole request including the body. Bodies
+ * larger than maxResponseSize bytes (1048576), before or after decompression,
+ * are refused.
+ */
+public class FetchClient {
+
+	private static final String ACCEPT_ENCODING = "gzip, deflate";
+
+	private final HttpClient client;
+	private final Executor executor;
+	private final Duration requestTimeout;
+	private final long deadlineNanos;
+	private final long maxResponseSize;
+
+	public FetchClient(Properties props, Executor executor) {
+		HttpClient.Builder builder = HttpClient.newBuilder()
+				.executor(executor)
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(Duration.ofSeconds(setting(props, "connectTimeout", 10)));
+
+		String trustStore = props.getProperty("trustStore");
+		if (trustStore != null && !trustStore.isBlank()) {
+			try {
+				builder.sslContext(createSSLContext(trustStore.trim()));
+			}
+			catch (IOException | GeneralSecurityException ex) {
+				System.err.println("Error opening " + trustStore + ", using the default trust store: " + ex.getMessage());
+			}
+		}
+		this.client = builder.build();
+		this.executor = executor;
+		long deadline = setting(props, "fetchDeadline", 60);
+		this.deadlineNanos = TimeUnit.SECONDS.toNanos(deadline);
+		this.requestTimeout = Duration.ofSeconds(Math.min(deadline, setting(props, "requestTimeout", 30)));
+		this.maxResponseSize = setting(props, "maxResponseSize", 1 << 20);
+	}
+
+	/** A positive whole number setting, or the default if it is missing or invalid */
+	private static long setting(Properties props, String key, long defaultValue) {
+		String value = props.getProperty(key);
+		if (value == null) return defaultValue;
+		try {
+			return Math.max(1, Long.parseLong(value.trim()));
+		}
+		catch (NumberFormatException ex) {
+			System.err.println("Invalid " + key + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/** A TLS context trusting only the certificates in the named key store */
+	static SSLContext createSSLContext(String trustStore) throws IOException, GeneralSecurityException {
+		InputStream is = FetchClient.class.getResourceAsStream(trustStore);
+		if (is == null) {
+			File file = new File(trustStore);
+			if (!file.isFile()) throw new IOException("not found");
+			is = new FileInputStream(file);
+		}
+		KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+		try (InputStream in = is) {
+			keyStore.load(in, null);
+		}
+		TrustManagerFactory trustFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trustFactory.init(keyStore);
+		SSLContext sslContext = SSLContext.getInstance("TLS");
+		sslContext.init(null, trustFactory.getTrustManagers(), null);
+		return sslContext;
+	}
+
+	/** A GET request for <code>uri</code> asking for a compressed response */
+	public HttpRequest.Builder newRequest(URI uri) {
+		return HttpRequest.newBuilder(uri)
+				.GET()
+				.timeout(requestTimeout)
+				.header("Accept-Encoding", ACCEPT_ENCODING);
+	}
+
+	/** Sends a request, completing when the response headers have arrived */
+	public CompletableFuture<HttpResponse<InputStream>> send(HttpRequest request) {
+		return client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+	}
+
+	/**
+	 * Sends <code>hedge</code> if <code>primary</code> has no response after
+	 * <code>delayNanos</code>, completing with whichever response arrives first.
+	 * The body of the other is closed unread when it arrives. Fails only once
+	 * every request sent has failed, with the last failure. Calls
+	 * <code>onHedge</code> when the hedge is sent.
+	 */
+	public CompletableFuture<HttpResponse<InputStream>> hedge(CompletableFuture<HttpResponse<InputStream>> primary,
+			HttpRequest hedge, long delayNanos, Runnable onHedge) {
+		CompletableFuture<HttpResponse<InputStream>> result = new CompletableFuture<HttpResponse<InputStream>>();
+		AtomicInteger pending = new AtomicInteger(1);
+		primary.whenComplete((response, ex) -> race(result, pending, response, ex));
+		CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, executor).execute(() -> {
+			if (result.isDone()) return;
+			pending.incrementAndGet();
+			onHedge.run();
+			send(hedge).whenComplete((response, ex) -> race(result, pending, response, ex));
+		});
+		return result;
+	}
+
+	private static void race(CompletableFuture<HttpResponse<InputStream>> result, AtomicInteger pending,
+			HttpResponse<InputStream> response, Throwable ex) {
+		if (ex == null) {
+			if (!result.complete(response)) {
+				try {
+					response.body().close();
+				}
+				catch (IOException ignore) {}
+			}
+		}
+		else if (pending.decrementAndGet() == 0) {
+			result.completeExceptionally(ex);
+		}
+	}
+
+	/**
+	 * The URI a response was requested from, before any redirects; for a
+	 * hedged request, tells which of the two requests answered.
+	 */
+	public static URI requestedURI(HttpResponse<?> response) {
+		while (response.previousResponse().isPresent()) response = response.previousResponse().get();
+		return response.request().uri();
+	}
+
+	/**
+	 * The decoded body of a response sent at <code>startNanos</code>, failing
+	 * once it exceeds maxResponseSize or the fetchDeadline passes. Reading it
+	 * blocks, so it is done off the client's threads.
+	 */
+	public InputStream open(HttpResponse<?> response, InputStream body, long startNanos) throws IOException {
+		String host = response.uri().getHost();
+		InputStream raw = new BoundedInputStream(body, host, maxResponseSize, startNanos + deadlineNanos, deadlineNanos);
+		try {
+			return new BoundedInputStream(decode(response, raw), host, maxResponseSize, 0, deadlineNanos);
+		}
+		catch (IOException ex) {
+			raw.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Wraps a response body so it is decompressed as it is read, according to
+	 * the response's Content-Encoding.
+	 */
+	static InputStream decode(HttpResponse<?> response, InputStream body) throws IOException {
+		String encoding = response.headers().firstValue("Content-Encoding").orElse("").trim();
+		if (encoding.isEmpty() || encoding.equalsIgnoreCase("identity")) return body;
+		if (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip")) {
+			return new GZIPInputStream(body, 8192);
+		}
+		if (encoding.equalsIgnoreCase("deflate")) {
+			// Meant to be zlib wrapped, but some servers send raw deflate
+			BufferedInputStream in = new BufferedInputStream(body, 8192);
+			in.mark(2);
+			int b0 = in.read();
+			int b1 = in.read();
+			in.reset();
+			boolean zlib = b0 >= 0 && b1 >= 0 && (b0 & 0x0f) == 8 && ((b0 << 8) | b1) % 31 == 0;
+			return new InflaterInputStream(in, new Inflater(!zlib), 8192);
+		}
+		throw new IOException("Unsupported Content-Encoding " + encoding);
+	}
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Estimates the temperature between polls from an hourly forecast, so a
+ * location can be polled far less often while the tray still follows the
+ * day's warming and cooling.
+ *
+ * A location takes part when forecastURL is set for it. The forecast is
+ * fetched every forecastInterval seconds (default 3600) and an estimate is
+ * published every estimateInterval seconds (default 60) once the last real
+ * observation is that old. Each estimate is the forecast for now plus the
+ * difference between the last observation and the forecast for its time,
+ * which fades with a three hour time constant; the next real observation
+ * replaces it and resets the difference.
+ *
+ * Like {@link PollScheduler}, each location's state is only touched by the
+ * engine's polls of that location.
+ */
+public class ForecastEstimator {
+
+	private static final long BIAS_TIME_CONSTANT = 3 * 60 * 60 * 1000L;
+	private static final long RETRY_DELAY = 5 * 60 * 1000L;
+
+	private final List<Location> locations;
+	/** Forecast URL of each location, or null if it has none */
+	private final URI[] uris;
+	private final long[] forecastInterval;
+	private final long[] estimateInterval;
+
+	private final ForecastSeries[] series;
+	private final long[] nextFetch;
+	private final long[] nextEstimate;
+	private final Observation[] actual;
+	private final long[] actualTime;
+	/** Last observed temperature less the forecast for its time, or 0 */
+	private final double[] bias;
+
+	/**
+	 * Reads the settings of each location, keeping the forecast and last
+	 * observation of those in <code>previous</code> whose forecast URL is
+	 * unchanged.
+	 */
+	public ForecastEstimator(List<Location> locations, Properties props, ForecastEstimator previous) {
+		int n = locations.size();
+		this.locations = List.copyOf(locations);
+		uris = new URI[n];
+		forecastInterval = new long[n];
+		estimateInterval = new long[n];
+		series = new ForecastSeries[n];
+		nextFetch = new long[n];
+		nextEstimate = new long[n];
+		actual = new Observation[n];
+		actualTime = new long[n];
+		bias = new double[n];
+		for (int i = 0; i < n; i++) {
+			Location location = locations.get(i);
+			String url = location.getProperty(props, "forecastURL");
+			if (url == null || url.trim().isEmpty()) continue;
+			try {
+				uris[i] = PollingEngine.toURI(url.trim());
+			}
+			catch (IllegalArgumentException | MalformedURLException | URISyntaxException ex) {
+				System.err.println("Invalid forecastURL for " + location + ": " + url);
+				continue;
+			}
+			forecastInterval[i] = Math.max(60, seconds(location, props, "forecastInterval", 3600)) * 1000;
+			estimateInterval[i] = Math.max(1, seconds(location, props, "estimateInterval", 60)) * 1000;
+
+			int old = previous != null ? previous.locations.indexOf(location) : -1;
+			if (old >= 0 && uris[i].equals(previous.uris[old])) {
+				series[i] = previous.series[old];
+				nextFetch[i] = previous.nextFetch[old];
+				actual[i] = previous.actual[old];
+				actualTime[i] = previous.actualTime[old];
+				bias[i] = previous.bias[old];
+			}
+		}
+	}
+
+	private static long seconds(Location location, Properties props, String key, long defaultValue) {
+		String value = location.getProperty(props, key);
+		if (value == null) return defaultValue;
+		try {
+			return Long.parseLong(value.trim());
+		}
+		catch (NumberFormatException ex) {
+			System.err.println("Invalid " + key + " for " + location + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/** The forecast URL of a location, or null if it has none */
+	public URI getURI(int i) { return uris[i]; }
+
+	public ForecastSeries getSeries(int i) { return series[i]; }
+
+	public boolean isFetchDue(int i, long now) {
+		return uris[i] != null && nextFetch[i] <= now;
+	}
+
+	public void fetched(int i, ForecastSeries forecast, long now) {
+		series[i] = forecast;
+		nextFetch[i] = now + forecastInterval[i];
+		if (actual[i] != null) bias[i] = bias(forecast, actual[i], actualTime[i]);
+	}
+
+	public void fetchFailed(int i, long now) {
+		nextFetch[i] = now + Math.min(forecastInterval[i], RETRY_DELAY);
+	}
+
+	/** Records a real observation, which estimates then start from */
+	public void observed(int i, Observation observation, long now) {
+		if (uris[i] == null || Double.isNaN(observation.getTemperature())) return;
+		actual[i] = observation;
+		actualTime[i] = observation.getObservationTime() > 0 ? observation.getObservationTime() : now;
+		bias[i] = bias(series[i], observation, actualTime[i]);
+		nextEstimate[i] = now + estimateInterval[i];
+	}
+
+	private static double bias(ForecastSeries forecast, Observation observation, long time) {
+		double expected = forecast != null ? forecast.temperatureAt(time) : Double.NaN;
+		return Double.isNaN(expected) ? 0 : observation.getTemperature() - expected;
+	}
+
+	/**
+	 * An estimate of the conditions at a location if one is due, otherwise or
+	 * if the forecast does not cover <code>now</code> null. The estimate is the
+	 * last observation with the temperature replaced.
+	 */
+	public Observation estimate(int i, long now) {
+		if (actual[i] == null || series[i] == null || nextEstimate[i] > now) return null;
+		nextEstimate[i] = now + estimateInterval[i];
+		double forecast = series[i].temperatureAt(now);
+		if (Double.isNaN(forecast)) return null;
+		double age = Math.max(0, now - actualTime[i]);
+		double temperature = forecast + bias[i] * Math.exp(-age / BIAS_TIME_CONSTANT);
+		return new Observation.Builder().from(actual[i])
+				.observationTime(now)
+				.temperature(temperature)
+				.estimated(true)
+				.build();
+	}
+
+	/** The earliest time a forecast fetch or estimate is due */
+	public long getNextTime() {
+		long next = Long.MAX_VALUE;
+		for (int i = 0; i < uris.length; i++) {
+			if (uris[i] == null) continue;
+			next = Math.min(next, nextFetch[i]);
+			if (actual[i] != null && series[i] != null) next = Math.min(next, nextEstimate[i]);
+		}
+		return next;
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Forecast temperatures of one location as two parallel arrays, times in
+ * epoch milliseconds and temperatures as floats, interpolated linearly
+ * between the forecast times. Immutable.
+ */
+public final class ForecastSeries {
+
+	private final long[] times;
+	private final float[] temperatures;
+
+	private ForecastSeries(long[] times, float[] temperatures) {
+		this.times = times;
+		this.temperatures = temperatures;
+	}
+
+	/**
+	 * The temperatures of a parsed forecast, in time order. Entries without a
+	 * time or temperature are left out, as are repeated times.
+	 */
+	public static ForecastSeries of(List<Observation> forecast) {
+		long[] times = new long[forecast.size()];
+		float[] temperatures = new float[forecast.size()];
+		int size = 0;
+		for (Observation obs : forecast) {
+			long time = obs.getObservationTime();
+			if (time <= 0 || Double.isNaN(obs.getTemperature())) continue;
+			// Insertion sort, which moves nothing for the ordered lists providers send
+			int i = size;
+			while (i > 0 && times[i - 1] > time) {
+				times[i] = times[i - 1];
+				temperatures[i] = temperatures[i - 1];
+				i--;
+			}
+			if (i > 0 && times[i - 1] == time) {
+				System.arraycopy(times, i + 1, times, i, size - i);
+				System.arraycopy(temperatures, i + 1, temperatures, i, size - i);
+				continue;
+			}
+			times[i] = time;
+			temperatures[i] = (float) obs.getTemperature();
+			size++;
+		}
+		return new ForecastSeries(Arrays.copyOf(times, size), Arrays.copyOf(temperatures, size));
+	}
+
+	public int size() { return times.length; }
+
+	/** Time of the last forecast, or 0 if there is none */
+	public long getEndTime() {
+		return times.length > 0 ? times[times.length - 1] : 0;
+	}
+
+	/**
+	 * The forecast temperature at <code>time</code>, interpolated between the
+	 * forecast times either side of it, or NaN outside the forecast.
+	 */
+	public double temperatureAt(long time) {
+		int i = Arrays.binarySearch(times, time);
+		if (i >= 0) return temperatures[i];
+		int after = -i - 1;
+		if (after == 0 || after == times.length) return Double.NaN;
+		int before = after - 1;
+		double fraction = (double) (time - times[before]) / (times[after] - times[before]);
+		return temperatures[before] + fraction * (temperatures[after] - temperatures[before]);
+	}
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pmw.weather.widget;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.pmw.AppPropertiesListener;
+import com.pmw.pmwApplication;
+
+/**
+ * Runs the polling pipeline without a desktop and publishes the results with
+ * an {@link ObservationServer}. Started with <code>--headless</code>; nothing
+ * here touches AWT or Swing, so it runs on servers with no display and
+ * without the cost of loading the toolkit.
+ *
+ * The server listens on headlessAddress:headlessPort from the properties file
+ * (default 127.0.0.1:9464); <code>--bind=ADDRESS</code> and
+ * <code>--port=N</code> on the command line take precedence.
+ */
+public class HeadlessWidget extends pmwApplication implements AppPropertiesListener {
+
+	private static final long startNanos = System.nanoTime();
+
+	private static final String DEFAULT_ADDRESS = "127.0.0.1";
+	private static final int DEFAULT_PORT = 9464;
+
+	private final PollingEngine engine;
+	private final ObservationHistory history;
+	private final ObservationServer server;
+
+	public HeadlessWidget(String bindAddress, Integer port) throws IOException {
+		super(WeatherWidget.appName, WeatherWidget.appVersion, WeatherWidget.appCopyright, WeatherWidget.appAuthor);
+
+		String propFile = WeatherWidget.loadSettings(this);
+		Properties props = getAppProperties();
+		List<Location> locations = Location.fromProperties(props);
+		if (locations.isEmpty()) {
+			System.err.println("No wxConditionsURL is set in " + propFile);
+		}
+
+		String address = bindAddress != null ? bindAddress : props.getProperty("headlessAddress", DEFAULT_ADDRESS).trim();
+		int listenPort = port != null ? port : parsePort(props.getProperty("headlessPort"));
+		server = new ObservationServer(new InetSocketAddress(address, listenPort), locations);
+
+		// Serve the last good conditions until each location has been polled
+		ObservationSnapshot snapshot = new ObservationSnapshot(new File(getAppDataDir(), "snapshot.bin"), locations);
+		for (Map.Entry<Location,Observation> entry : snapshot.load().entrySet()) {
+			server.showSnapshot(entry.getKey(), entry.getValue(), snapshot.getSavedTime(entry.getKey()));
+		}
+
+		engine = new PollingEngine(locations, props);
+		engine.addListener(server);
+		engine.addListener(snapshot);
+		engine.addListener(new ObservationListener() {
+			@Override
+			public void observationUpdated(Location location, Observation observation) {
+			}
+
+			@Override
+			public void pollFailed(Location location, Throwable cause) {
+				System.err.println("Error polling " + location.getDisplayName() + ": "
+						+ (cause.getMessage() != null ? cause.getMessage() : cause.toString()));
+			}
+		});
+
+		history = new ObservationHistory(new File(getAppDataDir(), "history"), locations, props);
+		engine.addListener(history);
+
+		addAppPropertiesListener(this);
+		try {
+			watchAppProperties();
+		}
+		catch (IOException ex) {
+			System.err.println("Unable to watch " + propFile + " for changes: " + ex.getMessage());
+		}
+
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				engine.shutdown();
+				server.stop();
+				history.close();
+			}
+		});
+
+		server.start();
+		InetSocketAddress bound = server.getAddress();
+		System.out.println("Serving http://" + bound.getHostString() + ":" + bound.getPort()
+				+ "/observations and /metrics, started in " + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+	}
+
+	private static int parsePort(String value) {
+		if (value == null) return DEFAULT_PORT;
+		try {
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException ex) {
+			System.err.println("Invalid headlessPort: " + value);
+			return DEFAULT_PORT;
+		}
+	}
+
+	/** Polls until the process is stopped */
+	public void run() {
+		engine.run();
+	}
+
+	@Override
+	public void appPropertiesChanged(Properties props) {
+		List<Location> locations = Location.fromProperties(props);
+		server.setLocations(locations);
+		history.open(locations, props);
+		engine.reconfigure(locations, props);
+	}
+
+	public static void main(String[] args) {
+		String bindAddress = null;
+		Integer port = null;
+		for (String arg : args) {
+			try {
+				if (arg.startsWith("--port=")) {
+					port = Integer.valueOf(arg.substring("--port=".length()));
+					continue;
+				}
+			}
+			catch (NumberFormatException ex) {
+				// fall through to the usage message
+			}
+			if (arg.startsWith("--bind=")) {
+				bindAddress = arg.substring("--bind=".length());
+			}
+			else if (!arg.equals("--headless")) {
+				System.err.println("Invalid option " + arg);
+				System.err.println("Usage: --headless [--port=N] [--bind=ADDRESS]");
+				System.exit(2);
+			}
+		}
+
+		try {
+			new HeadlessWidget(bindAddress, port).run();
+		}
+		catch (IOException ex) {
+			System.err.println("Unable to start the server: " + ex.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,349 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only long-term store of observations in compressed blocks, for
+ * keeping and shipping months of readings that the {@link HistoryFile} ring
+ * would overwrite. Each block holds up to {@link #BLOCK_RECORDS} records as
+ * columns: the timestamps as zigzag varints of their delta-of-delta, which is
+ * zero for readings on a steady schedule, then each value column as the XOR
+ * with the previous value with its zero leading and trailing bytes dropped,
+ * which is a single byte when a reading repeats. The columns are then deflated.
+ * A year of per-minute readings takes a few megabytes instead of the 29 MB it
+ * takes in the ring.
+ *
+ * Every block header carries its time range, so a scan skips blocks outside
+ * the range without inflating them, and a CRC, so a block torn by a crash is
+ * dropped when the archive is next opened. There must be a single writer; a
+ * reader opened with {@link #scan} may run while it appends.
+ */
+public class HistoryArchive implements Closeable {
+
+	/** Records in a full block, under the smallest ring capacity of a day a minute */
+	public static final int BLOCK_RECORDS = 1024;
+
+	private static final int MAGIC = 0x57574131;	// "WWA1"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final int BLOCK_MAGIC = 0x424C4B31;	// "BLK1"
+	private static final int BLOCK_HEADER_SIZE = 36;
+	private static final int COLUMNS = 6;
+	/** Longest encoding of one record: a 10 byte varint and 9 bytes a value */
+	private static final int MAX_RECORD_SIZE = 10 + COLUMNS * 9;
+
+	private final File file;
+	private final FileChannel channel;
+	private final boolean readOnly;
+
+	private final long[] times = new long[BLOCK_RECORDS];
+	private final double[][] columns = new double[COLUMNS][BLOCK_RECORDS];
+	private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+	private final CRC32 crc = new CRC32();
+	private byte[] raw = new byte[BLOCK_RECORDS * MAX_RECORD_SIZE];
+	private byte[] packed = new byte[raw.length];
+	private Deflater deflater;
+	private Inflater inflater;
+
+	private int pending;
+	private long size;
+	private long lastTime = Long.MIN_VALUE;
+
+	/**
+	 * Opens or creates an archive for appending. A torn block at the end, left
+	 * by a crash while it was written, is truncated away.
+	 */
+	public static HistoryArchive open(File file) throws IOException {
+		return new HistoryArchive(file, false);
+	}
+
+	/**
+	 * Opens an existing archive for scanning only. Returns null if the file
+	 * does not exist.
+	 */
+	public static HistoryArchive openReadOnly(File file) throws IOException {
+		return file.isFile() ? new HistoryArchive(file, true) : null;
+	}
+
+	private HistoryArchive(File file, boolean readOnly) throws IOException {
+		this.file = file;
+		this.readOnly = readOnly;
+		this.channel = readOnly ? FileChannel.open(file.toPath(), StandardOpenOption.READ)
+				: FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			ByteBuffer fileHeader = ByteBuffer.allocate(HEADER_SIZE);
+			if (readFully(fileHeader, 0) && fileHeader.getInt(0) == MAGIC && fileHeader.getInt(4) == VERSION) {
+				size = validBlocks();
+				if (!readOnly && size < channel.size()) {
+					System.err.println("Truncating torn block at the end of " + file);
+					channel.truncate(size);
+				}
+			}
+			else if (readOnly || channel.size() >= HEADER_SIZE) {
+				throw new IOException(file + " is not a history archive");
+			}
+			else {
+				fileHeader.clear();
+				fileHeader.putInt(MAGIC).putInt(VERSION).putLong(0).flip();
+				channel.truncate(0);
+				channel.write(fileHeader, 0);
+				size = HEADER_SIZE;
+			}
+		}
+		catch (IOException | RuntimeException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	/** Walks the block headers, returning the end of the last complete block */
+	private long validBlocks() throws IOException {
+		long position = HEADER_SIZE;
+		while (readBlockHeader(position)) {
+			int length = header.getInt(28);
+			if (length > packed.length) packed = new byte[length];
+			if (!readFully(ByteBuffer.wrap(packed, 0, length), position + BLOCK_HEADER_SIZE)) break;
+			crc.reset();
+			crc.update(packed, 0, length);
+			if ((int) crc.getValue() != header.getInt(32)) break;
+			lastTime = header.getLong(16);
+			position += BLOCK_HEADER_SIZE + length;
+		}
+		return position;
+	}
+
+	/** Time of the newest archived record, or Long.MIN_VALUE when empty */
+	public long getLastTime() { return lastTime; }
+
+	/** Bytes of complete blocks, including the file header */
+	public long getSize() { return size; }
+
+	/**
+	 * Moves every full block of records newer than the archive out of
+	 * <code>history</code>, leaving the rest for a later call. Returns the
+	 * number of records archived.
+	 */
+	public synchronized int archive(HistoryFile history) throws IOException {
+		int archived = 0;
+		while (history.countFrom(lastTime + 1) >= BLOCK_RECORDS) {
+			pending = 0;
+			history.scan(lastTime + 1, Long.MAX_VALUE, BLOCK_RECORDS, this::add);
+			if (pending < BLOCK_RECORDS) break;
+			writeBlock();
+			archived += pending;
+		}
+		return archived;
+	}
+
+	private void add(long time, double temperature, double dewPoint, double humidity,
+			double pressure, double windSpeed, double windDirection) {
+		int i = pending++;
+		times[i] = time;
+		columns[0][i] = temperature;
+		columns[1][i] = dewPoint;
+		columns[2][i] = humidity;
+		columns[3][i] = pressure;
+		columns[4][i] = windSpeed;
+		columns[5][i] = windDirection;
+	}
+
+	private void writeBlock() throws IOException {
+		if (readOnly) throw new IOException(file + " is open read only");
+		int rawLength = encode(times, columns, pending, raw);
+
+		if (deflater == null) deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		deflater.reset();
+		deflater.setInput(raw, 0, rawLength);
+		deflater.finish();
+		int length = 0;
+		while (!deflater.finished()) {
+			if (length == packed.length) packed = Arrays.copyOf(packed, packed.length * 2);
+			length += deflater.deflate(packed, length, packed.length - length);
+		}
+		crc.reset();
+		crc.update(packed, 0, length);
+
+		header.clear();
+		header.putInt(BLOCK_MAGIC).putInt(pending).putLong(times[0]).putLong(times[pending - 1])
+				.putInt(rawLength).putInt(length).putInt((int) crc.getValue()).flip();
+		long position = size;
+		channel.write(header, position);
+		ByteBuffer body = ByteBuffer.wrap(packed, 0, length);
+		while (body.hasRemaining()) channel.write(body, position + BLOCK_HEADER_SIZE + body.position());
+		size = position + BLOCK_HEADER_SIZE + length;
+		lastTime = times[pending - 1];
+	}
+
+	/**
+	 * Visits, oldest first, every archived record with
+	 * <code>from &lt;= time &lt; to</code>, inflating one block at a time.
+	 * Blocks appended by another process since the archive was opened are
+	 * included. Returns the number of records visited.
+	 */
+	public synchronized int scan(long from, long to, HistoryFile.RecordVisitor visitor) throws IOException {
+		int visited = 0;
+		long position = HEADER_SIZE;
+		while (readBlockHeader(position)) {
+			int count = header.getInt(4);
+			long first = header.getLong(8);
+			long last = header.getLong(16);
+			int rawLength = header.getInt(24);
+			int length = header.getInt(28);
+			long next = position + BLOCK_HEADER_SIZE + length;
+			if (first >= to) break;
+			if (last < from) {
+				position = next;
+				continue;
+			}
+			if (length > packed.length) packed = new byte[length];
+			if (rawLength > raw.length) raw = new byte[rawLength];
+			ByteBuffer body = ByteBuffer.wrap(packed, 0, length);
+			if (!readFully(body, position + BLOCK_HEADER_SIZE)) break;
+			crc.reset();
+			crc.update(packed, 0, length);
+			if ((int) crc.getValue() != header.getInt(32)) break;	// still being written
+
+			if (inflater == null) inflater = new Inflater();
+			inflater.reset();
+			inflater.setInput(packed, 0, length);
+			try {
+				if (inflater.inflate(raw, 0, rawLength) != rawLength) throw new IOException("Corrupt block in " + file);
+			}
+			catch (DataFormatException ex) {
+				throw new IOException("Corrupt block in " + file + ": " + ex.getMessage());
+			}
+			decode(raw, count, first, times, columns);
+			for (int i = 0; i < count; i++) {
+				long time = times[i];
+				if (time < from) continue;
+				if (time >= to) return visited;
+				visitor.record(time, columns[0][i], columns[1][i], columns[2][i], columns[3][i], columns[4][i], columns[5][i]);
+				visited++;
+			}
+			position = next;
+		}
+		return visited;
+	}
+
+	/** Reads the block header at <code>position</code>, false at the end of the archive */
+	private boolean readBlockHeader(long position) throws IOException {
+		header.clear();
+		if (!readFully(header, position) || header.getInt(0) != BLOCK_MAGIC) return false;
+		int count = header.getInt(4);
+		int rawLength = header.getInt(24);
+		int length = header.getInt(28);
+		return count > 0 && count <= BLOCK_RECORDS && rawLength > 0 && rawLength <= BLOCK_RECORDS * MAX_RECORD_SIZE
+				&& length > 0 && length <= channel.size() - position - BLOCK_HEADER_SIZE;
+	}
+
+	private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) return false;
+		}
+		return true;
+	}
+
+	/** Writes the columns of <code>count</code> records, returning the length */
+	static int encode(long[] times, double[][] columns, int count, byte[] out) {
+		int pos = 0;
+		long previousDelta = 0;
+		for (int i = 1; i < count; i++) {
+			long delta = times[i] - times[i - 1];
+			long dod = delta - previousDelta;
+			previousDelta = delta;
+			// Zigzag so small negative changes stay short
+			long v = (dod << 1) ^ (dod >> 63);
+			while ((v & ~0x7FL) != 0) {
+				out[pos++] = (byte) ((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			out[pos++] = (byte) v;
+		}
+		for (double[] column : columns) {
+			long previous = 0;
+			for (int i = 0; i < count; i++) {
+				long bits = Double.doubleToLongBits(column[i]);
+				long xor = bits ^ previous;
+				previous = bits;
+				if (xor == 0) {
+					out[pos++] = 0;
+					continue;
+				}
+				int lead = Long.numberOfLeadingZeros(xor) >>> 3;
+				int trail = Long.numberOfTrailingZeros(xor) >>> 3;
+				out[pos++] = (byte) (0x80 | lead << 3 | trail);
+				for (int shift = (7 - lead) * 8; shift >= trail * 8; shift -= 8) {
+					out[pos++] = (byte) (xor >>> shift);
+				}
+			}
+		}
+		return pos;
+	}
+
+	/** Reverses {@link #encode}; the first time is kept in the block header */
+	static void decode(byte[] in, int count, long firstTime, long[] times, double[][] columns) {
+		int pos = 0;
+		times[0] = firstTime;
+		long delta = 0;
+		for (int i = 1; i < count; i++) {
+			long v = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = in[pos++];
+				v |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			delta += (v >>> 1) ^ -(v & 1);
+			times[i] = times[i - 1] + delta;
+		}
+		for (double[] column : columns) {
+			long previous = 0;
+			for (int i = 0; i < count; i++) {
+				int control = in[pos++] & 0xFF;
+				if (control != 0) {
+					int lead = (control >>> 3) & 7;
+					int trail = control & 7;
+					long xor = 0;
+					for (int n = 8 - lead - trail; n > 0; n--) {
+						xor = xor << 8 | (in[pos++] & 0xFF);
+					}
+					previous ^= xor << (trail * 8);
+				}
+				column[i] = Double.longBitsToDouble(previous);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!readOnly) channel.force(false);
+		channel.close();
+	}
+}
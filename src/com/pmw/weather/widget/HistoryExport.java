@@ -0,0 +1,235 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+import com.pmw.pmwApplication;
+
+/**
+ * Writes the recorded history of each location as CSV or newline-delimited
+ * JSON, oldest first: the {@link HistoryArchive} and then the newer records
+ * still only in the {@link HistoryFile} ring. Started with
+ * <code>--export</code>; both files are opened read only, so it can run while
+ * the widget is recording, and records are streamed one block at a time so
+ * memory use does not grow with the range exported.
+ */
+public class HistoryExport extends pmwApplication {
+
+	private static final String USAGE = "Usage: --export [--format=csv|ndjson] [--from=TIME] [--to=TIME] [--location=N] [--out=FILE]\n"
+			+ "TIME is a date such as 2026-03-01, a local time such as 2026-03-01T06:00 or an instant such as 2026-03-01T11:00:00Z";
+	private static final String[] COLUMNS = { "temperature", "dewPoint", "humidity", "pressure", "windSpeed", "windDirection" };
+
+	private final boolean json;
+	private final StringBuilder sb = new StringBuilder(256);
+	private Writer out;
+	private Location location;
+	private long lastTime;
+	private long records;
+
+	public HistoryExport(boolean json) {
+		super(WeatherWidget.appName, WeatherWidget.appVersion, WeatherWidget.appCopyright, WeatherWidget.appAuthor);
+		this.json = json;
+	}
+
+	/**
+	 * Exports the records with <code>from &lt;= time &lt; to</code> of one
+	 * location, or of every location when <code>index</code> is negative.
+	 * Returns the number of records written.
+	 */
+	public long export(long from, long to, int index, OutputStream stream) throws IOException {
+		// Read only: unlike the widget, an export doesn't write default settings where there are none
+		loadAppProperties(getAppDataDir() + "/weatherWidget.properties");
+		List<Location> locations = Location.fromProperties(getAppProperties());
+		File dir = new File(getAppDataDir(), "history");
+		out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16);
+		records = 0;
+		if (!json) {
+			out.write("location,name,time");
+			for (String column : COLUMNS) out.append(',').write(column);
+			out.write('\n');
+		}
+		try {
+			for (Location location : locations) {
+				if (index < 0 || location.getIndex() == index) export(dir, location, from, to);
+			}
+		}
+		catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+		out.flush();
+		return records;
+	}
+
+	private void export(File dir, Location location, long from, long to) throws IOException {
+		this.location = location;
+		lastTime = Long.MIN_VALUE;
+		long start = from;
+		// Files not yet taken over from an older version are still kept by location number alone
+		File archiveFile = ObservationHistory.archiveFile(dir, location);
+		File historyFile = ObservationHistory.historyFile(dir, location);
+		if (!historyFile.exists()) {
+			archiveFile = ObservationHistory.legacyArchiveFile(dir, location);
+			historyFile = ObservationHistory.legacyHistoryFile(dir, location);
+		}
+		try (HistoryArchive archive = HistoryArchive.openReadOnly(archiveFile)) {
+			if (archive != null) {
+				archive.scan(from, to, this::write);
+				start = Math.max(start, archive.getLastTime() + 1);
+			}
+		}
+		// Records since the last archived block, or all of them if nothing has been archived yet
+		start = Math.max(start, lastTime + 1);
+		try (HistoryFile history = HistoryFile.openReadOnly(historyFile)) {
+			if (history != null) history.scan(start, to, this::write);
+		}
+	}
+
+	private void write(long time, double temperature, double dewPoint, double humidity,
+			double pressure, double windSpeed, double windDirection) {
+		lastTime = time;
+		sb.setLength(0);
+		if (json) {
+			sb.append("{\"location\":").append(location.getIndex());
+			sb.append(",\"name\":"); ObservationServer.appendJSON(sb, location.getDisplayName());
+			sb.append(",\"time\":\"");
+			DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(time), sb);
+			sb.append('"');
+			appendJSON(0, temperature);
+			appendJSON(1, dewPoint);
+			appendJSON(2, humidity);
+			appendJSON(3, pressure);
+			appendJSON(4, windSpeed);
+			appendJSON(5, windDirection);
+			sb.append("}\n");
+		}
+		else {
+			sb.append(location.getIndex()).append(',');
+			appendCSV(location.getDisplayName());
+			sb.append(',');
+			DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(time), sb);
+			appendCSV(temperature);
+			appendCSV(dewPoint);
+			appendCSV(humidity);
+			appendCSV(pressure);
+			appendCSV(windSpeed);
+			appendCSV(windDirection);
+			sb.append('\n');
+		}
+		try {
+			out.append(sb);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		records++;
+	}
+
+	private void appendJSON(int column, double value) {
+		sb.append(",\"").append(COLUMNS[column]).append("\":");
+		ObservationServer.appendJSON(sb, value);
+	}
+
+	/** Missing readings are left empty */
+	private void appendCSV(double value) {
+		sb.append(',');
+		if (!Double.isNaN(value) && !Double.isInfinite(value)) sb.append(value);
+	}
+
+	private void appendCSV(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+			sb.append(value);
+			return;
+		}
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') sb.append('"');
+			sb.append(c);
+		}
+		sb.append('"');
+	}
+
+	/**
+	 * Parses a date, taken as local midnight, a local date and time, or an
+	 * instant with a zone offset.
+	 */
+	static long parseTime(String text) {
+		try {
+			if (text.length() <= 10) return LocalDate.parse(text).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+			if (text.endsWith("Z") || text.lastIndexOf('+') > 10 || text.lastIndexOf('-') > 10) {
+				return OffsetDateTime.parse(text).toInstant().toEpochMilli();
+			}
+			return LocalDateTime.parse(text).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		}
+		catch (DateTimeParseException ex) {
+			throw new IllegalArgumentException("Invalid time " + text);
+		}
+	}
+
+	public static void main(String[] args) {
+		boolean json = false;
+		long from = Long.MIN_VALUE;
+		long to = Long.MAX_VALUE;
+		int index = -1;
+		String outFile = null;
+		try {
+			for (String arg : args) {
+				if (arg.equals("--export")) continue;
+				if (arg.equals("--format=csv")) json = false;
+				else if (arg.equals("--format=ndjson") || arg.equals("--format=json")) json = true;
+				else if (arg.startsWith("--from=")) from = parseTime(arg.substring("--from=".length()));
+				else if (arg.startsWith("--to=")) to = parseTime(arg.substring("--to=".length()));
+				else if (arg.startsWith("--location=")) index = Integer.parseInt(arg.substring("--location=".length()));
+				else if (arg.startsWith("--out=")) outFile = arg.substring("--out=".length());
+				else throw new IllegalArgumentException("Invalid option " + arg);
+			}
+		}
+		catch (IllegalArgumentException ex) {
+			// NumberFormatException included
+			System.err.println(ex.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+
+		HistoryExport export = new HistoryExport(json);
+		try (OutputStream stream = outFile != null ? new FileOutputStream(outFile) : System.out) {
+			long records = export.export(from, to, index, stream);
+			if (outFile != null) System.err.println("Exported " + records + " records to " + outFile);
+		}
+		catch (IOException ex) {
+			System.err.println("Export failed: " + ex.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,326 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed-capacity ring of observations in a memory-mapped file. Each record is
+ * a timestamp followed by six doubles, so appending is a handful of puts into
+ * the mapping with no allocation, and the oldest record is overwritten once
+ * the ring is full. Timestamps only ever increase, which lets readers find the
+ * start of a time range by binary search.
+ *
+ * There must be a single writer; any number of threads may scan.
+ */
+public class HistoryFile implements Closeable {
+
+	/** Receives each record of a scan */
+	public interface RecordVisitor {
+		void record(long time, double temperature, double dewPoint, double humidity,
+				double pressure, double windSpeed, double windDirection);
+	}
+
+	private static final int MAGIC = 0x57574831;	// "WWH1"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	private static final int RECORD_SIZE = 8 + 6 * 8;
+
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int CAPACITY_OFFSET = 8;
+	private static final int RECORD_SIZE_OFFSET = 12;
+	private static final int COUNT_OFFSET = 16;
+
+	private final File file;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+	private final boolean readOnly;
+
+	/** Number of records ever appended; slot = sequence % capacity */
+	private volatile long count;
+	private long lastTime;
+
+	/**
+	 * Opens or creates a history file holding <code>capacity</code> records.
+	 * An existing file with a different capacity is rewritten, keeping its most
+	 * recent records.
+	 */
+	public static HistoryFile open(File file, int capacity) throws IOException {
+		// Left by earlier versions, which resized into a copy
+		Files.deleteIfExists(new File(file.getPath() + ".resize").toPath());
+		resize(file, capacity);
+		return new HistoryFile(file, capacity);
+	}
+
+	/**
+	 * Rewrites an existing file of another capacity in place, through its
+	 * channel alone. A mapping of the file may still be alive, since a
+	 * MappedByteBuffer is only unmapped when collected, and Windows refuses to
+	 * replace or shrink a mapped file; so the file is never moved, and is left
+	 * longer than needed if it can't be truncated. The capacity is cleared
+	 * while the records are rewritten, so a crash part way leaves an empty
+	 * history rather than a scrambled one.
+	 */
+	private static void resize(File file, int capacity) throws IOException {
+		if (!file.isFile()) return;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			int existing = readCapacity(channel, file);
+			if (existing <= 0 || existing == capacity) return;
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, header, 0);
+			long count = header.getLong(COUNT_OFFSET);
+			int keep = (int) Math.min(Math.min(count, existing), capacity);
+			ByteBuffer records = ByteBuffer.allocate(existing * RECORD_SIZE);
+			readFully(channel, records, HEADER_SIZE);
+
+			header.putInt(CAPACITY_OFFSET, 0);
+			writeFully(channel, header.clear(), 0);
+			channel.force(false);
+
+			// The newest records, oldest first, from slot 0 of the new ring
+			ByteBuffer chunk = ByteBuffer.allocate(1024 * RECORD_SIZE);
+			long position = HEADER_SIZE;
+			for (long sequence = count - keep; sequence < count; sequence++) {
+				int from = (int) (sequence % existing) * RECORD_SIZE;
+				chunk.put(records.array(), from, RECORD_SIZE);
+				if (!chunk.hasRemaining() || sequence == count - 1) {
+					chunk.flip();
+					writeFully(channel, chunk, position);
+					position += chunk.limit();
+					chunk.clear();
+				}
+			}
+			long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+			if (channel.size() < size) writeFully(channel, ByteBuffer.allocate(1), size - 1);
+			else if (channel.size() > size) {
+				try {
+					channel.truncate(size);
+				}
+				catch (IOException ex) {
+					// Still mapped; the extra space is ignored
+				}
+			}
+
+			header.putInt(CAPACITY_OFFSET, capacity);
+			header.putLong(COUNT_OFFSET, keep);
+			channel.force(false);
+			writeFully(channel, header.clear(), 0);
+			channel.force(false);
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of history file");
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) channel.write(buffer, position + buffer.position());
+	}
+
+	/**
+	 * Opens an existing history file for scanning only, while the widget may
+	 * still be appending to it. Returns null if the file does not exist or is
+	 * not a history file.
+	 */
+	public static HistoryFile openReadOnly(File file) throws IOException {
+		if (!file.isFile()) return null;
+		HistoryFile history = new HistoryFile(file);
+		if (history.capacity > 0) return history;
+		history.close();
+		return null;
+	}
+
+	private HistoryFile(File file, int capacity) throws IOException {
+		if (capacity <= 0) throw new IllegalArgumentException("History capacity must be positive");
+		this.file = file;
+		this.readOnly = false;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			int existing = readCapacity(channel, file);
+			int size = existing > 0 ? existing : capacity;
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) size * RECORD_SIZE);
+			this.capacity = size;
+			if (existing > 0) {
+				count = buffer.getLong(COUNT_OFFSET);
+				lastTime = count > 0 ? buffer.getLong(offset(count - 1)) : Long.MIN_VALUE;
+			}
+			else {
+				buffer.putInt(MAGIC_OFFSET, MAGIC);
+				buffer.putInt(VERSION_OFFSET, VERSION);
+				buffer.putInt(CAPACITY_OFFSET, size);
+				buffer.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+				buffer.putLong(COUNT_OFFSET, 0);
+				count = 0;
+				lastTime = Long.MIN_VALUE;
+			}
+		}
+		catch (IOException | RuntimeException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	private HistoryFile(File file) throws IOException {
+		this.file = file;
+		this.readOnly = true;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			int existing = readCapacity(channel, file);
+			this.capacity = Math.max(0, existing);
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, existing > 0 ? HEADER_SIZE + (long) existing * RECORD_SIZE : 0);
+			lastTime = Long.MIN_VALUE;
+			if (existing > 0) {
+				count = buffer.getLong(COUNT_OFFSET);
+				if (count > 0) lastTime = buffer.getLong(offset(count - 1));
+			}
+		}
+		catch (IOException | RuntimeException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	/** Capacity recorded in a valid existing header, or -1; read rather than mapped */
+	private static int readCapacity(FileChannel channel, File file) throws IOException {
+		if (channel.size() < HEADER_SIZE) return -1;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(channel, header, 0);
+		if (header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION
+				|| header.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE) {
+			System.err.println("Ignoring unrecognized history file " + file);
+			return -1;
+		}
+		int existing = header.getInt(CAPACITY_OFFSET);
+		if (existing <= 0 || channel.size() < HEADER_SIZE + (long) existing * RECORD_SIZE) return -1;
+		return existing;
+	}
+
+	public int getCapacity() { return capacity; }
+
+	/** Number of records currently held */
+	public int size() { return (int) Math.min(count, capacity); }
+
+	/**
+	 * Appends a record. Records that are not newer than the last one are
+	 * ignored, so polls that return the same observation are stored once.
+	 * Returns true if the record was stored.
+	 */
+	public boolean append(long time, double temperature, double dewPoint, double humidity,
+			double pressure, double windSpeed, double windDirection) {
+		if (time <= lastTime) return false;
+		long sequence = count;
+		int offset = offset(sequence);
+		buffer.putLong(offset, time);
+		buffer.putDouble(offset + 8, temperature);
+		buffer.putDouble(offset + 16, dewPoint);
+		buffer.putDouble(offset + 24, humidity);
+		buffer.putDouble(offset + 32, pressure);
+		buffer.putDouble(offset + 40, windSpeed);
+		buffer.putDouble(offset + 48, windDirection);
+		buffer.putLong(COUNT_OFFSET, sequence + 1);
+		lastTime = time;
+		count = sequence + 1;
+		return true;
+	}
+
+	/**
+	 * Visits, oldest first, every record with <code>from &lt;= time &lt; to</code>.
+	 * Returns the number of records visited.
+	 */
+	public int scan(long from, long to, RecordVisitor visitor) {
+		return scan(from, to, Integer.MAX_VALUE, visitor);
+	}
+
+	/**
+	 * Visits, oldest first, at most <code>limit</code> records with
+	 * <code>from &lt;= time &lt; to</code>. Returns the number of records visited.
+	 */
+	public int scan(long from, long to, int limit, RecordVisitor visitor) {
+		long end = currentCount();
+		long lo = search(from, end);
+
+		int visited = 0;
+		for (long sequence = lo; sequence < end && visited < limit; sequence++) {
+			int offset = offset(sequence);
+			long time = buffer.getLong(offset);
+			if (time >= to) break;
+			double temperature = buffer.getDouble(offset + 8);
+			double dewPoint = buffer.getDouble(offset + 16);
+			double humidity = buffer.getDouble(offset + 24);
+			double pressure = buffer.getDouble(offset + 32);
+			double windSpeed = buffer.getDouble(offset + 40);
+			double windDirection = buffer.getDouble(offset + 48);
+			// Skip a slot the writer reused while we were reading it
+			if (sequence < currentCount() - capacity) continue;
+			visitor.record(time, temperature, dewPoint, humidity, pressure, windSpeed, windDirection);
+			visited++;
+		}
+		return visited;
+	}
+
+	/** Number of records held with a time at or after <code>from</code> */
+	public int countFrom(long from) {
+		long end = currentCount();
+		return (int) (end - search(from, end));
+	}
+
+	/** Sequence number of the first record held at or after <code>from</code> */
+	private long search(long from, long end) {
+		long lo = Math.max(0, end - capacity);
+		long hi = end;
+		while (lo < hi) {
+			long mid = (lo + hi) >>> 1;
+			if (buffer.getLong(offset(mid)) < from) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	/** Records ever appended, re-read from the header when another process is the writer */
+	private long currentCount() {
+		return readOnly ? Math.max(count, buffer.getLong(COUNT_OFFSET)) : count;
+	}
+
+	/** Time of the newest record, or Long.MIN_VALUE when empty */
+	public long getLastTime() { return lastTime; }
+
+	public void force() {
+		if (!readOnly) buffer.force();
+	}
+
+	@Override
+	public void close() throws IOException {
+		force();
+		channel.close();
+	}
+
+	private int offset(long sequence) {
+		return HEADER_SIZE + (int) (sequence % capacity) * RECORD_SIZE;
+	}
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pmw.weather.widget;
+
+/**
+ * Percentiles of a {@link LatencyHistogram} at one moment, in milliseconds.
+ * Shown through JMX as composite data.
+ */
+public class LatencySummary {
+
+	private final long count;
+	private final double mean;
+	private final double p50;
+	private final double p90;
+	private final double p99;
+	private final double max;
+
+	public LatencySummary(long count, double mean, double p50, double p90, double p99, double max) {
+		this.count = count;
+		this.mean = mean;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.max = max;
+	}
+
+	public long getCount() { return count; }
+
+	public double getMean() { return mean; }
+
+	public double getP50() { return p50; }
+
+	public double getP90() { return p90; }
+
+	public double getP99() { return p99; }
+
+	public double getMax() { return max; }
+
+	@Override
+	public String toString() {
+		if (count == 0) return "none";
+		return String.format("n=%d mean=%.1f p50=%.1f p90=%.1f p99=%.1f max=%.1f ms", count, mean, p50, p90, p99, max);
+	}
+}
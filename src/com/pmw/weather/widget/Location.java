@@ -0,0 +1,132 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * A place to poll, read from weatherWidget.properties. Locations are numbered
+ * wxConditionsURL.1 .. wxConditionsURL.N; when there are none the single
+ * wxConditionsURL property is used. Other per-location settings use the same
+ * suffix and fall back to the unnumbered property.
+ */
+public class Location {
+
+	private final int index;
+	private final String suffix;
+	private final String name;
+	private final String url;
+
+	public Location(int index, String name, String url) {
+		this.index = index;
+		this.suffix = index == 0 ? "" : "." + index;
+		this.name = name;
+		this.url = url;
+	}
+
+	/** 0 for the unnumbered wxConditionsURL, otherwise the property number */
+	public int getIndex() { return index; }
+
+	/** Display name, or null for the unnumbered location */
+	public String getName() { return name; }
+
+	/**
+	 * Name to show or log: the display name, or for the unnumbered location
+	 * the host its conditions come from. Never the URL, whose query string
+	 * often holds an API key.
+	 */
+	public String getDisplayName() {
+		if (name != null) return name;
+		try {
+			String host = URI.create(url.trim()).getHost();
+			if (host != null) return host;
+		}
+		catch (IllegalArgumentException ex) {
+			// not a valid URI; fall through
+		}
+		return "location " + index;
+	}
+
+	public String getURL() { return url; }
+
+	/**
+	 * Further URLs the conditions can be fetched from when the main one is
+	 * failing: <code>wxConditionsURL.alt1</code>, <code>.alt2</code> and so
+	 * on, after the location number if there is one. Unlike other settings
+	 * these are not inherited from the unnumbered location.
+	 */
+	public List<String> getFailoverURLs(Properties props) {
+		List<String> urls = new ArrayList<String>();
+		for (int k = 1; ; k++) {
+			String url = props.getProperty("wxConditionsURL" + suffix + ".alt" + k);
+			if (url == null) return urls;
+			if (!url.isBlank()) urls.add(url.trim());
+		}
+	}
+
+	/**
+	 * Looks up a per-location property such as <code>key.3</code>, falling
+	 * back to the unnumbered <code>key</code>.
+	 */
+	public String getProperty(Properties props, String key) {
+		String value = suffix.isEmpty() ? null : props.getProperty(key + suffix);
+		return value != null ? value : props.getProperty(key);
+	}
+
+	public String getProperty(Properties props, String key, String defaultValue) {
+		String value = getProperty(props, key);
+		return value != null ? value : defaultValue;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof Location)) return false;
+		Location other = (Location) o;
+		return index == other.index && url.equals(other.url) && Objects.equals(name, other.name);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(index, name, url);
+	}
+
+	@Override
+	public String toString() {
+		return getDisplayName();
+	}
+
+	public static List<Location> fromProperties(Properties props) {
+		List<Location> locations = new ArrayList<Location>();
+		for (int i = 1; props.getProperty("wxConditionsURL." + i) != null; i++) {
+			String url = props.getProperty("wxConditionsURL." + i).trim();
+			String name = props.getProperty("locationName." + i, "Location " + i);
+			locations.add(new Location(i, name, url));
+		}
+		if (locations.isEmpty()) {
+			String url = props.getProperty("wxConditionsURL");
+			if (url != null && !url.isBlank()) {
+				locations.add(new Location(0, props.getProperty("locationName"), url.trim()));
+			}
+		}
+		return locations;
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pmw.weather.widget;
+
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the polls of one location. Every
+ * record method is lock-free and allocation-free.
+ */
+public class LocationMetrics implements LocationMetricsMXBean {
+
+	private final Location location;
+
+	final LatencyHistogram timeToHeaders = new LatencyHistogram();
+	final LatencyHistogram bodyDownload = new LatencyHistogram();
+	final LatencyHistogram parse = new LatencyHistogram();
+	final LatencyHistogram trayUpdate = new LatencyHistogram();
+
+	private final LongAdder bytesReceived = new LongAdder();
+	private final LongAdder successes = new LongAdder();
+	private final LongAdder notModified = new LongAdder();
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder sharedReads = new LongAdder();
+	private final LongAdder sharedStale = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder hedges = new LongAdder();
+	private final LongAdder failovers = new LongAdder();
+
+	private volatile long lastSuccess;
+	private volatile long lastObservationTime;
+	private volatile String lastError;
+
+	public LocationMetrics(Location location) {
+		this.location = location;
+	}
+
+	public void recordTimeToHeaders(long nanos) { timeToHeaders.recordNanos(nanos); }
+
+	public void recordBody(long downloadNanos, long parseNanos, long bytes) {
+		bodyDownload.recordNanos(downloadNanos);
+		parse.recordNanos(parseNanos);
+		bytesReceived.add(bytes);
+	}
+
+	public void recordTrayUpdate(long nanos) { trayUpdate.recordNanos(nanos); }
+
+	public void recordSuccess(long observationTime, long now) {
+		successes.increment();
+		lastSuccess = now;
+		if (observationTime > 0) lastObservationTime = observationTime;
+		lastError = null;
+	}
+
+	public void recordNotModified() { notModified.increment(); }
+
+	public void recordCacheHit() { cacheHits.increment(); }
+
+	public void recordSharedRead() { sharedReads.increment(); }
+
+	public void recordSharedStale() { sharedStale.increment(); }
+
+	public void recordHedge() { hedges.increment(); }
+
+	public void recordFailover() { failovers.increment(); }
+
+	public void recordFailure(Throwable cause) {
+		failures.increment();
+		if (cause instanceof HttpTimeoutException) timeouts.increment();
+		lastError = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+	}
+
+	@Override
+	public String getLocation() { return location.getDisplayName(); }
+
+	@Override
+	public LatencySummary getTimeToHeaders() { return timeToHeaders.summarize(); }
+
+	@Override
+	public LatencySummary getBodyDownload() { return bodyDownload.summarize(); }
+
+	@Override
+	public LatencySummary getParse() { return parse.summarize(); }
+
+	@Override
+	public LatencySummary getTrayUpdate() { return trayUpdate.summarize(); }
+
+	@Override
+	public long getBytesReceived() { return bytesReceived.sum(); }
+
+	@Override
+	public long getSuccesses() { return successes.sum(); }
+
+	@Override
+	public long getNotModified() { return notModified.sum(); }
+
+	@Override
+	public long getCacheHits() { return cacheHits.sum(); }
+
+	@Override
+	public long getSharedReads() { return sharedReads.sum(); }
+
+	@Override
+	public long getSharedStale() { return sharedStale.sum(); }
+
+	@Override
+	public long getFailures() { return failures.sum(); }
+
+	@Override
+	public long getTimeouts() { return timeouts.sum(); }
+
+	@Override
+	public long getHedges() { return hedges.sum(); }
+
+	@Override
+	public long getFailovers() { return failovers.sum(); }
+
+	@Override
+	public long getLastSuccessAgeSeconds() {
+		long time = lastSuccess;
+		return time > 0 ? (System.currentTimeMillis() - time) / 1000 : -1;
+	}
+
+	@Override
+	public long getObservationAgeSeconds() {
+		long time = lastObservationTime;
+		return time > 0 ? (System.currentTimeMillis() - time) / 1000 : -1;
+	}
+
+	@Override
+	public String getLastError() { return lastError; }
+
+	@Override
+	public String toString() {
+		return location.getDisplayName() + ": ok=" + getSuccesses() + " notModified=" + getNotModified() + " cached=" + getCacheHits()
+				+ " shared=" + getSharedReads() + " sharedStale=" + getSharedStale() + " failed=" + getFailures() + " timeouts=" + getTimeouts() + " hedged=" + getHedges() + " failovers=" + getFailovers() + " bytes=" + getBytesReceived()
+				+ " lastSuccessAge=" + getLastSuccessAgeSeconds() + "s observationAge=" + getObservationAgeSeconds() + "s"
+				+ "\n  headers " + getTimeToHeaders() + "\n  download " + getBodyDownload()
+				+ "\n  parse " + getParse() + "\n  tray " + getTrayUpdate();
+	}
+}
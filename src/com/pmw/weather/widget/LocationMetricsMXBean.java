@@ -0,0 +1,71 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pmw.weather.widget;
+
+/**
+ * Polling statistics for one location, registered with the platform MBean
+ * server as com.pmw.weather:type=Location,index=N. Durations are in
+ * milliseconds.
+ */
+public interface LocationMetricsMXBean {
+
+	/** The location's name, or the host of its URL when it has none; never the URL, which may hold an API key */
+	String getLocation();
+
+	/** From sending the request to receiving the response headers, including DNS, connect and TLS */
+	LatencySummary getTimeToHeaders();
+
+	/** Time spent waiting for the response body while parsing it */
+	LatencySummary getBodyDownload();
+
+	LatencySummary getParse();
+
+	/** From the observation reaching the widget until the tray shows it */
+	LatencySummary getTrayUpdate();
+
+	long getBytesReceived();
+
+	long getSuccesses();
+
+	long getNotModified();
+
+	long getCacheHits();
+
+	/** Polls answered from the shared cache, fetched by another process */
+	long getSharedReads();
+
+	/** Polls fetched here because the process sharing the URL had stopped checking it */
+	long getSharedStale();
+
+	long getFailures();
+
+	long getTimeouts();
+
+	/** Requests repeated to the mirror URL because the first was slow */
+	long getHedges();
+
+	/** Requests retried at another of the location's URLs because the one tried failed */
+	long getFailovers();
+
+	/** Seconds since the last good observation was received, or -1 if there has been none */
+	long getLastSuccessAgeSeconds();
+
+	/** Seconds since the provider took the last good observation, or -1 if unknown */
+	long getObservationAgeSeconds();
+
+	/** Message of the most recent failure, or null */
+	String getLastError();
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pmw.weather.widget;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a response body and the time spent blocked
+ * waiting for them, so a streaming parse can be split into download and
+ * parse time.
+ */
+class MeteredInputStream extends FilterInputStream {
+
+	private long bytes;
+	private long readNanos;
+
+	MeteredInputStream(InputStream in) {
+		super(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+		long start = System.nanoTime();
+		int b = super.read();
+		readNanos += System.nanoTime() - start;
+		if (b >= 0) bytes++;
+		return b;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		long start = System.nanoTime();
+		int n = super.read(buffer, offset, length);
+		readNanos += System.nanoTime() - start;
+		if (n > 0) bytes += n;
+		return n;
+	}
+
+	long getBytes() { return bytes; }
+
+	long getReadNanos() { return readNanos; }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pmw.weather.widget;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Appends numbers with a fixed number of decimal places straight into a
+ * StringBuilder, rounding half-even like DecimalFormat. Unlike DecimalFormat
+ * it holds no state, so it is safe to use from any thread, and it creates no
+ * objects unless asked for more digits than a double holds.
+ */
+public final class NumberFormatter {
+
+	private static final long[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000 };
+
+	/** Values at or beyond this are appended with Double.toString */
+	private static final double LIMIT = 1e12;
+
+	/** Scaled values at or beyond this have no fraction bits left to round on */
+	private static final double EXACT_LIMIT = 0x1p52;
+
+	private NumberFormatter() {}
+
+	/**
+	 * Appends <code>value</code> with exactly <code>decimals</code> digits after
+	 * the point, e.g. 68.54 with 1 decimal as "68.5" and 0.5 as "0.5". NaN and
+	 * infinite values are appended as Double.toString would write them.
+	 */
+	public static StringBuilder append(StringBuilder sb, double value, int decimals) {
+		if (decimals < 0 || decimals >= POWERS_OF_TEN.length) {
+			throw new IllegalArgumentException("Unsupported number of decimals: " + decimals);
+		}
+		if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= LIMIT) {
+			return sb.append(value);
+		}
+		long scale = POWERS_OF_TEN[decimals];
+		if (Math.abs(value) * scale >= EXACT_LIMIT) {
+			return sb.append(new BigDecimal(value).setScale(decimals, RoundingMode.HALF_EVEN).toPlainString());
+		}
+		long units = round(Math.abs(value), scale);
+		if (value < 0 && units != 0) sb.append('-');
+		sb.append(units / scale);
+		if (decimals > 0) {
+			sb.append('.');
+			long fraction = units % scale;
+			for (long digit = scale / 10; digit > 0; digit /= 10) {
+				sb.append((char) ('0' + fraction / digit % 10));
+			}
+		}
+		return sb;
+	}
+
+	/**
+	 * Rounds <code>value * scale</code> half-even, deciding ties on the exact
+	 * product the way DecimalFormat does: 66.55 is really 66.5499999..., so it
+	 * rounds to 665 even though the product in double arithmetic is 665.5.
+	 */
+	private static long round(double value, long scale) {
+		double product = value * scale;
+		double whole = Math.floor(product);
+		double fraction = product - whole;
+		long units = (long) whole;
+		if (fraction > 0.5) return units + 1;
+		if (fraction < 0.5) return units;
+		// Only ties need the rounding error of the product
+		double error = Math.fma(value, scale, -product);
+		if (error > 0) return units + 1;
+		if (error < 0) return units;
+		return (units & 1) == 0 ? units : units + 1;
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+/**
+ * Weather conditions read from one poll of a conditions URL. Numeric values are
+ * held as primitives in imperial units (degrees F, MPH, inches) and are NaN
+ * when the feed did not supply them. Observations are immutable, so the one
+ * produced by a poll can be shared by every consumer and kept as long as
+ * needed; they are made with a {@link Builder}.
+ */
+public final class Observation {
+
+	private final long observationTime;
+	private final double temperature;
+	private final double dewPoint;
+	private final double feelsLike;
+	private final double humidity;
+	private final double pressure;
+	private final double windSpeed;
+	private final double windDirection;
+	private final double rain;
+	private final String wind;
+	private final String weather;
+	private final String forecast;
+	private final boolean estimated;
+
+	private Observation(Builder b) {
+		observationTime = b.observationTime;
+		temperature = b.temperature;
+		dewPoint = b.dewPoint;
+		feelsLike = b.feelsLike;
+		humidity = b.humidity;
+		pressure = b.pressure;
+		windSpeed = b.windSpeed;
+		windDirection = b.windDirection;
+		rain = b.rain;
+		wind = b.wind;
+		weather = b.weather;
+		forecast = b.forecast;
+		estimated = b.estimated;
+	}
+
+	/** When the provider took the observation, in epoch milliseconds, or 0 if not reported */
+	public long getObservationTime() { return observationTime; }
+
+	public double getTemperature() { return temperature; }
+
+	public double getDewPoint() { return dewPoint; }
+
+	public double getFeelsLike() { return feelsLike; }
+
+	public double getHumidity() { return humidity; }
+
+	/** Barometric pressure in inches of mercury */
+	public double getPressure() { return pressure; }
+
+	public double getWindSpeed() { return windSpeed; }
+
+	public double getWindDirection() { return windDirection; }
+
+	/** Rainfall in inches */
+	public double getRain() { return rain; }
+
+	/** Free-form wind description when the feed supplies one instead of a speed */
+	public String getWind() { return wind; }
+
+	public String getWeather() { return weather; }
+
+	public String getForecast() { return forecast; }
+
+	/** True if the temperature was estimated from a forecast rather than observed */
+	public boolean isEstimated() { return estimated; }
+
+	/** True if the feed supplied no value at all */
+	public boolean isEmpty() {
+		return observationTime == 0 && Double.isNaN(temperature) && Double.isNaN(dewPoint) && Double.isNaN(feelsLike)
+				&& Double.isNaN(humidity) && Double.isNaN(pressure) && Double.isNaN(windSpeed)
+				&& Double.isNaN(windDirection) && Double.isNaN(rain) && wind == null && weather == null && forecast == null;
+	}
+
+	/**
+	 * Collects the values of an observation. A builder starts with every value
+	 * missing and can be {@link #reset()} and reused.
+	 */
+	public static final class Builder {
+
+		long observationTime;
+		double temperature;
+		double dewPoint;
+		double feelsLike;
+		double humidity;
+		double pressure;
+		double windSpeed;
+		double windDirection;
+		double rain;
+		String wind;
+		String weather;
+		String forecast;
+		boolean estimated;
+
+		public Builder() {
+			reset();
+		}
+
+		public Builder reset() {
+			observationTime = 0;
+			temperature = Double.NaN;
+			dewPoint = Double.NaN;
+			feelsLike = Double.NaN;
+			humidity = Double.NaN;
+			pressure = Double.NaN;
+			windSpeed = Double.NaN;
+			windDirection = Double.NaN;
+			rain = Double.NaN;
+			wind = null;
+			weather = null;
+			forecast = null;
+			estimated = false;
+			return this;
+		}
+
+		/** Copies every value of <code>obs</code> */
+		public Builder from(Observation obs) {
+			observationTime = obs.observationTime;
+			temperature = obs.temperature;
+			dewPoint = obs.dewPoint;
+			feelsLike = obs.feelsLike;
+			humidity = obs.humidity;
+			pressure = obs.pressure;
+			windSpeed = obs.windSpeed;
+			windDirection = obs.windDirection;
+			rain = obs.rain;
+			wind = obs.wind;
+			weather = obs.weather;
+			forecast = obs.forecast;
+			estimated = obs.estimated;
+			return this;
+		}
+
+		public Builder observationTime(long observationTime) { this.observationTime = observationTime; return this; }
+
+		public Builder temperature(double temperature) { this.temperature = temperature; return this; }
+
+		public Builder dewPoint(double dewPoint) { this.dewPoint = dewPoint; return this; }
+
+		public Builder feelsLike(double feelsLike) { this.feelsLike = feelsLike; return this; }
+
+		public Builder humidity(double humidity) { this.humidity = humidity; return this; }
+
+		public Builder pressure(double pressure) { this.pressure = pressure; return this; }
+
+		public Builder windSpeed(double windSpeed) { this.windSpeed = windSpeed; return this; }
+
+		public Builder windDirection(double windDirection) { this.windDirection = windDirection; return this; }
+
+		public Builder rain(double rain) { this.rain = rain; return this; }
+
+		public Builder wind(String wind) { this.wind = wind; return this; }
+
+		public Builder weather(String weather) { this.weather = weather; return this; }
+
+		public Builder forecast(String forecast) { this.forecast = forecast; return this; }
+
+		public Builder estimated(boolean estimated) { this.estimated = estimated; return this; }
+
+		public Observation build() {
+			return new Observation(this);
+		}
+	}
+}
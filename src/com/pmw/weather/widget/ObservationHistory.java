@@ -0,0 +1,219 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a {@link HistoryFile} per location under the application data
+ * directory and appends every new observation to it. Retention is set in days
+ * with historyRetention (default 28, per location with a .N suffix) and sized
+ * for one record a minute. Each full block of records is also moved into the
+ * location's {@link HistoryArchive}, which is kept indefinitely.
+ */
+public class ObservationHistory implements ObservationListener {
+
+	private static final int RECORDS_PER_DAY = 24 * 60;
+	private static final int MAX_CAPACITY = 10_000_000;
+
+	/** The open history of one location, and the URL and capacity it was opened for */
+	private static final class Opened {
+		final String url;
+		final int capacity;
+		final HistoryFile history;
+		final HistoryArchive archive;
+
+		Opened(String url, int capacity, HistoryFile history, HistoryArchive archive) {
+			this.url = url;
+			this.capacity = capacity;
+			this.history = history;
+			this.archive = archive;
+		}
+	}
+
+	private final File dir;
+	private final Map<Integer,Opened> files = new ConcurrentHashMap<Integer,Opened>();
+
+	public ObservationHistory(File dir, List<Location> locations, Properties props) {
+		this.dir = dir;
+		open(locations, props);
+	}
+
+	/**
+	 * Opens the history of each location, keeping those already open for the
+	 * same URL and retention. Histories are kept by location number and URL,
+	 * so pointing a location at another city starts a new history, and
+	 * pointing it back carries on with the old one. The histories of locations
+	 * no longer listed are closed.
+	 */
+	public synchronized void open(List<Location> locations, Properties props) {
+		dir.mkdirs();
+		for (Location location : locations) {
+			int capacity = capacity(location, props);
+			Opened open = files.get(location.getIndex());
+			if (open != null) {
+				if (open.url.equals(location.getURL()) && open.capacity == capacity) continue;
+				files.remove(location.getIndex());
+				close(open);
+			}
+			adoptLegacyFiles(location);
+
+			File file = historyFile(dir, location);
+			HistoryFile history;
+			try {
+				history = HistoryFile.open(file, capacity);
+			}
+			catch (IOException ex) {
+				System.err.println("Unable to open history " + file + ": " + ex.getMessage());
+				continue;
+			}
+			File archiveFile = archiveFile(dir, location);
+			HistoryArchive archive = null;
+			try {
+				archive = HistoryArchive.open(archiveFile);
+			}
+			catch (IOException ex) {
+				System.err.println("Unable to open history archive " + archiveFile + ": " + ex.getMessage());
+			}
+			files.put(location.getIndex(), new Opened(location.getURL(), capacity, history, archive));
+		}
+
+		Set<Integer> indexes = new HashSet<Integer>();
+		for (Location location : locations) indexes.add(location.getIndex());
+		for (Integer index : files.keySet()) {
+			if (indexes.contains(index)) continue;
+			Opened open = files.remove(index);
+			if (open != null) close(open);
+		}
+	}
+
+	/**
+	 * Gives the files of an older version, kept by location number alone, to
+	 * the URL the location has now.
+	 */
+	private void adoptLegacyFiles(Location location) {
+		File legacy = legacyHistoryFile(dir, location);
+		File keyed = historyFile(dir, location);
+		if (!legacy.exists() || keyed.exists()) return;
+		legacy.renameTo(keyed);
+		File legacyArchive = legacyArchiveFile(dir, location);
+		if (legacyArchive.exists()) legacyArchive.renameTo(archiveFile(dir, location));
+	}
+
+	/** Where an older version kept a location's history, by number alone */
+	static File legacyHistoryFile(File dir, Location location) {
+		return new File(dir, "location-" + location.getIndex() + ".history");
+	}
+
+	static File legacyArchiveFile(File dir, Location location) {
+		return new File(dir, "location-" + location.getIndex() + ".archive");
+	}
+
+	static File historyFile(File dir, Location location) {
+		return new File(dir, "location-" + location.getIndex() + "-" + urlKey(location) + ".history");
+	}
+
+	static File archiveFile(File dir, Location location) {
+		return new File(dir, "location-" + location.getIndex() + "-" + urlKey(location) + ".archive");
+	}
+
+	/** Start of the SHA-256 of the location's URL, so file names don't hold its API key */
+	private static String urlKey(Location location) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(location.getURL().getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 4; i++) sb.append(Character.forDigit((hash[i] >> 4) & 0xF, 16)).append(Character.forDigit(hash[i] & 0xF, 16));
+			return sb.toString();
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private static int capacity(Location location, Properties props) {
+		String value = location.getProperty(props, "historyRetention", "28");
+		long days = 28;
+		try {
+			days = Long.parseLong(value.trim());
+		}
+		catch (NumberFormatException ex) {
+			System.err.println("Invalid historyRetention for " + location + ": " + value);
+		}
+		return (int) Math.max(1, Math.min(MAX_CAPACITY, days * RECORDS_PER_DAY));
+	}
+
+	/** The history for a location, or null if it could not be opened */
+	public HistoryFile get(Location location) {
+		Opened open = files.get(location.getIndex());
+		return open != null && open.url.equals(location.getURL()) ? open.history : null;
+	}
+
+	/** Synchronized with {@link #open} so that a history is never appended to as it is replaced */
+	@Override
+	public synchronized void observationUpdated(Location location, Observation observation) {
+		Opened open = files.get(location.getIndex());
+		if (open == null || !open.url.equals(location.getURL()) || observation.isEstimated()) return;
+		HistoryFile file = open.history;
+		long time = observation.getObservationTime() > 0 ? observation.getObservationTime() : System.currentTimeMillis();
+		file.append(time, observation.getTemperature(), observation.getDewPoint(), observation.getHumidity(),
+				observation.getPressure(), observation.getWindSpeed(), observation.getWindDirection());
+
+		if (open.archive == null) return;
+		try {
+			open.archive.archive(file);
+		}
+		catch (IOException ex) {
+			System.err.println("Error archiving history for " + location + ": " + ex.getMessage());
+		}
+	}
+
+	@Override
+	public void pollFailed(Location location, Throwable cause) {
+	}
+
+	public synchronized void close() {
+		for (Opened open : files.values()) {
+			close(open);
+		}
+	}
+
+	private static void close(Opened open) {
+		try {
+			open.history.close();
+		}
+		catch (IOException ex) {
+			System.err.println("Error closing history: " + ex.getMessage());
+		}
+		if (open.archive == null) return;
+		try {
+			open.archive.close();
+		}
+		catch (IOException ex) {
+			System.err.println("Error closing history archive: " + ex.getMessage());
+		}
+	}
+}
@@ -0,0 +1,329 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base of the parsers that turn one provider's response into an observation.
+ * The response is read exactly once through a reusable buffer, with numeric
+ * fields decoded straight into doubles; a subclass implements
+ * {@link #parseBody()} for its format using the scanning methods here, and
+ * maps what it finds to the shared field numbers.
+ *
+ * A parser keeps its buffers between calls, so use one instance per location
+ * and only from one thread at a time.
+ */
+public abstract class ObservationParser {
+
+	private static final double HPA_PER_INCH = 33.863889532610884;
+	private static final double MM_PER_INCH = 25.4;
+
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	// Fields, shared by all formats
+	protected static final int F_NONE = 0;
+	protected static final int F_TEMPERATURE = 1;
+	protected static final int F_DEW_POINT = 2;
+	protected static final int F_FEELS_LIKE = 3;
+	protected static final int F_HUMIDITY = 4;
+	protected static final int F_PRESSURE_INCHES = 5;
+	protected static final int F_PRESSURE_HPA = 6;
+	protected static final int F_WIND_SPEED = 7;
+	protected static final int F_WIND_DIRECTION = 8;
+	protected static final int F_RAIN_INCHES = 9;
+	protected static final int F_RAIN_MM = 10;
+	protected static final int F_TIME_SECONDS = 11;
+	protected static final int F_WIND = 12;
+	protected static final int F_WEATHER = 13;
+	protected static final int F_FORECAST = 14;
+	protected static final int F_TIME_RFC822 = 15;
+
+	private final char[] buf = new char[8192];
+	private int pos;
+	private int limit;
+	private Reader in;
+
+	private final char[] token = new char[64];
+	private int tokenLength;
+	/** Text value being collected by a subclass */
+	protected final StringBuilder text = new StringBuilder();
+
+	private final Observation.Builder obs = new Observation.Builder();
+
+	/**
+	 * Reads the whole response from <code>in</code>. Fields missing from the
+	 * response are NaN or null in the observation returned.
+	 */
+	public final Observation parse(Reader in) throws IOException {
+		try {
+			if (begin(in) != -1) parseBody();
+		}
+		finally {
+			this.in = null;
+		}
+		return obs.build();
+	}
+
+	/**
+	 * Reads a response to a batch request made with
+	 * {@link WeatherProvider#getBatchURI}, putting the observation of each
+	 * location in the map under its batch id. Providers that can't batch
+	 * don't need to override this.
+	 */
+	public void parseBatch(Reader in, Map<String,Observation> observations) throws IOException {
+		throw new IOException(getClass().getName() + " does not read batch responses");
+	}
+
+	/**
+	 * Reads a forecast response, adding the forecast for each time it covers to
+	 * <code>forecast</code> in the order given. Providers without forecasts
+	 * don't need to override this.
+	 */
+	public void parseForecast(Reader in, List<Observation> forecast) throws IOException {
+		throw new IOException(getClass().getName() + " does not read forecasts");
+	}
+
+	/**
+	 * The id that names the location of the last response in a batch request,
+	 * or null if it had none.
+	 */
+	public String getBatchId() {
+		return null;
+	}
+
+	/**
+	 * Starts reading <code>in</code> with an empty observation, returning the
+	 * first character after any byte order mark and whitespace, or -1.
+	 */
+	protected final int begin(Reader in) throws IOException {
+		this.in = in;
+		this.pos = 0;
+		this.limit = 0;
+		obs.reset();
+		int c = skipWhitespace();
+		if (c == '\uFEFF') {
+			read();
+			c = skipWhitespace();
+		}
+		return c;
+	}
+
+	/** Stops reading the response given to {@link #begin} */
+	protected final void end() {
+		this.in = null;
+	}
+
+	/** Returns the observation read so far and starts an empty one */
+	protected final Observation nextObservation() {
+		Observation observation = obs.build();
+		obs.reset();
+		return observation;
+	}
+
+	/**
+	 * Reads the response from its first non-blank character to the end,
+	 * calling {@link #setNumber} and {@link #setText} for the fields found.
+	 */
+	protected abstract void parseBody() throws IOException;
+
+	/**
+	 * Reads a decimal number at the current position without building a String.
+	 * Returns NaN when no digits are found, leaving the position unchanged.
+	 */
+	protected double readNumber() throws IOException {
+		int c = peek();
+		while (c == ' ' || c == '\t') {
+			read();
+			c = peek();
+		}
+		boolean negative = false;
+		if (c == '-' || c == '+') {
+			negative = c == '-';
+			read();
+			c = peek();
+		}
+		long mantissa = 0;
+		int exponent = 0;
+		int digits = 0;
+		boolean fraction = false;
+		while (true) {
+			if (c >= '0' && c <= '9') {
+				if (mantissa < 100000000000000000L) {
+					mantissa = mantissa * 10 + (c - '0');
+					if (fraction) exponent--;
+				}
+				else if (!fraction) {
+					exponent++;
+				}
+				digits++;
+			}
+			else if (c == '.' && !fraction) {
+				fraction = true;
+			}
+			else {
+				break;
+			}
+			read();
+			c = peek();
+		}
+		if (digits == 0) return Double.NaN;
+		if (c == 'e' || c == 'E') {
+			read();
+			c = peek();
+			boolean negativeExponent = false;
+			if (c == '-' || c == '+') {
+				negativeExponent = c == '-';
+				read();
+				c = peek();
+			}
+			int e = 0;
+			while (c >= '0' && c <= '9') {
+				if (e < 10000) e = e * 10 + (c - '0');
+				read();
+				c = peek();
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+		double value;
+		if (exponent == 0) {
+			value = mantissa;
+		}
+		else if (mantissa < (1L << 53) && exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+			// Both operands are exact so the division is correctly rounded
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		}
+		else if (mantissa < (1L << 53) && exponent > 0 && exponent < POWERS_OF_TEN.length) {
+			value = mantissa * POWERS_OF_TEN[exponent];
+		}
+		else {
+			value = mantissa * Math.pow(10, exponent);
+		}
+		return negative ? -value : value;
+	}
+
+	protected static boolean isNumeric(int field) {
+		return field >= F_TEMPERATURE && field <= F_TIME_SECONDS;
+	}
+
+	protected void setNumber(int field, double value) {
+		switch (field) {
+		case F_TEMPERATURE: obs.temperature = value; break;
+		case F_DEW_POINT: obs.dewPoint = value; break;
+		case F_FEELS_LIKE: obs.feelsLike = value; break;
+		case F_HUMIDITY: obs.humidity = value; break;
+		case F_PRESSURE_INCHES: obs.pressure = value; break;
+		case F_PRESSURE_HPA: obs.pressure = value / HPA_PER_INCH; break;
+		case F_WIND_SPEED: obs.windSpeed = value; break;
+		case F_WIND_DIRECTION: obs.windDirection = value; break;
+		case F_RAIN_INCHES: obs.rain = value; break;
+		case F_RAIN_MM: obs.rain = value / MM_PER_INCH; break;
+		case F_TIME_SECONDS:
+			if (!Double.isNaN(value)) obs.observationTime = (long) value * 1000;
+			break;
+		default: break;
+		}
+	}
+
+	protected void setText(int field, String value) {
+		switch (field) {
+		case F_WIND: obs.wind = value; break;
+		case F_WEATHER: obs.weather = value; break;
+		case F_FORECAST: obs.forecast = value; break;
+		case F_TIME_RFC822:
+			try {
+				obs.observationTime = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+			}
+			catch (DateTimeParseException ignore) {}
+			break;
+		default: break;
+		}
+	}
+
+	protected void trimText() {
+		int end = text.length();
+		while (end > 0 && Character.isWhitespace(text.charAt(end - 1))) end--;
+		text.setLength(end);
+		int start = 0;
+		while (start < end && Character.isWhitespace(text.charAt(start))) start++;
+		if (start > 0) text.delete(0, start);
+	}
+
+	/** Starts collecting a new key or element name */
+	protected void clearToken() {
+		tokenLength = 0;
+	}
+
+	protected void appendToken(int c) {
+		// Keys longer than the buffer can't match anything we look for
+		if (tokenLength < token.length) token[tokenLength] = (char) c;
+		tokenLength++;
+	}
+
+	protected boolean tokenIs(String key) {
+		if (tokenLength != key.length()) return false;
+		for (int i = 0; i < tokenLength; i++) {
+			if (token[i] != key.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	/** Reads up to and including the next <code>end</code>, returning it or -1 */
+	protected int skipTo(char end) throws IOException {
+		int c = read();
+		while (c != -1 && c != end) c = read();
+		return c;
+	}
+
+	protected int skipWhitespace() throws IOException {
+		int c = peek();
+		while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+			read();
+			c = peek();
+		}
+		return c;
+	}
+
+	protected int peek() throws IOException {
+		if (pos == limit && !fill()) return -1;
+		return buf[pos];
+	}
+
+	protected int read() throws IOException {
+		if (pos == limit && !fill()) return -1;
+		return buf[pos++];
+	}
+
+	private boolean fill() throws IOException {
+		int n;
+		do {
+			n = in.read(buf, 0, buf.length);
+		} while (n == 0);
+		pos = 0;
+		limit = n < 0 ? 0 : n;
+		return n > 0;
+	}
+}
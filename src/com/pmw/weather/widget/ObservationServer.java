@@ -0,0 +1,276 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pmw.weather.widget;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the latest observation of each location over HTTP for dashboards:
+ * <code>/observations</code> as JSON and <code>/metrics</code> in the
+ * Prometheus text format. Values the provider did not report are null in the
+ * JSON and left out of the metrics.
+ */
+public class ObservationServer implements ObservationListener {
+
+	private static class Entry {
+		/** Latest observation, or null before the first */
+		Observation observation;
+		/** True while the observation is the one saved by a previous run */
+		boolean stale;
+		long updated;
+		long failures;
+		String lastError;
+	}
+
+	private final HttpServer server;
+	private final Map<Location,Entry> entries = new LinkedHashMap<Location,Entry>();
+
+	public ObservationServer(InetSocketAddress address, List<Location> locations) throws IOException {
+		setLocations(locations);
+		server = HttpServer.create(address, 0);
+		server.createContext("/", this::handle);
+	}
+
+	public InetSocketAddress getAddress() { return server.getAddress(); }
+
+	public void start() {
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+	}
+
+	/** Serves these locations from now on, keeping what is known about those already served */
+	public synchronized void setLocations(List<Location> locations) {
+		Map<Location,Entry> previous = new LinkedHashMap<Location,Entry>(entries);
+		entries.clear();
+		for (Location location : locations) {
+			Entry entry = previous.get(location);
+			entries.put(location, entry != null ? entry : new Entry());
+		}
+	}
+
+	/** Serves an observation saved by a previous run until the location is polled */
+	public synchronized void showSnapshot(Location location, Observation observation, long savedTime) {
+		Entry entry = entries.get(location);
+		if (entry == null || entry.observation != null) return;
+		entry.observation = observation;
+		entry.stale = true;
+		entry.updated = savedTime;
+	}
+
+	@Override
+	public synchronized void observationUpdated(Location location, Observation observation) {
+		Entry entry = entries.get(location);
+		if (entry == null) return;
+		entry.observation = observation;
+		entry.stale = false;
+		entry.updated = System.currentTimeMillis();
+		entry.lastError = null;
+	}
+
+	@Override
+	public synchronized void pollFailed(Location location, Throwable cause) {
+		Entry entry = entries.get(location);
+		if (entry == null) return;
+		entry.failures++;
+		entry.lastError = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String method = exchange.getRequestMethod();
+			if (!method.equals("GET") && !method.equals("HEAD")) {
+				exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+				send(exchange, 405, "text/plain; charset=utf-8", "Method not allowed\n");
+				return;
+			}
+			String path = exchange.getRequestURI().getPath();
+			if (path.equals("/") || path.equals("/observations")) {
+				send(exchange, 200, "application/json; charset=utf-8", toJSON());
+			}
+			else if (path.equals("/metrics")) {
+				send(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", toPrometheus());
+			}
+			else {
+				send(exchange, 404, "text/plain; charset=utf-8", "Not found\n");
+			}
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+		boolean head = exchange.getRequestMethod().equals("HEAD");
+		exchange.sendResponseHeaders(status, head ? -1 : bytes.length);
+		if (!head) {
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		}
+	}
+
+	synchronized String toJSON() {
+		StringBuilder sb = new StringBuilder(256 + entries.size() * 512);
+		sb.append("{\"locations\":[");
+		boolean first = true;
+		for (Map.Entry<Location,Entry> e : entries.entrySet()) {
+			Location location = e.getKey();
+			Entry entry = e.getValue();
+			Observation obs = entry.observation;
+			if (!first) sb.append(',');
+			first = false;
+			sb.append("\n{\"index\":").append(location.getIndex());
+			sb.append(",\"name\":"); appendJSON(sb, location.getName());
+			sb.append(",\"available\":").append(obs != null);
+			sb.append(",\"stale\":").append(entry.stale);
+			sb.append(",\"updated\":").append(entry.updated > 0 ? Long.toString(entry.updated) : "null");
+			sb.append(",\"failures\":").append(entry.failures);
+			sb.append(",\"lastError\":"); appendJSON(sb, entry.lastError);
+			if (obs != null) {
+				sb.append(",\"observationTime\":").append(obs.getObservationTime() > 0 ? Long.toString(obs.getObservationTime()) : "null");
+				sb.append(",\"estimated\":").append(obs.isEstimated());
+				sb.append(",\"temperature\":"); appendJSON(sb, obs.getTemperature());
+				sb.append(",\"dewPoint\":"); appendJSON(sb, obs.getDewPoint());
+				sb.append(",\"feelsLike\":"); appendJSON(sb, obs.getFeelsLike());
+				sb.append(",\"humidity\":"); appendJSON(sb, obs.getHumidity());
+				sb.append(",\"pressure\":"); appendJSON(sb, obs.getPressure());
+				sb.append(",\"windSpeed\":"); appendJSON(sb, obs.getWindSpeed());
+				sb.append(",\"windDirection\":"); appendJSON(sb, obs.getWindDirection());
+				sb.append(",\"rain\":"); appendJSON(sb, obs.getRain());
+				sb.append(",\"wind\":"); appendJSON(sb, obs.getWind());
+				sb.append(",\"weather\":"); appendJSON(sb, obs.getWeather());
+				sb.append(",\"forecast\":"); appendJSON(sb, obs.getForecast());
+			}
+			sb.append('}');
+		}
+		sb.append("\n]}\n");
+		return sb.toString();
+	}
+
+	static void appendJSON(StringBuilder sb, double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) sb.append("null");
+		else sb.append(value);
+	}
+
+	static void appendJSON(StringBuilder sb, String value) {
+		if (value == null) {
+			sb.append("null");
+			return;
+		}
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"': sb.append("\\\""); break;
+			case '\\': sb.append("\\\\"); break;
+			case '\n': sb.append("\\n"); break;
+			case '\r': sb.append("\\r"); break;
+			case '\t': sb.append("\\t"); break;
+			default:
+				if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+				else sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+
+	synchronized String toPrometheus() {
+		StringBuilder sb = new StringBuilder(1024 + entries.size() * 1024);
+		appendGauge(sb, "weather_temperature_fahrenheit", "Air temperature.", 0);
+		appendGauge(sb, "weather_dew_point_fahrenheit", "Dew point.", 1);
+		appendGauge(sb, "weather_feels_like_fahrenheit", "Apparent temperature.", 2);
+		appendGauge(sb, "weather_relative_humidity_percent", "Relative humidity.", 3);
+		appendGauge(sb, "weather_pressure_inches_hg", "Barometric pressure.", 4);
+		appendGauge(sb, "weather_wind_speed_mph", "Wind speed.", 5);
+		appendGauge(sb, "weather_wind_direction_degrees", "Direction the wind is blowing from.", 6);
+		appendGauge(sb, "weather_rain_inches", "Recent rainfall.", 7);
+		appendGauge(sb, "weather_observation_timestamp_seconds", "When the provider took the observation.", 8);
+		appendGauge(sb, "weather_updated_timestamp_seconds", "When the observation was last received.", 9);
+		appendGauge(sb, "weather_observation_stale", "1 while the observation is the one saved by a previous run.", 10);
+
+		sb.append("# HELP weather_poll_failures_total Polls that failed.\n");
+		sb.append("# TYPE weather_poll_failures_total counter\n");
+		for (Map.Entry<Location,Entry> e : entries.entrySet()) {
+			sb.append("weather_poll_failures_total");
+			appendLabels(sb, e.getKey());
+			sb.append(' ').append(e.getValue().failures).append('\n');
+		}
+		return sb.toString();
+	}
+
+	private void appendGauge(StringBuilder sb, String name, String help, int field) {
+		boolean header = false;
+		for (Map.Entry<Location,Entry> e : entries.entrySet()) {
+			Entry entry = e.getValue();
+			if (entry.observation == null) continue;
+			double value = value(entry, field);
+			if (Double.isNaN(value)) continue;
+			if (!header) {
+				sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+				sb.append("# TYPE ").append(name).append(" gauge\n");
+				header = true;
+			}
+			sb.append(name);
+			appendLabels(sb, e.getKey());
+			sb.append(' ').append(value).append('\n');
+		}
+	}
+
+	private static double value(Entry entry, int field) {
+		Observation obs = entry.observation;
+		switch (field) {
+		case 0: return obs.getTemperature();
+		case 1: return obs.getDewPoint();
+		case 2: return obs.getFeelsLike();
+		case 3: return obs.getHumidity();
+		case 4: return obs.getPressure();
+		case 5: return obs.getWindSpeed();
+		case 6: return obs.getWindDirection();
+		case 7: return obs.getRain();
+		case 8: return obs.getObservationTime() > 0 ? obs.getObservationTime() / 1000.0 : Double.NaN;
+		case 9: return entry.updated > 0 ? entry.updated / 1000.0 : Double.NaN;
+		case 10: return entry.stale ? 1 : 0;
+		default: return Double.NaN;
+		}
+	}
+
+	private static void appendLabels(StringBuilder sb, Location location) {
+		sb.append("{index=\"").append(location.getIndex()).append("\",location=\"");
+		String name = location.getDisplayName();
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c == '\\' || c == '"') sb.append('\\').append(c);
+			else if (c == '\n') sb.append("\\n");
+			else sb.append(c);
+		}
+		sb.append("\"}");
+	}
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Last good observation of each location, kept in a small binary file so the
+ * widget can show something the moment it starts instead of waiting for the
+ * network. The file is rewritten after every successful poll; each record
+ * carries a SHA-256 of the location's URL, so a snapshot is dropped when the
+ * configuration changes and the file never holds an API key.
+ */
+public class ObservationSnapshot implements ObservationListener {
+
+	private static final int MAGIC = 0x57575331;	// "WWS1"
+	/** Version 1 stored the URL itself */
+	private static final int VERSION = 2;
+	private static final int URL_HASH_SIZE = 32;
+
+	private final File file;
+	private final List<Location> locations;
+
+	/** Encoded record per location index, in the order they were last saved */
+	private final Map<Integer,byte[]> records = new LinkedHashMap<Integer,byte[]>();
+	private final Map<Location,Long> savedTimes = new LinkedHashMap<Location,Long>();
+
+	public ObservationSnapshot(File file, List<Location> locations) {
+		this.file = file;
+		this.locations = locations;
+	}
+
+	/**
+	 * Reads the snapshot, returning the saved observation of each configured
+	 * location that has one. A missing or unreadable file gives an empty map.
+	 */
+	public synchronized Map<Location,Observation> load() {
+		Map<Location,Observation> observations = new LinkedHashMap<Location,Observation>();
+		if (!file.isFile()) return observations;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				System.err.println("Ignoring unrecognized snapshot " + file);
+				return observations;
+			}
+			// An older version is replaced after the next poll
+			if (in.readInt() != VERSION) return observations;
+			int count = in.readInt();
+			for (int n = 0; n < count; n++) {
+				byte[] record = new byte[in.readInt()];
+				in.readFully(record);
+				DataInputStream rin = new DataInputStream(new ByteArrayInputStream(record));
+				int index = rin.readInt();
+				byte[] urlHash = new byte[URL_HASH_SIZE];
+				rin.readFully(urlHash);
+				long savedTime = rin.readLong();
+				Location location = find(index, urlHash);
+				if (location == null) continue;
+
+				Observation obs = new Observation.Builder()
+						.observationTime(rin.readLong())
+						.temperature(rin.readDouble())
+						.dewPoint(rin.readDouble())
+						.feelsLike(rin.readDouble())
+						.humidity(rin.readDouble())
+						.pressure(rin.readDouble())
+						.windSpeed(rin.readDouble())
+						.windDirection(rin.readDouble())
+						.rain(rin.readDouble())
+						.wind(readString(rin))
+						.weather(readString(rin))
+						.forecast(readString(rin))
+						.build();
+
+				records.put(index, record);
+				savedTimes.put(location, savedTime);
+				observations.put(location, obs);
+			}
+		}
+		catch (EOFException ex) {
+			System.err.println("Truncated snapshot " + file);
+		}
+		catch (IOException ex) {
+			System.err.println("Error reading snapshot " + file + ": " + ex.getMessage());
+		}
+		return observations;
+	}
+
+	/** When the snapshot of a location was saved, in epoch milliseconds, or 0 if there is none */
+	public synchronized long getSavedTime(Location location) {
+		Long time = savedTimes.get(location);
+		return time != null ? time : 0;
+	}
+
+	private Location find(int index, byte[] urlHash) {
+		for (Location location : locations) {
+			if (location.getIndex() == index && MessageDigest.isEqual(urlHash(location), urlHash)) return location;
+		}
+		return null;
+	}
+
+	private static byte[] urlHash(Location location) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(location.getURL().getBytes(StandardCharsets.UTF_8));
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	@Override
+	public synchronized void observationUpdated(Location location, Observation observation) {
+		if (observation.isEstimated()) return;
+		long now = System.currentTimeMillis();
+		try {
+			records.put(location.getIndex(), encode(location, observation, now));
+			savedTimes.put(location, now);
+			save();
+		}
+		catch (IOException ex) {
+			System.err.println("Error saving snapshot " + file + ": " + ex.getMessage());
+		}
+	}
+
+	@Override
+	public void pollFailed(Location location, Throwable cause) {
+	}
+
+	private static byte[] encode(Location location, Observation obs, long savedTime) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(location.getIndex());
+		out.write(urlHash(location));
+		out.writeLong(savedTime);
+		out.writeLong(obs.getObservationTime());
+		out.writeDouble(obs.getTemperature());
+		out.writeDouble(obs.getDewPoint());
+		out.writeDouble(obs.getFeelsLike());
+		out.writeDouble(obs.getHumidity());
+		out.writeDouble(obs.getPressure());
+		out.writeDouble(obs.getWindSpeed());
+		out.writeDouble(obs.getWindDirection());
+		out.writeDouble(obs.getRain());
+		writeString(out, obs.getWind());
+		writeString(out, obs.getWeather());
+		writeString(out, obs.getForecast());
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/** Writes every record to a temporary file and moves it over the snapshot */
+	private void save() throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) parent.mkdirs();
+		File temp = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(records.size());
+			for (byte[] record : records.values()) {
+				out.writeInt(record.length);
+				out.write(record);
+			}
+		}
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException ex) {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) out.writeUTF(value);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+}
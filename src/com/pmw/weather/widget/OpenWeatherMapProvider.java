@@ -0,0 +1,371 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OpenWeatherMap current weather JSON, as returned by /data/2.5/weather.
+ * Cities with the same API key and options are fetched together, up to 20 at
+ * a time, through the /data/2.5/group endpoint using the city id from each
+ * one's first response. Forecasts are read from /data/2.5/forecast or its
+ * hourly variant.
+ */
+public class OpenWeatherMapProvider implements WeatherProvider {
+
+	private static final String WEATHER_PATH = "/data/2.5/weather";
+	private static final String GROUP_PATH = "/data/2.5/group";
+	private static final int MAX_GROUP_SIZE = 20;
+
+	@Override
+	public String getName() { return "OpenWeatherMap JSON"; }
+
+	@Override
+	public boolean acceptsContentType(String mediaType) {
+		return mediaType.equals("application/json");
+	}
+
+	@Override
+	public boolean acceptsContent(CharSequence head) {
+		return head.length() > 0 && head.charAt(0) == '{';
+	}
+
+	@Override
+	public ObservationParser newParser() {
+		return new Parser();
+	}
+
+	/** The endpoint and every query parameter except the one choosing the city */
+	@Override
+	public String getBatchKey(URI uri) {
+		if (uri.getRawPath() == null || !uri.getRawPath().endsWith(WEATHER_PATH)) return null;
+		List<String> options = options(uri);
+		if (options == null) return null;
+		Collections.sort(options);
+		return uri.getScheme() + "://" + uri.getRawAuthority() + uri.getRawPath() + "?" + String.join("&", options);
+	}
+
+	@Override
+	public int getMaxBatchSize() {
+		return MAX_GROUP_SIZE;
+	}
+
+	@Override
+	public URI getBatchURI(URI uri, List<String> ids) {
+		String path = uri.getRawPath();
+		StringBuilder sb = new StringBuilder();
+		sb.append(uri.getScheme()).append("://").append(uri.getRawAuthority());
+		sb.append(path, 0, path.length() - WEATHER_PATH.length()).append(GROUP_PATH);
+		sb.append("?id=").append(String.join(",", ids));
+		for (String option : options(uri)) sb.append('&').append(option);
+		return URI.create(sb.toString());
+	}
+
+	/**
+	 * The raw query parameters other than q, id, zip, lat and lon, or null if
+	 * the response is not JSON.
+	 */
+	private static List<String> options(URI uri) {
+		List<String> options = new ArrayList<String>();
+		String query = uri.getRawQuery();
+		if (query == null) return options;
+		for (String parameter : query.split("&")) {
+			if (parameter.isEmpty()) continue;
+			int eq = parameter.indexOf('=');
+			String name = eq >= 0 ? parameter.substring(0, eq) : parameter;
+			switch (name) {
+			case "q": case "id": case "zip": case "lat": case "lon":
+				break;
+			case "mode":
+				if (!parameter.substring(eq + 1).equals("json")) return null;
+				options.add(parameter);
+				break;
+			default:
+				options.add(parameter);
+			}
+		}
+		return options;
+	}
+
+	private static final class Parser extends ObservationParser {
+
+		private static final int MAX_DEPTH = 64;
+
+		// Object contexts
+		private static final int CTX_OTHER = 0;
+		private static final int CTX_ROOT = 1;
+		private static final int CTX_MAIN = 2;
+		private static final int CTX_WIND = 3;
+		private static final int CTX_WEATHER = 4;
+		private static final int CTX_WEATHER_ITEM = 5;
+		private static final int CTX_RAIN = 6;
+		private static final int CTX_GROUP = 7;
+		private static final int CTX_LIST = 8;
+
+		// Keys that open an object or array of interest
+		private static final int F_MAIN_OBJECT = 16;
+		private static final int F_WIND_OBJECT = 17;
+		private static final int F_WEATHER_ARRAY = 18;
+		private static final int F_RAIN_OBJECT = 19;
+		private static final int F_CITY_ID = 20;
+		private static final int F_LIST_ARRAY = 21;
+		private static final int F_LIST_ITEM = 22;
+
+		/** City id of the response, or of the list item, being read; 0 if none */
+		private long cityId;
+		private String batchId;
+		/** Where the cities of a group response go, or null when reading one city */
+		private Map<String,Observation> batch;
+		/** Where the times of a forecast response go, or null */
+		private List<Observation> forecast;
+
+		@Override
+		protected void parseBody() throws IOException {
+			if (read() != '{') throw new IOException("JSON response is not an object");
+			cityId = 0;
+			parseObject(CTX_ROOT, 0);
+			batchId = cityId > 0 ? Long.toString(cityId) : null;
+		}
+
+		@Override
+		public String getBatchId() {
+			return batchId;
+		}
+
+		/** Reads a /group response: {"cnt":N,"list":[city, ...]} */
+		@Override
+		public void parseBatch(Reader in, Map<String,Observation> observations) throws IOException {
+			try {
+				if (begin(in) != '{') throw new IOException("JSON response is not an object");
+				read();
+				batch = observations;
+				parseObject(CTX_GROUP, 0);
+			}
+			finally {
+				batch = null;
+				end();
+			}
+		}
+
+		/** Reads a forecast response: {"cnt":N,"list":[time, ...],"city":{...}} */
+		@Override
+		public void parseForecast(Reader in, List<Observation> forecast) throws IOException {
+			try {
+				if (begin(in) != '{') throw new IOException("JSON response is not an object");
+				read();
+				this.forecast = forecast;
+				parseObject(CTX_GROUP, 0);
+			}
+			finally {
+				this.forecast = null;
+				end();
+			}
+		}
+
+		private void parseListItem(int depth) throws IOException {
+			cityId = 0;
+			parseObject(CTX_ROOT, depth);
+			Observation observation = nextObservation();
+			if (forecast != null) forecast.add(observation);
+			else if (cityId > 0) batch.put(Long.toString(cityId), observation);
+		}
+
+		private void parseObject(int ctx, int depth) throws IOException {
+			if (depth > MAX_DEPTH) throw new IOException("JSON nested too deeply");
+			while (true) {
+				int c = skipWhitespace();
+				if (c == -1) throw new IOException("JSON response ended inside an object");
+				read();
+				if (c == '}') return;
+				if (c == ',') continue;
+				if (c != '"') throw new IOException("Unexpected '" + (char) c + "' in JSON object");
+				readKey();
+				if (skipWhitespace() != ':') throw new IOException("Missing ':' after JSON key");
+				read();
+				parseValue(field(ctx), depth);
+			}
+		}
+
+		private void parseArray(int ctx, int depth) throws IOException {
+			if (depth > MAX_DEPTH) throw new IOException("JSON nested too deeply");
+			int index = 0;
+			while (true) {
+				int c = skipWhitespace();
+				if (c == -1) throw new IOException("JSON response ended inside an array");
+				if (c == ']') {
+					read();
+					return;
+				}
+				if (c == ',') {
+					read();
+					index++;
+					continue;
+				}
+				int field = F_NONE;
+				if (ctx == CTX_WEATHER && index == 0) field = F_WEATHER_ARRAY;
+				else if (ctx == CTX_LIST && (batch != null || forecast != null)) field = F_LIST_ITEM;
+				parseValue(field, depth);
+			}
+		}
+
+		private void parseValue(int field, int depth) throws IOException {
+			int c = skipWhitespace();
+			if (c == '{') {
+				read();
+				if (field == F_LIST_ITEM) parseListItem(depth + 1);
+				else parseObject(objectContext(field), depth + 1);
+			}
+			else if (c == '[') {
+				read();
+				parseArray(arrayContext(field), depth + 1);
+			}
+			else if (c == '"') {
+				read();
+				if (field == F_WEATHER) {
+					readString(true);
+					setText(field, text.toString());
+				}
+				else {
+					readString(false);
+				}
+			}
+			else if (c == '-' || (c >= '0' && c <= '9')) {
+				double value = readNumber();
+				if (isNumeric(field)) setNumber(field, value);
+				else if (field == F_CITY_ID && value > 0) cityId = (long) value;
+			}
+			else if (c == '}') {
+				throw new IOException("Unexpected '}' in JSON array");
+			}
+			else {
+				// true, false or null
+				while (c != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+					read();
+					c = peek();
+				}
+			}
+		}
+
+		/**
+		 * Maps the key just read to a field. Keys only count in the object they
+		 * belong to, so "temp" is not confused with "temp_min" and the wind
+		 * "speed" and "deg" cannot be picked up from any other object.
+		 */
+		private int field(int ctx) {
+			switch (ctx) {
+			case CTX_ROOT:
+				if (tokenIs("main")) return F_MAIN_OBJECT;
+				if (tokenIs("wind")) return F_WIND_OBJECT;
+				if (tokenIs("weather")) return F_WEATHER_ARRAY;
+				if (tokenIs("rain")) return F_RAIN_OBJECT;
+				if (tokenIs("dt")) return F_TIME_SECONDS;
+				if (tokenIs("id")) return F_CITY_ID;
+				return F_NONE;
+			case CTX_GROUP:
+				if (tokenIs("list")) return F_LIST_ARRAY;
+				return F_NONE;
+			case CTX_MAIN:
+				if (tokenIs("temp")) return F_TEMPERATURE;
+				if (tokenIs("feels_like")) return F_FEELS_LIKE;
+				if (tokenIs("humidity")) return F_HUMIDITY;
+				if (tokenIs("pressure")) return F_PRESSURE_HPA;
+				return F_NONE;
+			case CTX_WIND:
+				if (tokenIs("speed")) return F_WIND_SPEED;
+				if (tokenIs("deg")) return F_WIND_DIRECTION;
+				return F_NONE;
+			case CTX_WEATHER_ITEM:
+				if (tokenIs("main")) return F_WEATHER;
+				return F_NONE;
+			case CTX_RAIN:
+				if (tokenIs("1h")) return F_RAIN_MM;
+				return F_NONE;
+			default:
+				return F_NONE;
+			}
+		}
+
+		private static int objectContext(int field) {
+			switch (field) {
+			case F_MAIN_OBJECT: return CTX_MAIN;
+			case F_WIND_OBJECT: return CTX_WIND;
+			case F_WEATHER_ARRAY: return CTX_WEATHER_ITEM;
+			case F_RAIN_OBJECT: return CTX_RAIN;
+			default: return CTX_OTHER;
+			}
+		}
+
+		private static int arrayContext(int field) {
+			switch (field) {
+			case F_WEATHER_ARRAY: return CTX_WEATHER;
+			case F_LIST_ARRAY: return CTX_LIST;
+			default: return CTX_OTHER;
+			}
+		}
+
+		private void readKey() throws IOException {
+			clearToken();
+			int c = read();
+			while (c != '"') {
+				if (c == -1) throw new IOException("JSON response ended inside a string");
+				if (c == '\\') c = readEscape();
+				appendToken(c);
+				c = read();
+			}
+		}
+
+		private void readString(boolean keep) throws IOException {
+			text.setLength(0);
+			int c = read();
+			while (c != '"') {
+				if (c == -1) throw new IOException("JSON response ended inside a string");
+				if (c == '\\') c = readEscape();
+				if (keep) text.append((char) c);
+				c = read();
+			}
+		}
+
+		private int readEscape() throws IOException {
+			int c = read();
+			switch (c) {
+			case 'b': return '\b';
+			case 'f': return '\f';
+			case 'n': return '\n';
+			case 'r': return '\r';
+			case 't': return '\t';
+			case 'u':
+				int value = 0;
+				for (int i = 0; i < 4; i++) {
+					int digit = Character.digit(read(), 16);
+					if (digit < 0) throw new IOException("Invalid unicode escape in JSON string");
+					value = (value << 4) | digit;
+				}
+				return value;
+			case -1:
+				throw new IOException("JSON response ended inside a string");
+			default:
+				return c;
+			}
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.IOException;
+
+/**
+ * The pipe delimited conditions feed: one key|value per line.
+ */
+public class PipeFeedProvider implements WeatherProvider {
+
+	@Override
+	public String getName() { return "pipe delimited feed"; }
+
+	@Override
+	public boolean acceptsContentType(String mediaType) {
+		return mediaType.equals("text/plain");
+	}
+
+	/** A key and a '|' before the end of the first line */
+	@Override
+	public boolean acceptsContent(CharSequence head) {
+		for (int i = 0; i < head.length(); i++) {
+			char c = head.charAt(i);
+			if (c == '|') return i > 0;
+			if (c == '\n' || c == '<' || c == '{') return false;
+		}
+		return false;
+	}
+
+	@Override
+	public ObservationParser newParser() {
+		return new Parser();
+	}
+
+	private static final class Parser extends ObservationParser {
+
+		@Override
+		protected void parseBody() throws IOException {
+			int c;
+			do {
+				clearToken();
+				c = read();
+				while (c != -1 && c != '|' && c != '\n') {
+					appendToken(c);
+					c = read();
+				}
+				if (c == '|') {
+					int field = field();
+					if (isNumeric(field)) {
+						setNumber(field, readNumber());
+					}
+					else if (field != F_NONE) {
+						readText();
+						if (text.length() > 0) setText(field, text.toString());
+					}
+					c = skipTo('\n');
+				}
+			} while (c != -1);
+		}
+
+		private int field() {
+			if (tokenIs("temperature")) return F_TEMPERATURE;
+			if (tokenIs("dew_point")) return F_DEW_POINT;
+			if (tokenIs("humidity")) return F_HUMIDITY;
+			if (tokenIs("pressure")) return F_PRESSURE_INCHES;
+			if (tokenIs("rain")) return F_RAIN_INCHES;
+			if (tokenIs("wind_gust")) return F_WIND;
+			if (tokenIs("current_wx")) return F_WEATHER;
+			if (tokenIs("period_0_weather")) return F_FORECAST;
+			return F_NONE;
+		}
+
+		private void readText() throws IOException {
+			text.setLength(0);
+			int c = peek();
+			while (c != -1 && c != '\n') {
+				text.append((char) read());
+				c = peek();
+			}
+			int end = text.length();
+			if (end > 0 && text.charAt(end - 1) == '\r') text.setLength(--end);
+			// Strip off any trailing HTML escape codes
+			int htmlIndex = text.indexOf("&");
+			if (htmlIndex > 0 && end > 0 && text.charAt(end - 1) == ';') {
+				text.setLength(htmlIndex);
+			}
+		}
+	}
+}
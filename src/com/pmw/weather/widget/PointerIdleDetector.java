@@ -0,0 +1,54 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.awt.HeadlessException;
+import java.awt.MouseInfo;
+import java.awt.Point;
+import java.awt.PointerInfo;
+
+/**
+ * Takes the user to be away while the mouse pointer stays put. AWT has no
+ * idle time of its own, so this samples the pointer whenever it is asked,
+ * which the polling thread does at least once a minute. A pointer that can't
+ * be found, as on some locked screens, counts as not having moved. Typing
+ * without touching the mouse looks idle, which only slows polling down.
+ */
+public class PointerIdleDetector implements PowerManager.IdleDetector {
+
+	private Point lastLocation;
+	private long lastMoved = System.currentTimeMillis();
+
+	@Override
+	public synchronized long getIdleMillis(long now) {
+		PointerInfo pointer;
+		try {
+			pointer = MouseInfo.getPointerInfo();
+		}
+		catch (HeadlessException | SecurityException ex) {
+			return 0;
+		}
+		if (pointer != null) {
+			Point location = pointer.getLocation();
+			if (!location.equals(lastLocation)) {
+				lastLocation = location;
+				lastMoved = now;
+			}
+		}
+		return Math.max(0, now - lastMoved);
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pmw.weather.widget;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The {@link LocationMetrics} of every polled location. Each is registered
+ * as an MXBean so the numbers can be watched with JConsole or any JMX client,
+ * and they can also be printed every metricsLogInterval seconds (0, the
+ * default, turns the log off).
+ */
+public class PollMetrics {
+
+	static final String DOMAIN = "com.pmw.weather";
+
+	private final Map<Location,LocationMetrics> metrics = new ConcurrentHashMap<Location,LocationMetrics>();
+	private final Map<Location,ObjectName> names = new ConcurrentHashMap<Location,ObjectName>();
+
+	private ScheduledExecutorService logger;
+	private ScheduledFuture<?> logTask;
+	private long logInterval;
+
+	public LocationMetrics get(Location location) {
+		LocationMetrics m = metrics.get(location);
+		return m != null ? m : metrics.computeIfAbsent(location, this::create);
+	}
+
+	private LocationMetrics create(Location location) {
+		LocationMetrics m = new LocationMetrics(location);
+		try {
+			ObjectName name = new ObjectName(DOMAIN + ":type=Location,index=" + location.getIndex()
+					+ ",name=" + ObjectName.quote(location.getDisplayName()));
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(name)) server.unregisterMBean(name);
+			server.registerMBean(m, name);
+			names.put(location, name);
+		}
+		catch (JMException ex) {
+			System.err.println("Unable to register metrics for " + location + ": " + ex.getMessage());
+		}
+		return m;
+	}
+
+	/** Drops the metrics of locations that are no longer polled */
+	public void retain(List<Location> locations) {
+		for (Location location : metrics.keySet()) {
+			if (locations.contains(location)) continue;
+			metrics.remove(location);
+			ObjectName name = names.remove(location);
+			if (name == null) continue;
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			}
+			catch (JMException ex) {
+				// Already gone
+			}
+		}
+	}
+
+	/** Prints every location's metrics every <code>seconds</code>, or stops printing for 0 */
+	public synchronized void setLogInterval(long seconds) {
+		if (seconds == logInterval) return;
+		logInterval = seconds;
+		if (logTask != null) {
+			logTask.cancel(false);
+			logTask = null;
+		}
+		if (seconds <= 0) return;
+		if (logger == null) {
+			logger = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "weather-metrics");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		logTask = logger.scheduleAtFixedRate(this::log, seconds, seconds, TimeUnit.SECONDS);
+	}
+
+	private void log() {
+		for (LocationMetrics m : metrics.values()) {
+			System.out.println(m);
+		}
+	}
+
+	static long logInterval(Properties props) {
+		String value = props.getProperty("metricsLogInterval");
+		if (value == null) return 0;
+		try {
+			return Long.parseLong(value.trim());
+		}
+		catch (NumberFormatException ex) {
+			System.err.println("Invalid metricsLogInterval: " + value);
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides when each location is next polled. After a new observation the next
+ * poll is timed for just after the provider should publish the following one,
+ * using the observation timestamp and the provider's update period. The period
+ * is taken from the updateInterval property or learned from the gap between
+ * successive observations. Failures back off exponentially with jitter.
+ *
+ * Per-location settings, in seconds, with .N suffixes overriding the defaults:
+ * pollInterval (60, or 900 for a location with a forecastURL, whose
+ * temperature is estimated between polls), updateInterval (learned),
+ * pollDelay (30), maxBackoff (900).
+ *
+ * Each location's state is only touched by the poll of that location, and the
+ * engine waits for all polls before asking for the next poll time.
+ */
+public class PollScheduler {
+
+	private final long[] pollInterval;
+	private final long[] updateInterval;
+	private final long[] pollDelay;
+	private final long[] maxBackoff;
+
+	private final long[] nextPoll;
+	private final long[] lastObservation;
+	private final long[] learnedInterval;
+	private final int[] failures;
+
+	public PollScheduler(List<Location> locations, Properties props) {
+		int n = locations.size();
+		pollInterval = new long[n];
+		updateInterval = new long[n];
+		pollDelay = new long[n];
+		maxBackoff = new long[n];
+		nextPoll = new long[n];
+		lastObservation = new long[n];
+		learnedInterval = new long[n];
+		failures = new int[n];
+		for (int i = 0; i < n; i++) {
+			Location location = locations.get(i);
+			long defaultPollInterval = location.getProperty(props, "forecastURL") != null ? 900 : 60;
+			pollInterval[i] = Math.max(1, seconds(location, props, "pollInterval", defaultPollInterval)) * 1000;
+			updateInterval[i] = seconds(location, props, "updateInterval", 0) * 1000;
+			pollDelay[i] = seconds(location, props, "pollDelay", 30) * 1000;
+			maxBackoff[i] = Math.max(pollInterval[i], seconds(location, props, "maxBackoff", 900) * 1000);
+		}
+	}
+
+	private static long seconds(Location location, Properties props, String key, long defaultValue) {
+		String value = location.getProperty(props, key);
+		if (value == null) return defaultValue;
+		try {
+			return Long.parseLong(value.trim());
+		}
+		catch (NumberFormatException ex) {
+			System.err.println("Invalid " + key + " for " + location + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	public boolean isDue(int i, long now) {
+		return nextPoll[i] <= now;
+	}
+
+	/** The earliest time any location is due */
+	public long getNextPollTime() {
+		long next = Long.MAX_VALUE;
+		for (long t : nextPoll) next = Math.min(next, t);
+		return next;
+	}
+
+	/** Makes every location due now */
+	public void pollAllNow() {
+		Arrays.fill(nextPoll, 0);
+	}
+
+	/**
+	 * Records a successful poll. <code>observationTime</code> is the provider's
+	 * timestamp for the observation, or 0 when it did not send one.
+	 */
+	public void succeeded(int i, long observationTime, long now) {
+		failures[i] = 0;
+		if (observationTime <= 0) {
+			nextPoll[i] = now + pollInterval[i];
+			return;
+		}
+		if (lastObservation[i] > 0 && observationTime > lastObservation[i]) {
+			learnedInterval[i] = observationTime - lastObservation[i];
+		}
+		if (observationTime > lastObservation[i]) {
+			lastObservation[i] = observationTime;
+		}
+		nextPoll[i] = nextExpected(i, now);
+	}
+
+	/** Records a poll that found no new data (cache hit or 304) */
+	public void notModified(int i, long now) {
+		failures[i] = 0;
+		nextPoll[i] = lastObservation[i] > 0 ? nextExpected(i, now) : now + pollInterval[i];
+	}
+
+	public void failed(int i, long now) {
+		int n = Math.min(++failures[i], 30);
+		long backoff = Math.min(maxBackoff[i], pollInterval[i] << (n - 1));
+		if (backoff <= 0) backoff = maxBackoff[i];
+		// Equal jitter: wait at least half the backoff so retries stay spaced out
+		nextPoll[i] = now + backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+	}
+
+	public int getFailures(int i) { return failures[i]; }
+
+	/**
+	 * The longest this process would go between polls of a location that is
+	 * answering normally, plus one poll interval. A shared observation that no
+	 * one has checked for longer than this is stale.
+	 */
+	public long getStaleAfter(int i) {
+		long period = updateInterval[i] > 0 ? updateInterval[i] : learnedInterval[i];
+		long gap = period > 0 ? Math.min(Math.max(period, pollInterval[i]), maxBackoff[i]) + pollDelay[i] : pollInterval[i];
+		return gap + pollInterval[i];
+	}
+
+	/**
+	 * Time just after the provider should publish its next observation, or one
+	 * poll interval from now if that moment has already passed or the update
+	 * period is not known yet.
+	 */
+	private long nextExpected(int i, long now) {
+		long period = updateInterval[i] > 0 ? updateInterval[i] : learnedInterval[i];
+		if (period <= 0) return now + pollInterval[i];
+		period = Math.min(Math.max(period, pollInterval[i]), maxBackoff[i]);
+		long expected = lastObservation[i] + period + pollDelay[i];
+		return expected > now ? expected : now + pollInterval[i];
+	}
+}
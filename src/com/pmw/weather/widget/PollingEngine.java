@@ -0,0 +1,885 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches and parses every configured location concurrently, so a poll of N
+ * locations takes about as long as the slowest single request. The format of
+ * each location is detected from its first response and the parser of the
+ * matching {@link WeatherProvider} is then reused from poll to poll; each poll
+ * hands the listeners one immutable observation which they can share and keep.
+ * Locations due together whose provider can batch them, such as cities with
+ * the same OpenWeatherMap API key, are fetched with as few requests as the
+ * provider allows.
+ *
+ * Locations with a forecastURL also have their forecast fetched now and then,
+ * and between polls the listeners are given estimates made from it by a
+ * {@link ForecastEstimator}, marked with {@link Observation#isEstimated()}.
+ *
+ * The locations and their settings can be replaced while running with
+ * {@link #reconfigure}; the change is applied between polls.
+ *
+ * With sharedCache set to true, the user's widgets share their observations
+ * through a {@link SharedObservationCache} in sharedCacheFile (by default in
+ * the user's runtime or application data folder), and each URL is fetched by
+ * only one of them.
+ *
+ * A {@link PowerManager} decides how long to sleep between polls, refreshing
+ * every location when the machine wakes from suspend and, with powerSaving,
+ * sharing wakeups between locations and polling less while the user is away.
+ *
+ * A location with a wxMirrorURL serving the same data has its request
+ * repeated there when the first has had no response for longer than 95% of
+ * its recent responses took, and whichever answers first is used.
+ *
+ * A location can also list other providers to fetch its conditions from, as
+ * wxConditionsURL.alt1, .alt2 and so on. {@link CircuitBreakers} then choose
+ * which of its URLs each poll uses, by the health of their servers, and a
+ * request that fails is tried again straight away at the next healthiest.
+ * Such locations are fetched on their own rather than in batches.
+ */
+public class PollingEngine {
+
+	/** Responses timed before a location's requests are hedged */
+	private static final int MIN_HEDGE_SAMPLES = 20;
+	/** Most failover URLs used for a location */
+	private static final int MAX_FAILOVERS = 30;
+
+	private volatile List<Location> locations;
+	private final List<ObservationListener> listeners = new CopyOnWriteArrayList<ObservationListener>();
+	private final ExecutorService executor;
+	private final FetchClient client;
+	private final FetchCache cache = new FetchCache();
+	private final WeatherProviders providers = new WeatherProviders();
+	/** Batch keys whose provider refused a batch request */
+	private final Set<String> unbatchable = ConcurrentHashMap.newKeySet();
+	private final PollMetrics metrics = new PollMetrics();
+	private volatile PollScheduler scheduler;
+	private volatile ForecastEstimator forecasts;
+	private volatile SharedObservationCache shared;
+	private volatile PowerManager power;
+	private volatile CircuitBreakers breakers;
+
+	private final Object lock = new Object();
+	private volatile boolean running = true;
+
+	// Only touched by the thread running the polls
+	private URI[] uris;
+	/** Where each location's request is repeated when slow, or null */
+	private URI[] mirrors;
+	/** Each location's failover URLs, usually none */
+	private URI[][] failovers;
+	/**
+	 * Parser bound to each of a location's URLs, main one first, then its
+	 * failovers and last its wxMirrorURL, or null until its first response
+	 */
+	private Format[][] formats;
+	/** Last observation published for each location, or null */
+	private Observation[] latest;
+	/** When the shared observation last published for each location was stored */
+	private long[] sharedTimes;
+	/** When this process began reading each location from the shared cache, or 0 while it fetches it */
+	private long[] followingSince;
+
+	private List<Location> pendingLocations;
+	private Properties pendingProperties;
+
+	public PollingEngine(List<Location> locations, Properties props) {
+		this.locations = List.copyOf(locations);
+		this.scheduler = new PollScheduler(this.locations, props);
+		this.forecasts = new ForecastEstimator(this.locations, props, null);
+		this.power = new PowerManager(props);
+		this.breakers = new CircuitBreakers(props);
+
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "weather-poll-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		this.client = new FetchClient(props, executor);
+
+		metrics.setLogInterval(PollMetrics.logInterval(props));
+		configureSharedCache(props);
+
+		int n = this.locations.size();
+		uris = new URI[n];
+		mirrors = mirrors(this.locations, props);
+		failovers = failovers(this.locations, props);
+		formats = new Format[n][];
+		for (int i = 0; i < n; i++) formats[i] = new Format[failovers[i].length + 2];
+		latest = new Observation[n];
+		sharedTimes = new long[n];
+		followingSince = new long[n];
+	}
+
+	/**
+	 * Replaces the locations and their settings. {@link #run()} picks up the
+	 * change before its next poll: locations whose URL is still configured keep
+	 * their last observation, even if renamed or renumbered, and it is
+	 * published again straight away; every location is polled at once under
+	 * the new settings.
+	 */
+	public void reconfigure(List<Location> locations, Properties props) {
+		synchronized (lock) {
+			pendingLocations = List.copyOf(locations);
+			pendingProperties = props;
+			lock.notifyAll();
+		}
+	}
+
+	private void applyPendingConfiguration() {
+		List<Location> newLocations;
+		Properties props;
+		synchronized (lock) {
+			if (pendingLocations == null) return;
+			newLocations = pendingLocations;
+			props = pendingProperties;
+			pendingLocations = null;
+			pendingProperties = null;
+		}
+
+		int n = newLocations.size();
+		URI[] newUris = new URI[n];
+		URI[] newMirrors = mirrors(newLocations, props);
+		URI[][] newFailovers = failovers(newLocations, props);
+		Format[][] newFormats = new Format[n][];
+		Observation[] newLatest = new Observation[n];
+		long[] newSharedTimes = new long[n];
+		for (int i = 0; i < n; i++) {
+			newFormats[i] = new Format[newFailovers[i].length + 2];
+			int old = indexOfURL(locations, newLocations.get(i).getURL());
+			if (old >= 0) {
+				newUris[i] = uris[old];
+				boolean sameMirror = Objects.equals(mirrors[old], newMirrors[i]);
+				if (sameMirror && Arrays.equals(failovers[old], newFailovers[i])) {
+					newFormats[i] = formats[old];
+				}
+				else {
+					newFormats[i][0] = formats[old][0];
+					if (sameMirror) newFormats[i][newFormats[i].length - 1] = formats[old][formats[old].length - 1];
+				}
+				newLatest[i] = latest[old];
+				newSharedTimes[i] = sharedTimes[old];
+			}
+		}
+		// Let another process fetch the URLs no longer polled here
+		SharedObservationCache shared = this.shared;
+		for (int old = 0; shared != null && old < uris.length; old++) {
+			if (uris[old] != null && indexOfURL(newLocations, locations.get(old).getURL()) < 0) shared.release(uris[old]);
+		}
+		// With nothing to publish again, a cached response would keep a location blank until it expires
+		for (int i = 0; i < n; i++) {
+			if (newLatest[i] != null) continue;
+			try {
+				cache.invalidate(newUris[i] != null ? newUris[i] : toURI(newLocations.get(i).getURL()));
+			}
+			catch (IllegalArgumentException | MalformedURLException | URISyntaxException ex) {
+				// reported when the location is polled
+			}
+			for (URI uri : newFailovers[i]) cache.invalidate(uri);
+			if (newMirrors[i] != null) cache.invalidate(newMirrors[i]);
+		}
+		uris = newUris;
+		mirrors = newMirrors;
+		failovers = newFailovers;
+		formats = newFormats;
+		latest = newLatest;
+		sharedTimes = newSharedTimes;
+		followingSince = new long[n];
+		scheduler = new PollScheduler(newLocations, props);
+		forecasts = new ForecastEstimator(newLocations, props, forecasts);
+		PowerManager newPower = new PowerManager(props);
+		newPower.inherit(power);
+		power = newPower;
+		CircuitBreakers newBreakers = new CircuitBreakers(props);
+		newBreakers.inherit(breakers);
+		breakers = newBreakers;
+		locations = newLocations;
+		metrics.retain(newLocations);
+		metrics.setLogInterval(PollMetrics.logInterval(props));
+		configureSharedCache(props);
+
+		// A fresh cache entry would otherwise keep a kept location from being shown
+		for (int i = 0; i < n; i++) {
+			if (latest[i] != null) fireObservationUpdated(newLocations.get(i), latest[i]);
+		}
+	}
+
+	/** Index of the first location fetched from <code>url</code>, or -1 */
+	private static int indexOfURL(List<Location> locations, String url) {
+		for (int i = 0; i < locations.size(); i++) {
+			if (locations.get(i).getURL().equals(url)) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Opens, switches or closes the shared cache to match sharedCache and
+	 * sharedCacheFile. The widget polls on its own if the file can't be opened.
+	 */
+	private void configureSharedCache(Properties props) {
+		File file = null;
+		if (Boolean.parseBoolean(props.getProperty("sharedCache", "false").trim())) {
+			String name = props.getProperty("sharedCacheFile", "").trim();
+			file = name.isEmpty() ? SharedObservationCache.defaultFile() : new File(name);
+		}
+		SharedObservationCache current = shared;
+		if (current != null && current.getFile().equals(file)) return;
+		if (current != null) {
+			shared = null;
+			close(current);
+		}
+		if (file != null) {
+			try {
+				shared = SharedObservationCache.open(file);
+			}
+			catch (IOException | RuntimeException ex) {
+				System.err.println("Unable to open shared cache " + file + ": " + ex.getMessage());
+			}
+		}
+	}
+
+	private static URI[] mirrors(List<Location> locations, Properties props) {
+		URI[] mirrors = new URI[locations.size()];
+		for (int i = 0; i < mirrors.length; i++) {
+			String url = locations.get(i).getProperty(props, "wxMirrorURL");
+			if (url == null || url.isBlank()) continue;
+			mirrors[i] = toHttpURI(locations.get(i), "wxMirrorURL", url);
+		}
+		return mirrors;
+	}
+
+	private static URI[][] failovers(List<Location> locations, Properties props) {
+		URI[][] failovers = new URI[locations.size()][];
+		for (int i = 0; i < failovers.length; i++) {
+			List<URI> uris = new ArrayList<URI>();
+			for (String url : locations.get(i).getFailoverURLs(props)) {
+				URI uri = toHttpURI(locations.get(i), "failover URL", url);
+				if (uri != null && uris.size() < MAX_FAILOVERS) uris.add(uri);
+			}
+			failovers[i] = uris.toArray(new URI[0]);
+		}
+		return failovers;
+	}
+
+	/** Parses a configured http or https URL, or returns null after reporting why it is invalid */
+	private static URI toHttpURI(Location location, String setting, String url) {
+		try {
+			URI uri = toURI(url.trim());
+			if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())) {
+				throw new URISyntaxException(url, "not an http or https URL");
+			}
+			return uri;
+		}
+		catch (IllegalArgumentException | MalformedURLException | URISyntaxException ex) {
+			System.err.println("Invalid " + setting + " for " + location + ": " + ex.getMessage());
+			return null;
+		}
+	}
+
+	private static void close(SharedObservationCache cache) {
+		try {
+			cache.close();
+		}
+		catch (IOException ex) {
+			System.err.println("Error closing shared cache: " + ex.getMessage());
+		}
+	}
+
+	public List<Location> getLocations() { return locations; }
+
+	/** Listeners are called in the order they were added */
+	public void addListener(ObservationListener listener) {
+		listeners.add(listener);
+	}
+
+	public FetchCache getCache() { return cache; }
+
+	public PollMetrics getMetrics() { return metrics; }
+
+	public PollScheduler getScheduler() { return scheduler; }
+
+	public boolean isRunning() { return running; }
+
+	/** Lets power saving poll less while the user is away, as told by <code>detector</code> */
+	public void setIdleDetector(PowerManager.IdleDetector detector) {
+		power.setIdleDetector(detector);
+	}
+
+	/**
+	 * Polls each location whenever the scheduler says it is due, until
+	 * {@link #shutdown()} is called or the calling thread is interrupted.
+	 */
+	public void run() {
+		boolean[] due = new boolean[locations.size()];
+		while (running) {
+			applyPendingConfiguration();
+			if (due.length != locations.size()) due = new boolean[locations.size()];
+			PowerManager power = this.power;
+			long now = System.currentTimeMillis();
+			boolean idle = power.isIdle(now);
+			if (!power.isThrottled(now, idle)) {
+				boolean any = false;
+				for (int i = 0; i < due.length; i++) {
+					due[i] = scheduler.isDue(i, now);
+					any |= due[i];
+				}
+				if (any) {
+					poll(due);
+					power.polled(now);
+				}
+			}
+			// Nobody is looking at estimates while away
+			if (!idle) pollForecasts();
+
+			synchronized (lock) {
+				long next = scheduler.getNextPollTime();
+				if (!idle) next = Math.min(next, forecasts.getNextTime());
+				now = System.currentTimeMillis();
+				long wait = power.wakeupTime(next, now, idle) - now;
+				if (running && wait > 0 && pendingLocations == null) {
+					power.waiting();
+					try {
+						lock.wait(wait);
+					}
+					catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+						running = false;
+					}
+					if (power.resumed(wait)) {
+						System.out.println("Resumed from sleep, refreshing every location");
+						scheduler.pollAllNow();
+					}
+				}
+			}
+		}
+		executor.shutdownNow();
+		SharedObservationCache shared = this.shared;
+		if (shared != null) close(shared);
+	}
+
+	/**
+	 * Polls all locations and waits until every one has been published to the
+	 * listener, either as an observation or as a failure. Locations whose last
+	 * response is still fresh, or which answer 304 Not Modified, are not
+	 * published again.
+	 */
+	public void poll() {
+		boolean[] due = new boolean[locations.size()];
+		Arrays.fill(due, true);
+		poll(due);
+	}
+
+	private void poll(boolean[] due) {
+		List<CompletableFuture<?>> polls = new ArrayList<CompletableFuture<?>>();
+		Map<String,List<Integer>> batches = new LinkedHashMap<String,List<Integer>>();
+		for (int i = 0; i < due.length; i++) {
+			if (!due[i] || answerLocally(i)) continue;
+			String key = batchKey(i);
+			if (key != null) batches.computeIfAbsent(key, k -> new ArrayList<Integer>()).add(i);
+			else polls.add(fetch(i));
+		}
+		for (List<Integer> batch : batches.values()) {
+			int size = formats[batch.get(0)][0].provider.getMaxBatchSize();
+			for (int from = 0; from < batch.size(); from += size) {
+				List<Integer> members = batch.subList(from, Math.min(batch.size(), from + size));
+				polls.add(members.size() > 1 ? fetchBatch(members) : fetch(members.get(0)));
+			}
+		}
+		CompletableFuture.allOf(polls.toArray(new CompletableFuture<?>[0])).join();
+	}
+
+	/**
+	 * Handles a due location without a request of its own when its URL is bad,
+	 * another process fetches it or its last response is still fresh. Returns
+	 * false if it has to be fetched, which includes a location whose leader
+	 * has not checked it for longer than this process would have waited.
+	 */
+	private boolean answerLocally(int i) {
+		Location location = locations.get(i);
+		LocationMetrics m = metrics.get(location);
+		try {
+			if (uris[i] == null) uris[i] = toURI(location.getURL());
+		}
+		catch (IllegalArgumentException | MalformedURLException | URISyntaxException ex) {
+			failed(i, location, m, ex);
+			return true;
+		}
+		SharedObservationCache shared = this.shared;
+		if (shared != null && !shared.isLeader(uris[i])) {
+			long now = System.currentTimeMillis();
+			SharedObservationCache.Entry entry = shared.get(uris[i]);
+			if (followingSince[i] == 0) followingSince[i] = now;
+			long checked = Math.max(followingSince[i], entry != null ? entry.getCheckedTime() : 0);
+			if (now - checked <= scheduler.getStaleAfter(i)) {
+				readShared(i, location, m, entry);
+				return true;
+			}
+			// The leader is failing or polling less often; fetch it here, which reports any failure
+			m.recordSharedStale();
+		}
+		else {
+			followingSince[i] = 0;
+		}
+		if (cache.isFresh(uris[i], System.currentTimeMillis())) {
+			m.recordCacheHit();
+			if (shared != null) shared.checked(uris[i]);
+			scheduler.notModified(i, System.currentTimeMillis());
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * The batch key of a location whose format is known and can be fetched in
+	 * a batch, or null to fetch it on its own.
+	 */
+	private String batchKey(int i) {
+		Format format = formats[i][0];
+		if (format == null || format.parser.getBatchId() == null || failovers[i].length > 0) return null;
+		String key = format.provider.getBatchKey(uris[i]);
+		return key != null && !unbatchable.contains(key) ? key : null;
+	}
+
+	private CompletableFuture<Void> fetch(int i) {
+		final Location location = locations.get(i);
+		final LocationMetrics m = metrics.get(location);
+		final URI uri = uris[i];
+		final Observation[] latest = this.latest;
+		final SharedObservationCache shared = this.shared;
+		CompletableFuture<Observation> fetched = failovers[i].length == 0
+				? fetch(i, m, formats[i], uri, 0, breakers.get(uri), 0)
+				: failover(i, location, m, formats[i], uri, failovers[i], breakers, 0, null);
+		return fetched.handle((observation, ex) -> {
+			if (ex != null) failed(i, location, m, ex);
+			else if (observation != null) succeeded(i, location, m, uri, observation, latest, shared);
+			else notModified(i, m);
+			return null;
+		});
+	}
+
+	/**
+	 * Fetches a location from the healthiest of its URLs not yet tried, as
+	 * flagged in <code>tried</code>, and from the next one if that fails.
+	 * Completes with the error of the last URL tried when all of them fail.
+	 */
+	private CompletableFuture<Observation> failover(int i, Location location, LocationMetrics m, Format[] formats,
+			URI primary, URI[] alternates, CircuitBreakers breakers, int tried, Throwable previous) {
+		int e = breakers.choose(primary, alternates, tried, System.currentTimeMillis());
+		if (e < 0) {
+			if (previous != null) return CompletableFuture.failedFuture(previous);
+			return CompletableFuture.failedFuture(new IOException("Every URL for " + location + " is failing; waiting before trying again"));
+		}
+		URI uri = CircuitBreakers.endpoint(primary, alternates, e);
+		CircuitBreakers.Breaker breaker = breakers.get(uri);
+		long probe = breaker.tryProbe(System.currentTimeMillis());
+		if (probe == 0 && breaker.getState() == CircuitBreakers.State.HALF_OPEN) {
+			// Another location claimed the probe first
+			return failover(i, location, m, formats, primary, alternates, breakers, tried, previous);
+		}
+		if (previous != null) m.recordFailover();
+		return fetch(i, m, formats, uri, e, breaker, probe)
+				.handle((observation, ex) -> ex == null ? CompletableFuture.completedFuture(observation)
+						: failover(i, location, m, formats, primary, alternates, breakers, tried | 1 << e, ex))
+				.thenCompose(f -> f);
+	}
+
+	/**
+	 * Fetches a location from its URL number <code>e</code>, 0 being the main
+	 * one, and records the outcome with the server's breaker, as the probe
+	 * whose token is <code>probe</code> unless that is 0. Completes with null
+	 * when the previous observation is still current.
+	 */
+	private CompletableFuture<Observation> fetch(int i, LocationMetrics m, Format[] formats,
+			URI uri, int e, CircuitBreakers.Breaker breaker, long probe) {
+		final long start = System.nanoTime();
+		HttpRequest request;
+		try {
+			HttpRequest.Builder builder = client.newRequest(uri);
+			cache.addConditionalHeaders(uri, builder);
+			request = builder.build();
+		}
+		catch (IllegalArgumentException ex) {
+			breaker.record(probe, false, 0, System.currentTimeMillis());
+			return CompletableFuture.failedFuture(ex);
+		}
+
+		CompletableFuture<HttpResponse<InputStream>> sent = client.send(request);
+		// Timed from the first request alone, so hedging doesn't lower its own threshold
+		sent.thenRun(() -> m.recordTimeToHeaders(System.nanoTime() - start));
+		long hedgeDelay = hedgeDelay(m);
+		if (e == 0 && mirrors[i] != null && hedgeDelay > 0) {
+			HttpRequest.Builder hedge = client.newRequest(mirrors[i]);
+			cache.addConditionalHeaders(mirrors[i], hedge);
+			sent = client.hedge(sent, hedge.build(), hedgeDelay, m::recordHedge);
+		}
+		return sent
+				.thenApplyAsync(response -> parse(m, uri, formats, e, response, start), executor)
+				.whenComplete((observation, ex) -> breaker.record(probe, ex == null, System.nanoTime() - start, System.currentTimeMillis()));
+	}
+
+	/** How long to wait before hedging a request, or 0 until enough responses have been timed */
+	private static long hedgeDelay(LocationMetrics m) {
+		if (m.timeToHeaders.getCount() < MIN_HEDGE_SAMPLES) return 0;
+		return Math.max(1, (long) (m.timeToHeaders.percentile(0.95) * 1_000_000));
+	}
+
+	/**
+	 * Fetches several locations with one request. Locations missing from the
+	 * response are fetched on their own, and so is every location of the batch
+	 * key from then on if the provider refuses the request.
+	 */
+	private CompletableFuture<Void> fetchBatch(List<Integer> members) {
+		int first = members.get(0);
+		WeatherProvider provider = formats[first][0].provider;
+		String key = provider.getBatchKey(uris[first]);
+		Set<String> ids = new LinkedHashSet<String>();
+		for (int i : members) ids.add(formats[i][0].parser.getBatchId());
+		HttpRequest request;
+		try {
+			request = client.newRequest(provider.getBatchURI(uris[first], new ArrayList<String>(ids))).build();
+		}
+		catch (IllegalArgumentException | UnsupportedOperationException ex) {
+			disableBatching(key, uris[first], ex.getMessage());
+			return fetchEach(members);
+		}
+
+		final List<Location> locations = this.locations;
+		final Format[][] formats = this.formats;
+		final URI[] uris = this.uris;
+		final Observation[] latest = this.latest;
+		final SharedObservationCache shared = this.shared;
+		final ObservationParser parser = provider.newParser();
+		final CircuitBreakers.Breaker breaker = breakers.get(request.uri());
+		final long start = System.nanoTime();
+		return client.send(request)
+				.thenApplyAsync(response -> {
+					long headers = System.nanoTime() - start;
+					for (int i : members) metrics.get(locations.get(i)).recordTimeToHeaders(headers);
+					return parseBatch(members, parser, response, start);
+				}, executor)
+				.handle((observations, ex) -> {
+					breaker.record(ex == null, System.nanoTime() - start, System.currentTimeMillis());
+					if (ex != null) {
+						for (int i : members) failed(i, locations.get(i), metrics.get(locations.get(i)), ex);
+						return CompletableFuture.<Void>completedFuture(null);
+					}
+					if (observations == null) {
+						disableBatching(key, uris[first], "the request was refused");
+						return fetchEach(members);
+					}
+					List<Integer> missing = new ArrayList<Integer>();
+					for (int i : members) {
+						Observation observation = observations.get(formats[i][0].parser.getBatchId());
+						if (observation == null) missing.add(i);
+						else succeeded(i, locations.get(i), metrics.get(locations.get(i)), uris[i], observation, latest, shared);
+					}
+					return fetchEach(missing);
+				})
+				.thenCompose(f -> f);
+	}
+
+	private CompletableFuture<Void> fetchEach(List<Integer> members) {
+		CompletableFuture<?>[] polls = new CompletableFuture<?>[members.size()];
+		for (int n = 0; n < polls.length; n++) {
+			polls[n] = fetch(members.get(n));
+		}
+		return CompletableFuture.allOf(polls);
+	}
+
+	private void disableBatching(String key, URI uri, String reason) {
+		// The key holds the API key, so only the host is shown
+		if (unbatchable.add(key)) {
+			System.err.println("Batch requests to " + uri.getHost() + " are unavailable (" + reason + "); fetching each location on its own");
+		}
+	}
+
+	private void succeeded(int i, Location location, LocationMetrics m, URI uri, Observation observation,
+			Observation[] latest, SharedObservationCache shared) {
+		long now = System.currentTimeMillis();
+		latest[i] = observation;
+		if (shared != null) shared.put(uri, observation);
+		m.recordSuccess(observation.getObservationTime(), now);
+		scheduler.succeeded(i, observation.getObservationTime(), now);
+		forecasts.observed(i, observation, now);
+		fireObservationUpdated(location, observation);
+	}
+
+	/**
+	 * Fetches the forecasts that are due and waits for them, then publishes
+	 * the estimates that are due.
+	 */
+	private void pollForecasts() {
+		ForecastEstimator forecasts = this.forecasts;
+		long now = System.currentTimeMillis();
+		List<CompletableFuture<?>> fetches = new ArrayList<CompletableFuture<?>>();
+		for (int i = 0; i < locations.size(); i++) {
+			if (forecasts.isFetchDue(i, now)) fetches.add(fetchForecast(i, forecasts));
+		}
+		CompletableFuture.allOf(fetches.toArray(new CompletableFuture<?>[0])).join();
+
+		now = System.currentTimeMillis();
+		for (int i = 0; i < locations.size(); i++) {
+			Observation estimate = forecasts.estimate(i, now);
+			if (estimate != null) fireObservationUpdated(locations.get(i), estimate);
+		}
+	}
+
+	private CompletableFuture<Void> fetchForecast(int i, ForecastEstimator forecasts) {
+		Location location = locations.get(i);
+		URI uri = forecasts.getURI(i);
+		HttpRequest request;
+		try {
+			request = client.newRequest(uri).build();
+		}
+		catch (IllegalArgumentException ex) {
+			System.err.println("Invalid forecastURL for " + location + ": " + ex.getMessage());
+			forecasts.fetchFailed(i, System.currentTimeMillis());
+			return CompletableFuture.completedFuture(null);
+		}
+		long start = System.nanoTime();
+		return client.send(request)
+				.thenApplyAsync(response -> parseForecast(uri, response, start), executor)
+				.handle((series, ex) -> {
+					long now = System.currentTimeMillis();
+					if (ex != null) {
+						Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+						System.err.println("Error fetching the forecast for " + location + ": " + cause.getMessage());
+						forecasts.fetchFailed(i, now);
+					}
+					else {
+						forecasts.fetched(i, series, now);
+					}
+					return null;
+				});
+	}
+
+	private ForecastSeries parseForecast(URI uri, HttpResponse<InputStream> response, long sent) {
+		try (InputStream raw = response.body()) {
+			if (response.statusCode() != 200) {
+				throw new IOException("HTTP " + response.statusCode() + " from " + uri.getHost());
+			}
+			String contentType = response.headers().firstValue("Content-Type").orElse(null);
+			try (InputStream decoded = new BufferedInputStream(client.open(response, raw, sent))) {
+				WeatherProvider provider = providers.detect(contentType, decoded);
+				if (provider == null) throw new IOException("Unrecognized forecast format from " + uri.getHost());
+				List<Observation> forecast = new ArrayList<Observation>();
+				provider.newParser().parseForecast(new ResponseReader().open(decoded), forecast);
+				ForecastSeries series = ForecastSeries.of(forecast);
+				if (series.size() == 0) throw new IOException("No forecast temperatures from " + uri.getHost());
+				return series;
+			}
+		}
+		catch (IOException ex) {
+			throw new CompletionException(ex);
+		}
+	}
+
+	private void notModified(int i, LocationMetrics m) {
+		m.recordNotModified();
+		SharedObservationCache shared = this.shared;
+		if (shared != null) shared.checked(uris[i]);
+		scheduler.notModified(i, System.currentTimeMillis());
+	}
+
+	private void failed(int i, Location location, LocationMetrics m, Throwable ex) {
+		Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+		m.recordFailure(cause);
+		scheduler.failed(i, System.currentTimeMillis());
+		firePollFailed(location, cause);
+	}
+
+	/**
+	 * Publishes the observation another process stored for a location, if it
+	 * is newer than the one last published here.
+	 */
+	private void readShared(int i, Location location, LocationMetrics m, SharedObservationCache.Entry entry) {
+		long now = System.currentTimeMillis();
+		m.recordSharedRead();
+		if (entry == null || entry.getStoredTime() <= sharedTimes[i]) {
+			scheduler.notModified(i, now);
+			return;
+		}
+		sharedTimes[i] = entry.getStoredTime();
+		Observation observation = entry.getObservation();
+		latest[i] = observation;
+		m.recordSuccess(observation.getObservationTime(), now);
+		scheduler.succeeded(i, observation.getObservationTime(), now);
+		forecasts.observed(i, observation, now);
+		fireObservationUpdated(location, observation);
+	}
+
+	private void fireObservationUpdated(Location location, Observation observation) {
+		for (ObservationListener listener : listeners) {
+			try {
+				listener.observationUpdated(location, observation);
+			}
+			catch (RuntimeException ex) {
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	private void firePollFailed(Location location, Throwable cause) {
+		for (ObservationListener listener : listeners) {
+			try {
+				listener.pollFailed(location, cause);
+			}
+			catch (RuntimeException ex) {
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Parses a response body, or returns null when the cache says the previous
+	 * observation is still current. The format of the location's URL number
+	 * <code>e</code>, or of its mirror when that answered a hedged request, is
+	 * detected again only when its Content-Type changes.
+	 */
+	private Observation parse(LocationMetrics m, URI uri, Format[] formats, int e,
+			HttpResponse<InputStream> response, long sent) {
+		MeteredInputStream body = new MeteredInputStream(response.body());
+		// Cached and detected under the URL that answered, which may be the mirror
+		URI fetched = FetchClient.requestedURI(response);
+		int slot = fetched.equals(uri) ? e : formats.length - 1;
+		try (InputStream raw = body) {
+			if (cache.update(fetched, response, System.currentTimeMillis())) {
+				return null;
+			}
+			if (response.statusCode() != 200) {
+				throw new IOException("HTTP " + response.statusCode() + " from " + fetched.getHost());
+			}
+			long start = System.nanoTime();
+			String contentType = response.headers().firstValue("Content-Type").orElse(null);
+			try (InputStream decoded = client.open(response, raw, sent)) {
+				InputStream in = decoded;
+				Format format = formats[slot];
+				if (format == null || !Objects.equals(format.contentType, contentType)) {
+					in = new BufferedInputStream(decoded);
+					WeatherProvider provider = providers.detect(contentType, in);
+					if (provider == null) throw new IOException("Unrecognized response format from " + fetched.getHost());
+					format = new Format(contentType, provider);
+					formats[slot] = format;
+				}
+				Observation result = format.parser.parse(format.reader.open(in));
+				long elapsed = System.nanoTime() - start;
+				m.recordBody(body.getReadNanos(), elapsed - body.getReadNanos(), body.getBytes());
+				return result;
+			}
+		}
+		catch (IOException ex) {
+			throw new CompletionException(ex);
+		}
+	}
+
+	/**
+	 * Parses a batch response into observations by batch id, or returns null
+	 * if the provider refused the request.
+	 */
+	private Map<String,Observation> parseBatch(List<Integer> members, ObservationParser parser,
+			HttpResponse<InputStream> response, long sent) {
+		MeteredInputStream body = new MeteredInputStream(response.body());
+		try (InputStream raw = body) {
+			// Too Many Requests is a failure like any other, not a refusal to batch
+			if (response.statusCode() >= 400 && response.statusCode() < 500 && response.statusCode() != 429) {
+				return null;
+			}
+			if (response.statusCode() != 200) {
+				throw new IOException("HTTP " + response.statusCode() + " from batch request to " + response.uri().getHost());
+			}
+			long start = System.nanoTime();
+			Map<String,Observation> observations = new HashMap<String,Observation>();
+			try (InputStream decoded = client.open(response, raw, sent)) {
+				parser.parseBatch(new ResponseReader().open(decoded), observations);
+			}
+			long elapsed = System.nanoTime() - start;
+			for (int i : members) {
+				metrics.get(locations.get(i)).recordBody(body.getReadNanos(), elapsed - body.getReadNanos(), body.getBytes() / members.size());
+			}
+			return observations;
+		}
+		catch (IOException ex) {
+			throw new CompletionException(ex);
+		}
+	}
+
+	/** A location's provider and parser, and the Content-Type they were chosen for */
+	private static final class Format {
+		final String contentType;
+		final WeatherProvider provider;
+		final ObservationParser parser;
+		final ResponseReader reader = new ResponseReader();
+
+		Format(String contentType, WeatherProvider provider) {
+			this.contentType = contentType;
+			this.provider = provider;
+			this.parser = provider.newParser();
+		}
+	}
+
+	/** Stops {@link #run()} after any poll in progress has finished */
+	public void shutdown() {
+		synchronized (lock) {
+			running = false;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Converts a configured URL to a URI, quoting characters such as the spaces
+	 * in "q=New York,NY,US" that URL.openStream used to let through.
+	 */
+	static URI toURI(String url) throws MalformedURLException, URISyntaxException {
+		try {
+			return URI.create(url);
+		}
+		catch (IllegalArgumentException ex) {
+			URL u = new URL(url);
+			return new URI(u.getProtocol(), u.getUserInfo(), u.getHost(), u.getPort(), u.getPath(), u.getQuery(), u.getRef());
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how long the polling thread may sleep, to wake the machine as
+ * little as possible while keeping the conditions current.
+ *
+ * A suspended machine is noticed on waking: the wall clock moves on during
+ * suspend but the monotonic clock doesn't, and a wait overruns by however long
+ * the machine slept. Either way the engine then refreshes every location at
+ * once. So that this happens soon after resuming, no wait is longer than
+ * resumeCheckInterval seconds (60).
+ *
+ * With powerSaving=true, wakeups are also put on a grid of wakeupSlot seconds
+ * (60), so locations due within a slot share one wakeup. The grid is offset
+ * randomly per process, so many machines don't poll in step. When the
+ * {@link IdleDetector} has seen no activity for idleAfter seconds (600),
+ * polling slows to every idlePollInterval seconds (1800) and no estimates are
+ * published. Both resume as soon as there is activity again.
+ */
+public class PowerManager {
+
+	/** Reports how long the user has been away */
+	public interface IdleDetector {
+		/** Milliseconds since the user last did anything, or 0 if unknown */
+		long getIdleMillis(long now);
+	}
+
+	/** Difference between the clocks, or overrun of a wait, taken as a suspend */
+	private static final long RESUME_GAP = 30_000;
+
+	private final boolean powerSaving;
+	private final long resumeCheckInterval;
+	private final long slot;
+	private final long slotOffset;
+	private final long idleAfter;
+	private final long idlePollInterval;
+
+	private volatile IdleDetector idleDetector;
+	private long lastPollTime;
+
+	private long waitStartWall;
+	private long waitStartNanos;
+
+	public PowerManager(Properties props) {
+		powerSaving = Boolean.parseBoolean(props.getProperty("powerSaving", "false").trim());
+		resumeCheckInterval = seconds(props, "resumeCheckInterval", 60) * 1000;
+		slot = seconds(props, "wakeupSlot", 60) * 1000;
+		slotOffset = ThreadLocalRandom.current().nextLong(slot);
+		idleAfter = seconds(props, "idleAfter", 600) * 1000;
+		idlePollInterval = seconds(props, "idlePollInterval", 1800) * 1000;
+	}
+
+	private static long seconds(Properties props, String key, long defaultValue) {
+		String value = props.getProperty(key);
+		if (value == null) return defaultValue;
+		try {
+			return Math.max(1, Long.parseLong(value.trim()));
+		}
+		catch (NumberFormatException ex) {
+			System.err.println("Invalid " + key + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/** Carries over what the previous settings learned */
+	void inherit(PowerManager previous) {
+		idleDetector = previous.idleDetector;
+		lastPollTime = previous.lastPollTime;
+	}
+
+	public void setIdleDetector(IdleDetector idleDetector) {
+		this.idleDetector = idleDetector;
+	}
+
+	public boolean isPowerSaving() { return powerSaving; }
+
+	/** Whether power saving is on and the user has been away long enough to poll less */
+	public boolean isIdle(long now) {
+		IdleDetector detector = idleDetector;
+		return powerSaving && detector != null && detector.getIdleMillis(now) >= idleAfter;
+	}
+
+	/** Whether polls due now should wait because the user is away */
+	public boolean isThrottled(long now, boolean idle) {
+		return idle && now < lastPollTime + idlePollInterval;
+	}
+
+	/** Records that the due locations were polled */
+	public void polled(long now) {
+		lastPollTime = now;
+	}
+
+	/**
+	 * When to wake for work due at <code>next</code>: no later than the next
+	 * resume check, and with power saving, not before the idle poll interval
+	 * is up and at the end of the slot <code>next</code> falls in.
+	 */
+	public long wakeupTime(long next, long now, boolean idle) {
+		if (powerSaving) {
+			if (idle) next = Math.max(next, lastPollTime + idlePollInterval);
+			if (next > now && next < Long.MAX_VALUE - slot) {
+				long k = Math.floorDiv(next - slotOffset + slot - 1, slot);
+				next = k * slot + slotOffset;
+			}
+		}
+		return Math.min(next, now + resumeCheckInterval);
+	}
+
+	/** Call just before waiting */
+	public void waiting() {
+		waitStartWall = System.currentTimeMillis();
+		waitStartNanos = System.nanoTime();
+	}
+
+	/**
+	 * Call after a wait of <code>requested</code> milliseconds; returns true if
+	 * the machine seems to have been suspended meanwhile. The next poll is then
+	 * let through even if the user still looks away, since the pointer often
+	 * hasn't moved yet when a laptop is opened.
+	 */
+	public boolean resumed(long requested) {
+		long wall = System.currentTimeMillis() - waitStartWall;
+		long monotonic = (System.nanoTime() - waitStartNanos) / 1_000_000;
+		if (wall - monotonic <= RESUME_GAP && wall - requested <= RESUME_GAP) return false;
+		lastPollTime = 0;
+		return true;
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes UTF-8 response bodies through a fixed byte buffer and decoder that
+ * are reused for every response, unlike an InputStreamReader, which brings
+ * its own of each. Malformed bytes become U+FFFD. Like the parsers, keep one
+ * per location and use it from one thread at a time.
+ */
+class ResponseReader extends Reader {
+
+	private final byte[] bytes = new byte[8192];
+	private final ByteBuffer input = ByteBuffer.wrap(bytes);
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	private InputStream in;
+	private boolean endOfInput;
+	private boolean flushed;
+	/** Wraps the last array read into, which is the parser's buffer every time */
+	private CharBuffer output;
+
+	/** Starts decoding <code>in</code>, returning this reader */
+	Reader open(InputStream in) {
+		this.in = in;
+		input.clear().flip();
+		decoder.reset();
+		endOfInput = false;
+		flushed = false;
+		return this;
+	}
+
+	@Override
+	public int read(char[] cbuf, int offset, int length) throws IOException {
+		if (in == null) throw new IOException("Reader not open");
+		if (length == 0) return 0;
+		if (flushed) return -1;
+		if (output == null || !output.hasArray() || output.array() != cbuf) output = CharBuffer.wrap(cbuf);
+		output.limit(offset + length).position(offset);
+
+		while (true) {
+			CoderResult result = decoder.decode(input, output, endOfInput);
+			if (endOfInput && result.isUnderflow()) {
+				decoder.flush(output);
+				flushed = true;
+			}
+			int n = output.position() - offset;
+			if (n > 0) return n;
+			if (flushed) return -1;
+			// Only a one-char read of a surrogate pair overflows with nothing decoded
+			if (result.isOverflow()) throw new IOException("Read of " + length + " char too short for the next character");
+
+			input.compact();
+			int r = in.read(bytes, input.position(), input.remaining());
+			if (r < 0) endOfInput = true;
+			else input.position(input.position() + r);
+			input.flip();
+		}
+	}
+
+	@Override
+	public void close() {
+		in = null;
+	}
+}
@@ -0,0 +1,461 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.pmw.pmwApplication;
+
+/**
+ * Latest observation of each URL, shared through a memory-mapped file by every
+ * widget the user runs, such as one per desktop session and the headless
+ * server, so that a URL is fetched by one process however many are watching
+ * it. The file is kept in a folder of the user's own and is readable and
+ * writable by the user alone; one that is a symbolic link, belongs to another
+ * user or doesn't start with the cache's header is refused rather than
+ * overwritten.
+ *
+ * The file holds a fixed number of slots, each claimed by one URL and keyed by
+ * a hash of it, so API keys in the URL are not written to the shared file.
+ * The process holding an exclusive lock on a slot's lock region is the leader
+ * for that URL: it fetches and stores each new observation, and everyone else
+ * reads it from the mapping. The operating system drops the lock when the
+ * leader exits, and the next process to ask takes over. The leader also notes
+ * each time it finds the stored observation still current, so the others can
+ * tell a leader that has stopped checking, because it is failing or polling
+ * less often, and fetch the URL themselves.
+ *
+ * A slot is written under a sequence number which is odd while the record is
+ * being changed, so readers never take a lock: they copy the record and retry
+ * if the sequence moved in the meantime.
+ */
+public class SharedObservationCache implements Closeable {
+
+	/** The stored observation of a URL, when the leader stored it and when it last found it current */
+	public static final class Entry {
+		private final long storedTime;
+		private final long checkedTime;
+		private final Observation observation;
+
+		Entry(long storedTime, long checkedTime, Observation observation) {
+			this.storedTime = storedTime;
+			this.checkedTime = Math.max(storedTime, checkedTime);
+			this.observation = observation;
+		}
+
+		public long getStoredTime() { return storedTime; }
+
+		/** When the leader last stored the observation or found it still current */
+		public long getCheckedTime() { return checkedTime; }
+
+		public Observation getObservation() { return observation; }
+	}
+
+	private static final int MAGIC = 0x57575343;	// "WWSC"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	private static final int SLOTS = 64;
+	private static final int SLOT_SIZE = 1024;
+	private static final int MAX_TEXT = 254;
+	private static final int MAX_READ_ATTEMPTS = 100;
+
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int SLOTS_OFFSET = 8;
+	private static final int SLOT_SIZE_OFFSET = 12;
+
+	// Within a slot
+	private static final int SEQUENCE = 0;
+	private static final int KEY_HIGH = 8;
+	private static final int KEY_LOW = 16;
+	private static final int STORED_TIME = 24;
+	private static final int OBSERVATION_TIME = 32;
+	private static final int VALUES = 40;
+	private static final int TEXT = VALUES + 8 * 8;
+	/** Outside the sequence, as it is written on its own */
+	private static final int CHECKED_TIME = TEXT + 3 * (2 + MAX_TEXT);
+
+	/** Locks are taken past the end of the data so they never cover mapped bytes */
+	private static final long LOCK_BASE = 1L << 32;
+	private static final long CLAIM_LOCK = LOCK_BASE - 1;
+
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+	private final File file;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+
+	/** Slots found for the URLs asked about, and the leader locks held */
+	private final Map<URI,Integer> slots = new HashMap<URI,Integer>();
+	private final Map<URI,FileLock> leaderLocks = new HashMap<URI,FileLock>();
+
+	/**
+	 * The file used when sharedCacheFile isn't set: weather-widget.cache in
+	 * XDG_RUNTIME_DIR where there is one, otherwise in the application data
+	 * folder.
+	 */
+	public static File defaultFile() {
+		String runtime = System.getenv("XDG_RUNTIME_DIR");
+		if (runtime != null && !runtime.isEmpty() && new File(runtime).isDirectory()) {
+			return new File(runtime, "weather-widget.cache");
+		}
+		return new File(pmwApplication.appDataDir(WeatherWidget.appName), "weather-widget.cache");
+	}
+
+	/**
+	 * Opens the shared file, creating it readable and writable by the user
+	 * alone if it does not exist.
+	 */
+	public static SharedObservationCache open(File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) parent.mkdirs();
+		Path path = file.toPath();
+		try {
+			try {
+				Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+			}
+			catch (UnsupportedOperationException ex) {
+				// Not a POSIX file system; keep the default permissions
+				Files.createFile(path);
+			}
+		}
+		catch (FileAlreadyExistsException ex) {
+			// Another of the user's widgets created it, or it was planted; checked on opening
+		}
+		return new SharedObservationCache(file);
+	}
+
+	private SharedObservationCache(File file) throws IOException {
+		this.file = file;
+		// Refuses a symbolic link, so the file can't be pointed at another of the user's files
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, LinkOption.NOFOLLOW_LINKS);
+		try {
+			checkOwner(file.toPath());
+			long size = HEADER_SIZE + (long) SLOTS * SLOT_SIZE;
+			FileLock claim = channel.lock(CLAIM_LOCK, 1, false);
+			try {
+				long existing = channel.size();
+				if (existing > 0) {
+					// Only ever extend a file that is already a cache, never one that merely has the name
+					ByteBuffer magic = ByteBuffer.allocate(4);
+					channel.read(magic, MAGIC_OFFSET);
+					int value = magic.position() == 4 ? magic.getInt(0) : -1;
+					if (value != MAGIC && value != 0) throw new IOException("Unrecognized shared cache " + file);
+				}
+				if (existing < size) {
+					ByteBuffer zeros = ByteBuffer.allocate((int) (size - existing));
+					while (zeros.hasRemaining()) channel.write(zeros, existing + zeros.position());
+				}
+				this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+				if (buffer.getInt(MAGIC_OFFSET) == 0) {
+					buffer.putInt(VERSION_OFFSET, VERSION);
+					buffer.putInt(SLOTS_OFFSET, SLOTS);
+					buffer.putInt(SLOT_SIZE_OFFSET, SLOT_SIZE);
+					buffer.putInt(MAGIC_OFFSET, MAGIC);
+				}
+				else if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION
+						|| buffer.getInt(SLOTS_OFFSET) != SLOTS || buffer.getInt(SLOT_SIZE_OFFSET) != SLOT_SIZE) {
+					throw new IOException("Unrecognized shared cache " + file);
+				}
+			}
+			finally {
+				claim.release();
+			}
+		}
+		catch (IOException | RuntimeException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Refuses a file that belongs to another user or that other users can
+	 * write to, where the file system can tell.
+	 */
+	private static void checkOwner(Path path) throws IOException {
+		try {
+			UserPrincipal owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+			UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService()
+					.lookupPrincipalByName(System.getProperty("user.name"));
+			if (!owner.equals(user)) throw new IOException("Shared cache " + path + " belongs to " + owner.getName());
+			Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS);
+			if (permissions.contains(PosixFilePermission.GROUP_WRITE) || permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+				throw new IOException("Shared cache " + path + " can be written by other users");
+			}
+		}
+		catch (UnsupportedOperationException ex) {
+			// No owners or POSIX permissions on this file system
+		}
+	}
+
+	public File getFile() { return file; }
+
+	/**
+	 * Whether this process should fetch <code>uri</code>. A process that is not
+	 * the leader tries to become it on each call, so one takes over as soon as
+	 * the previous leader exits. Returns true if the cache cannot be used for
+	 * the URL, as every slot is taken.
+	 */
+	public synchronized boolean isLeader(URI uri) {
+		if (leaderLocks.containsKey(uri)) return true;
+		int slot = slot(uri, true);
+		if (slot < 0) return true;
+		try {
+			FileLock lock = channel.tryLock(LOCK_BASE + slot, 1, false);
+			if (lock == null) return false;
+			leaderLocks.put(uri, lock);
+			return true;
+		}
+		catch (OverlappingFileLockException ex) {
+			// Held through another instance on the same file in this process; fetch rather than wait on it
+			return true;
+		}
+		catch (IOException ex) {
+			System.err.println("Error locking shared cache " + file + ": " + ex.getMessage());
+			return true;
+		}
+	}
+
+	/** Gives up fetching <code>uri</code> for the other processes, if this one was */
+	public synchronized void release(URI uri) {
+		FileLock lock = leaderLocks.remove(uri);
+		if (lock == null) return;
+		try {
+			lock.release();
+		}
+		catch (IOException ex) {
+			System.err.println("Error unlocking shared cache " + file + ": " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Stores the latest observation of a URL this process is the leader for.
+	 * Does nothing otherwise.
+	 */
+	public synchronized void put(URI uri, Observation observation) {
+		if (!leaderLocks.containsKey(uri)) return;
+		int base = HEADER_SIZE + slots.get(uri) * SLOT_SIZE;
+
+		// A sequence left odd by a leader that died mid-write is simply reused
+		long sequence = ((long) LONGS.getVolatile(buffer, base + SEQUENCE) & ~1L) + 2;
+		LONGS.setVolatile(buffer, base + SEQUENCE, sequence - 1);
+		VarHandle.storeStoreFence();
+		buffer.putLong(base + STORED_TIME, System.currentTimeMillis());
+		buffer.putLong(base + OBSERVATION_TIME, observation.getObservationTime());
+		int offset = base + VALUES;
+		buffer.putDouble(offset, observation.getTemperature());
+		buffer.putDouble(offset + 8, observation.getDewPoint());
+		buffer.putDouble(offset + 16, observation.getFeelsLike());
+		buffer.putDouble(offset + 24, observation.getHumidity());
+		buffer.putDouble(offset + 32, observation.getPressure());
+		buffer.putDouble(offset + 40, observation.getWindSpeed());
+		buffer.putDouble(offset + 48, observation.getWindDirection());
+		buffer.putDouble(offset + 56, observation.getRain());
+		offset = base + TEXT;
+		offset = putText(offset, observation.getWind());
+		offset = putText(offset, observation.getWeather());
+		putText(offset, observation.getForecast());
+		LONGS.setRelease(buffer, base + SEQUENCE, sequence);
+	}
+
+	/**
+	 * Notes that the observation stored for a URL this process is the leader
+	 * for is still current, after a poll found nothing new. Does nothing
+	 * otherwise.
+	 */
+	public synchronized void checked(URI uri) {
+		if (!leaderLocks.containsKey(uri)) return;
+		int base = HEADER_SIZE + slots.get(uri) * SLOT_SIZE;
+		LONGS.setRelease(buffer, base + CHECKED_TIME, System.currentTimeMillis());
+	}
+
+	/**
+	 * The observation stored for <code>uri</code>, or null if there is none or
+	 * it kept changing while being read.
+	 */
+	public Entry get(URI uri) {
+		int slot;
+		synchronized (this) {
+			slot = slot(uri, false);
+		}
+		if (slot < 0) return null;
+		int base = HEADER_SIZE + slot * SLOT_SIZE;
+
+		Observation.Builder obs = new Observation.Builder();
+		for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+			long sequence = (long) LONGS.getAcquire(buffer, base + SEQUENCE);
+			if (sequence == 0) return null;
+			if ((sequence & 1) != 0) {
+				Thread.onSpinWait();
+				continue;
+			}
+			long storedTime = buffer.getLong(base + STORED_TIME);
+			obs.observationTime(buffer.getLong(base + OBSERVATION_TIME));
+			int offset = base + VALUES;
+			obs.temperature(buffer.getDouble(offset))
+					.dewPoint(buffer.getDouble(offset + 8))
+					.feelsLike(buffer.getDouble(offset + 16))
+					.humidity(buffer.getDouble(offset + 24))
+					.pressure(buffer.getDouble(offset + 32))
+					.windSpeed(buffer.getDouble(offset + 40))
+					.windDirection(buffer.getDouble(offset + 48))
+					.rain(buffer.getDouble(offset + 56));
+			byte[][] text = new byte[3][];
+			offset = base + TEXT;
+			for (int i = 0; i < text.length; i++) {
+				int length = Math.min(buffer.getShort(offset) & 0xFFFF, MAX_TEXT + 1);
+				text[i] = length > MAX_TEXT ? null : new byte[length];
+				if (text[i] != null) buffer.get(offset + 2, text[i]);
+				offset += 2 + MAX_TEXT;
+			}
+			VarHandle.loadLoadFence();
+			if ((long) LONGS.getVolatile(buffer, base + SEQUENCE) != sequence) continue;
+
+			obs.wind(toString(text[0])).weather(toString(text[1])).forecast(toString(text[2]));
+			return new Entry(storedTime, (long) LONGS.getAcquire(buffer, base + CHECKED_TIME), obs.build());
+		}
+		return null;
+	}
+
+	/** Releases every leader lock and unmaps the file */
+	@Override
+	public synchronized void close() throws IOException {
+		for (URI uri : leaderLocks.keySet().toArray(new URI[0])) {
+			release(uri);
+		}
+		channel.close();
+	}
+
+	/**
+	 * Finds the slot keyed by <code>uri</code> by linear probing from its hash,
+	 * claiming the first free one if <code>claim</code> is set. Returns -1 if
+	 * there is no such slot.
+	 */
+	private int slot(URI uri, boolean claim) {
+		Integer known = slots.get(uri);
+		if (known != null) return known;
+
+		long[] key = key(uri);
+		int start = (int) ((key[0] ^ key[1]) & Integer.MAX_VALUE) % SLOTS;
+		int slot = find(key, start);
+		if (slot < 0 && claim) {
+			try {
+				FileLock lock = channel.lock(CLAIM_LOCK, 1, false);
+				try {
+					// Claims are serialized by the lock, so look again before taking a free slot
+					slot = find(key, start);
+					for (int n = 0; slot < 0 && n < SLOTS; n++) {
+						int base = HEADER_SIZE + ((start + n) % SLOTS) * SLOT_SIZE;
+						if (buffer.getLong(base + KEY_HIGH) == 0 && buffer.getLong(base + KEY_LOW) == 0) {
+							buffer.putLong(base + KEY_HIGH, key[0]);
+							buffer.putLong(base + KEY_LOW, key[1]);
+							slot = (start + n) % SLOTS;
+						}
+					}
+					if (slot < 0) System.err.println("Shared cache " + file + " is full");
+				}
+				finally {
+					lock.release();
+				}
+			}
+			catch (IOException ex) {
+				System.err.println("Error claiming a slot in shared cache " + file + ": " + ex.getMessage());
+			}
+		}
+		if (slot >= 0) slots.put(uri, slot);
+		return slot;
+	}
+
+	private int find(long[] key, int start) {
+		for (int n = 0; n < SLOTS; n++) {
+			int base = HEADER_SIZE + ((start + n) % SLOTS) * SLOT_SIZE;
+			long high = buffer.getLong(base + KEY_HIGH);
+			long low = buffer.getLong(base + KEY_LOW);
+			if (high == key[0] && low == key[1]) return (start + n) % SLOTS;
+			// Slots are never freed, so an empty one ends the probe
+			if (high == 0 && low == 0) return -1;
+		}
+		return -1;
+	}
+
+	/** First 128 bits of the SHA-256 of the URL, never all zero */
+	private static long[] key(URI uri) {
+		byte[] digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256").digest(uri.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+		long high = 0;
+		long low = 0;
+		for (int i = 0; i < 8; i++) {
+			high = (high << 8) | (digest[i] & 0xFF);
+			low = (low << 8) | (digest[i + 8] & 0xFF);
+		}
+		if (high == 0 && low == 0) low = 1;
+		return new long[] { high, low };
+	}
+
+	/** Writes a string as a length and up to MAX_TEXT bytes of UTF-8; a length past MAX_TEXT means null */
+	private int putText(int offset, String value) {
+		if (value == null) {
+			buffer.putShort(offset, (short) (MAX_TEXT + 1));
+		}
+		else {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			int length = bytes.length;
+			if (length > MAX_TEXT) {
+				length = MAX_TEXT;
+				// Don't cut a character in two
+				while (length > 0 && (bytes[length] & 0xC0) == 0x80) length--;
+			}
+			buffer.putShort(offset, (short) length);
+			buffer.put(offset + 2, bytes, 0, length);
+		}
+		return offset + 2 + MAX_TEXT;
+	}
+
+	private static String toString(byte[] bytes) {
+		return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+	}
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+/**
+ * Aggregates of one value over a sliding window of time: minimum, maximum,
+ * mean and least-squares slope, each updated in amortized constant time as
+ * samples arrive and expire, so reading them costs the same however long the
+ * window is. Samples sit in a ring of primitive arrays indexed by sequence
+ * number. The minimum and maximum come from monotonic deques of sequence
+ * numbers, and the mean and slope from running sums. Those sums are rebuilt
+ * from the ring as often as the ring turns over, which keeps rounding error
+ * and the magnitude of the time offsets bounded at no extra amortized cost.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public class SlidingWindow {
+
+	private static final double MILLIS_PER_HOUR = 3_600_000.0;
+
+	private final long span;
+
+	// Samples, at sequence & mask
+	private long[] times;
+	private double[] values;
+	private int mask;
+	/** Sequence of the oldest sample held and the next one to be added */
+	private long first;
+	private long next;
+
+	// Sequences of samples that can still become the minimum or maximum, oldest first
+	private long[] minDeque;
+	private long[] maxDeque;
+	private long minFirst;
+	private long minNext;
+	private long maxFirst;
+	private long maxNext;
+
+	// Running sums, with t in hours since origin
+	private long origin;
+	private double sumT;
+	private double sumV;
+	private double sumTT;
+	private double sumTV;
+	private int removedSinceRebuild;
+
+	private long lastTime = Long.MIN_VALUE;
+
+	/** A window holding the samples of the last <code>span</code> milliseconds */
+	public SlidingWindow(long span) {
+		this(span, 16);
+	}
+
+	public SlidingWindow(long span, int initialCapacity) {
+		if (span <= 0) throw new IllegalArgumentException("span must be positive: " + span);
+		this.span = span;
+		int capacity = Integer.highestOneBit(Math.max(2, initialCapacity - 1)) << 1;
+		times = new long[capacity];
+		values = new double[capacity];
+		minDeque = new long[capacity];
+		maxDeque = new long[capacity];
+		mask = capacity - 1;
+	}
+
+	public long getSpan() { return span; }
+
+	/**
+	 * Adds a sample and drops those that have left the window. Samples must
+	 * arrive in time order; one that is not newer than the last, or is NaN,
+	 * only moves the window. Returns true if the sample was added.
+	 */
+	public boolean add(long time, double value) {
+		if (time <= lastTime) return false;
+		lastTime = time;
+		expire(time);
+		if (Double.isNaN(value)) return false;
+		if (next - first == times.length) grow();
+		if (first == next) {
+			// Start the sums afresh rather than from what rounding left of them
+			origin = time;
+			sumT = sumV = sumTT = sumTV = 0;
+			removedSinceRebuild = 0;
+		}
+
+		long sequence = next++;
+		int slot = (int) sequence & mask;
+		times[slot] = time;
+		values[slot] = value;
+
+		while (minNext > minFirst && values[(int) minDeque[(int) (minNext - 1) & mask] & mask] >= value) minNext--;
+		minDeque[(int) minNext++ & mask] = sequence;
+		while (maxNext > maxFirst && values[(int) maxDeque[(int) (maxNext - 1) & mask] & mask] <= value) maxNext--;
+		maxDeque[(int) maxNext++ & mask] = sequence;
+
+		double t = (time - origin) / MILLIS_PER_HOUR;
+		sumT += t;
+		sumV += value;
+		sumTT += t * t;
+		sumTV += t * value;
+		return true;
+	}
+
+	/** Drops the samples no newer than <code>now</code> minus the span */
+	public void expire(long now) {
+		long cutoff = now - span;
+		boolean removed = false;
+		while (first < next && times[(int) first & mask] <= cutoff) {
+			int slot = (int) first & mask;
+			double t = (times[slot] - origin) / MILLIS_PER_HOUR;
+			double value = values[slot];
+			sumT -= t;
+			sumV -= value;
+			sumTT -= t * t;
+			sumTV -= t * value;
+			if (minFirst < minNext && minDeque[(int) minFirst & mask] == first) minFirst++;
+			if (maxFirst < maxNext && maxDeque[(int) maxFirst & mask] == first) maxFirst++;
+			first++;
+			removedSinceRebuild++;
+			removed = true;
+		}
+		if (removed && removedSinceRebuild >= Math.max(16, size())) rebuildSums();
+	}
+
+	/** Recomputes the sums from the samples held, measuring time from the oldest */
+	private void rebuildSums() {
+		sumT = sumV = sumTT = sumTV = 0;
+		removedSinceRebuild = 0;
+		if (first == next) return;
+		origin = times[(int) first & mask];
+		for (long sequence = first; sequence < next; sequence++) {
+			int slot = (int) sequence & mask;
+			double t = (times[slot] - origin) / MILLIS_PER_HOUR;
+			sumT += t;
+			sumV += values[slot];
+			sumTT += t * t;
+			sumTV += t * values[slot];
+		}
+	}
+
+	private void grow() {
+		int capacity = times.length * 2;
+		long[] newTimes = new long[capacity];
+		double[] newValues = new double[capacity];
+		long[] newMin = new long[capacity];
+		long[] newMax = new long[capacity];
+		int newMask = capacity - 1;
+		for (long sequence = first; sequence < next; sequence++) {
+			newTimes[(int) sequence & newMask] = times[(int) sequence & mask];
+			newValues[(int) sequence & newMask] = values[(int) sequence & mask];
+		}
+		for (long k = minFirst; k < minNext; k++) newMin[(int) k & newMask] = minDeque[(int) k & mask];
+		for (long k = maxFirst; k < maxNext; k++) newMax[(int) k & newMask] = maxDeque[(int) k & mask];
+		times = newTimes;
+		values = newValues;
+		minDeque = newMin;
+		maxDeque = newMax;
+		mask = newMask;
+	}
+
+	/** Number of samples in the window */
+	public int size() { return (int) (next - first); }
+
+	/** Smallest value in the window, or NaN if it is empty */
+	public double getMin() {
+		return minFirst < minNext ? values[(int) minDeque[(int) minFirst & mask] & mask] : Double.NaN;
+	}
+
+	/** Largest value in the window, or NaN if it is empty */
+	public double getMax() {
+		return maxFirst < maxNext ? values[(int) maxDeque[(int) maxFirst & mask] & mask] : Double.NaN;
+	}
+
+	/** Mean of the samples in the window, or NaN if it is empty */
+	public double getMean() {
+		int n = size();
+		return n > 0 ? sumV / n : Double.NaN;
+	}
+
+	/**
+	 * Least-squares slope of the samples in the window per hour, or NaN with
+	 * fewer than two samples.
+	 */
+	public double getSlopePerHour() {
+		int n = size();
+		if (n < 2) return Double.NaN;
+		double denominator = n * sumTT - sumT * sumT;
+		if (denominator <= 0) return Double.NaN;
+		return (n * sumTV - sumT * sumV) / denominator;
+	}
+
+	/** Time of the oldest sample in the window, or 0 if it is empty */
+	public long getOldestTime() { return first < next ? times[(int) first & mask] : 0; }
+
+	/** Time of the newest sample in the window, or 0 if it is empty */
+	public long getNewestTime() { return first < next ? times[(int) (next - 1) & mask] : 0; }
+
+	public double getOldestValue() { return first < next ? values[(int) first & mask] : Double.NaN; }
+
+	public double getNewestValue() { return first < next ? values[(int) (next - 1) & mask] : Double.NaN; }
+}
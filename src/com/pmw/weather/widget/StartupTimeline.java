@@ -0,0 +1,85 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Milestones of the widget's startup, timed from when the JVM process was
+ * launched where the platform reports it, otherwise from when this class was
+ * loaded at the top of main. Printed as one line once the first icon from the
+ * network is up, with the heap in use at that moment.
+ */
+final class StartupTimeline {
+
+	private static final long startNanos = System.nanoTime();
+	private static final long startMillis = System.currentTimeMillis();
+	private static final int MAX_EVENTS = 16;
+
+	private static final String[] events = new String[MAX_EVENTS];
+	private static final long[] times = new long[MAX_EVENTS];
+	private static int count;
+	private static boolean printed;
+
+	private StartupTimeline() {}
+
+	/** Makes sure the clock has started; called first thing in main */
+	static void begin() {
+	}
+
+	/** Records that <code>event</code> has just happened */
+	static synchronized void mark(String event) {
+		if (count < MAX_EVENTS) {
+			events[count] = event;
+			times[count] = System.nanoTime();
+			count++;
+		}
+	}
+
+	/** Marks <code>event</code> and prints the timeline, the first time it is called */
+	static void finish(String event) {
+		String line;
+		synchronized (StartupTimeline.class) {
+			if (printed) return;
+			printed = true;
+			mark(event);
+			Runtime rt = Runtime.getRuntime();
+			long heap = rt.totalMemory() - rt.freeMemory();
+			StringBuilder sb = new StringBuilder("Startup:");
+			long launchMillis = launchMillis();
+			if (launchMillis > 0) sb.append(" jvm ").append(launchMillis).append(" ms,");
+			for (int i = 0; i < count; i++) {
+				sb.append(' ').append(events[i]).append(' ').append(launchMillis + (times[i] - startNanos) / 1_000_000).append(" ms,");
+			}
+			NumberFormatter.append(sb.append(" heap "), heap / 1e6, 1).append(" MB used");
+			line = sb.toString();
+		}
+		System.out.println(line);
+	}
+
+	/** Milliseconds from the process being launched to this class loading, or 0 if unknown */
+	private static long launchMillis() {
+		try {
+			Optional<Instant> launched = ProcessHandle.current().info().startInstant();
+			return launched.isPresent() ? Math.max(0, startMillis - launched.get().toEpochMilli()) : 0;
+		}
+		catch (UnsupportedOperationException | SecurityException ex) {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BaseMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Renders the tray icon for a temperature, with a 2x variant for HiDPI trays,
+ * and keeps the most recently used icons so a reading that comes back is not
+ * drawn again. Not thread-safe; the frame only uses it on the event dispatch
+ * thread.
+ */
+public class TemperatureIcons {
+
+	private static final int ICON_SIZE = 32;
+	private static final int[] ICON_SCALES = { 1, 2 };
+	private static final int MAX_CACHED_ICONS = 64;
+	private static final Font LARGE_FONT = new Font("Helvetica Neue", Font.PLAIN, 22);
+	private static final Font SMALL_FONT = new Font("Helvetica Neue", Font.PLAIN, 16);
+
+	/** Keyed by temperature, with null for the unknown icon */
+	private final Map<Long,Image> cache;
+
+	public TemperatureIcons() {
+		this(MAX_CACHED_ICONS);
+	}
+
+	/** A cache size of 0 renders every icon afresh */
+	public TemperatureIcons(final int maxCached) {
+		cache = new LinkedHashMap<Long,Image>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long,Image> eldest) {
+				return size() > maxCached;
+			}
+		};
+	}
+
+	/** The icon for a temperature, or "?" for null */
+	public Image get(Long temperature) {
+		Image icon = cache.get(temperature);
+		if (icon == null) {
+			Font font = temperature != null && temperature >= 100 ? SMALL_FONT : LARGE_FONT;
+			String text = (temperature != null ? temperature.toString() : "?") + ToolTipFormatter.DEGREES;
+			Image[] variants = new Image[ICON_SCALES.length];
+			for (int i = 0; i < ICON_SCALES.length; i++) {
+				int scale = ICON_SCALES[i];
+				BufferedImage image = new BufferedImage(ICON_SIZE * scale, ICON_SIZE * scale, BufferedImage.TYPE_INT_ARGB);
+				Graphics2D g2d = image.createGraphics();
+				g2d.scale(scale, scale);
+				g2d.setColor(Color.LIGHT_GRAY);
+				g2d.setFont(font);
+				g2d.drawString(text, 0, 24);
+				g2d.dispose();
+				variants[i] = image;
+			}
+			icon = new BaseMultiResolutionImage(variants);
+			cache.put(temperature, icon);
+		}
+		return icon;
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pmw.weather.widget;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Builds the tray tooltip text for one location. The text is assembled in a
+ * reused StringBuilder with {@link NumberFormatter}, so the only object made
+ * per call is the String returned. An instance must not be shared between
+ * threads.
+ */
+public class ToolTipFormatter {
+
+	public static final String DEGREES = "\u00b0";
+
+	private static final DateTimeFormatter SAVED_TIME = DateTimeFormatter.ofPattern("MMM d h:mm a");
+
+	private final StringBuilder sb = new StringBuilder(256);
+
+	/**
+	 * Formats the conditions at one location. <code>savedTime</code> is when
+	 * the observation was saved if it is being shown from the startup
+	 * snapshot, otherwise 0.
+	 */
+	public String format(Location location, Observation obs, long savedTime) {
+		return format(location, obs, savedTime, null);
+	}
+
+	/** Formats the conditions at one location along with its recent trends, if any */
+	public String format(Location location, Observation obs, long savedTime, TrendTracker.Trends trends) {
+		sb.setLength(0);
+		return appendTo(sb, location, obs, savedTime, trends).toString();
+	}
+
+	/** Appends the tooltip text for one location to <code>sb</code> */
+	public static StringBuilder appendTo(StringBuilder sb, Location location, Observation obs, long savedTime) {
+		return appendTo(sb, location, obs, savedTime, null);
+	}
+
+	/**
+	 * Appends the tooltip text for one location to <code>sb</code>, with its
+	 * trends when <code>trends</code> is not null.
+	 */
+	public static StringBuilder appendTo(StringBuilder sb, Location location, Observation obs, long savedTime,
+			TrendTracker.Trends trends) {
+		if (location.getName() != null) sb.append(location.getName()).append(':');
+		else sb.append("Weather Conditions:");
+		if (savedTime != 0) {
+			sb.append("\n (saved ");
+			SAVED_TIME.formatTo(Instant.ofEpochMilli(savedTime).atZone(ZoneId.systemDefault()), sb);
+			sb.append(", updating...) ");
+		}
+		if (!Double.isNaN(obs.getTemperature())) {
+			NumberFormatter.append(sb.append("\n Temperature: "), obs.getTemperature(), 1).append(DEGREES).append(' ');
+			if (obs.isEstimated()) sb.append("(estimated) ");
+			if (trends != null) appendTemperatureTrends(sb, trends);
+		}
+		if (obs.getWind() != null) {
+			sb.append("\n Wind Speed: ").append(obs.getWind()).append(' ');
+		}
+		else if (!Double.isNaN(obs.getWindSpeed())) {
+			NumberFormatter.append(sb.append("\n Wind Speed: "), obs.getWindSpeed(), 1).append(" MPH ");
+		}
+		if (!Double.isNaN(obs.getWindDirection())) {
+			NumberFormatter.append(sb.append("\n Wind Direction: "), obs.getWindDirection(), 0).append(DEGREES).append(' ');
+		}
+		if (!Double.isNaN(obs.getDewPoint())) {
+			NumberFormatter.append(sb.append("\n Dew Point: "), obs.getDewPoint(), 1).append(DEGREES).append(' ');
+		}
+		if (!Double.isNaN(obs.getFeelsLike())) {
+			NumberFormatter.append(sb.append("\n Feels Like: "), obs.getFeelsLike(), 1).append(DEGREES).append(' ');
+		}
+		if (!Double.isNaN(obs.getHumidity())) {
+			NumberFormatter.append(sb.append("\n Humidity: "), obs.getHumidity(), 0).append("% ");
+		}
+		if (!Double.isNaN(obs.getPressure())) {
+			NumberFormatter.append(sb.append("\n Pressure: "), obs.getPressure(), 2).append(" inches ");
+			double tendency = trends != null ? trends.getPressureTendency() : Double.NaN;
+			if (!Double.isNaN(tendency)) {
+				appendChange(sb.append("\n Pressure Tendency: "), tendency, 2, 0.005, " inches in 3 hours").append(' ');
+			}
+		}
+		if (!Double.isNaN(obs.getRain())) {
+			NumberFormatter.append(sb.append("\n Rainfall: "), obs.getRain(), 2).append(" inches ");
+		}
+		if (obs.getWeather() != null) {
+			sb.append("\n Weather: ").append(obs.getWeather()).append(' ');
+		}
+		if (obs.getForecast() != null) {
+			sb.append("\n\n").append(obs.getForecast()).append(' ');
+		}
+		return sb;
+	}
+
+	private static void appendTemperatureTrends(StringBuilder sb, TrendTracker.Trends trends) {
+		double rate = trends.getTemperatureRate();
+		if (!Double.isNaN(rate)) {
+			appendChange(sb.append("\n Trend: "), rate, 1, 0.05, DEGREES + " per hour").append(' ');
+		}
+		if (!Double.isNaN(trends.getHourMin())) {
+			appendRange(sb.append("\n Last Hour: "), trends.getHourMin(), trends.getHourMax(), trends.getHourMean());
+		}
+		if (trends.hasDay()) {
+			appendRange(sb.append("\n Last 24 Hours: "), trends.getDayMin(), trends.getDayMax(), trends.getDayMean());
+		}
+	}
+
+	/**
+	 * Appends e.g. "rising 1.2 units" or "falling 1.2 units", or "steady" when
+	 * the change is smaller than <code>steady</code>.
+	 */
+	private static StringBuilder appendChange(StringBuilder sb, double change, int decimals, double steady, String units) {
+		if (Math.abs(change) < steady) return sb.append("steady");
+		sb.append(change > 0 ? "rising " : "falling ");
+		return NumberFormatter.append(sb, Math.abs(change), decimals).append(units);
+	}
+
+	private static void appendRange(StringBuilder sb, double min, double max, double mean) {
+		NumberFormatter.append(sb, min, 1).append(DEGREES).append(" to ");
+		NumberFormatter.append(sb, max, 1).append(DEGREES).append(", mean ");
+		NumberFormatter.append(sb, mean, 1).append(DEGREES).append(' ');
+	}
+}
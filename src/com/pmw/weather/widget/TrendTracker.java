@@ -0,0 +1,130 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the recent trends of each location up to date as observations
+ * arrive: the minimum, maximum and mean temperature over the last hour and
+ * day, how fast the temperature is changing, and the three-hour pressure
+ * tendency. Each is a {@link SlidingWindow}, so an observation updates them in
+ * constant time and reading them needs no scan of the history. Estimated
+ * observations are ignored.
+ */
+public class TrendTracker implements ObservationListener {
+
+	private static final long HOUR = 3_600_000L;
+
+	private final Map<Location,Trends> trends = new ConcurrentHashMap<Location,Trends>();
+
+	/**
+	 * Drops the trends of locations no longer configured and starts those of
+	 * new ones from the last day of their history, if it is open.
+	 */
+	public void open(List<Location> locations, ObservationHistory history) {
+		trends.keySet().retainAll(locations);
+		for (Location location : locations) {
+			if (trends.containsKey(location)) continue;
+			Trends t = new Trends();
+			HistoryFile file = history != null ? history.get(location) : null;
+			if (file != null) {
+				long now = System.currentTimeMillis();
+				file.scan(now - Trends.DAY, Long.MAX_VALUE,
+						(time, temperature, dewPoint, humidity, pressure, windSpeed, windDirection) -> t.add(time, temperature, pressure));
+			}
+			trends.putIfAbsent(location, t);
+		}
+	}
+
+	/** The trends of a location, or null before its first observation */
+	public Trends get(Location location) {
+		return trends.get(location);
+	}
+
+	@Override
+	public void observationUpdated(Location location, Observation observation) {
+		if (observation.isEstimated()) return;
+		long time = observation.getObservationTime() > 0 ? observation.getObservationTime() : System.currentTimeMillis();
+		trends.computeIfAbsent(location, l -> new Trends()).add(time, observation.getTemperature(), observation.getPressure());
+	}
+
+	@Override
+	public void pollFailed(Location location, Throwable cause) {
+	}
+
+	/**
+	 * The trends of one location. Readings are NaN until there are enough
+	 * observations to make them meaningful.
+	 */
+	public static class Trends {
+
+		static final long DAY = 24 * HOUR;
+		private static final long TENDENCY_SPAN = 3 * HOUR;
+		/** Least time between the observations a rate is taken from */
+		private static final long MIN_RATE_SPAN = HOUR / 3;
+		private static final long MIN_TENDENCY_SPAN = 2 * HOUR;
+
+		private final SlidingWindow hour = new SlidingWindow(HOUR);
+		private final SlidingWindow day = new SlidingWindow(DAY, 512);
+		private final SlidingWindow pressure = new SlidingWindow(TENDENCY_SPAN);
+
+		synchronized void add(long time, double temperature, double pressure) {
+			hour.add(time, temperature);
+			day.add(time, temperature);
+			this.pressure.add(time, pressure);
+		}
+
+		public synchronized double getHourMin() { return hour.getMin(); }
+
+		public synchronized double getHourMax() { return hour.getMax(); }
+
+		public synchronized double getHourMean() { return hour.getMean(); }
+
+		/** Whether the day's readings cover more than the last hour, so differ from the hour's */
+		public synchronized boolean hasDay() {
+			return day.size() > hour.size();
+		}
+
+		public synchronized double getDayMin() { return day.getMin(); }
+
+		public synchronized double getDayMax() { return day.getMax(); }
+
+		public synchronized double getDayMean() { return day.getMean(); }
+
+		/** Temperature change per hour over the last hour, by least squares */
+		public synchronized double getTemperatureRate() {
+			return span(hour) >= MIN_RATE_SPAN ? hour.getSlopePerHour() : Double.NaN;
+		}
+
+		/**
+		 * Pressure change over the last three hours in inches, scaled up from a
+		 * little less when the oldest reading is not quite three hours old.
+		 */
+		public synchronized double getPressureTendency() {
+			long span = span(pressure);
+			if (span < MIN_TENDENCY_SPAN) return Double.NaN;
+			return (pressure.getNewestValue() - pressure.getOldestValue()) * TENDENCY_SPAN / span;
+		}
+
+		private static long span(SlidingWindow window) {
+			return window.size() >= 2 ? window.getNewestTime() - window.getOldestTime() : 0;
+		}
+	}
+}
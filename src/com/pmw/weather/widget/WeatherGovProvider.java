@@ -0,0 +1,108 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.IOException;
+
+/**
+ * weather.gov current_obs XML, as served for each station under
+ * /xml/current_obs/.
+ */
+public class WeatherGovProvider implements WeatherProvider {
+
+	@Override
+	public String getName() { return "weather.gov XML"; }
+
+	@Override
+	public boolean acceptsContentType(String mediaType) {
+		return mediaType.equals("application/xml") || mediaType.equals("text/xml");
+	}
+
+	@Override
+	public boolean acceptsContent(CharSequence head) {
+		return head.length() > 0 && head.charAt(0) == '<';
+	}
+
+	@Override
+	public ObservationParser newParser() {
+		return new Parser();
+	}
+
+	private static final class Parser extends ObservationParser {
+
+		@Override
+		protected void parseBody() throws IOException {
+			int c = read();
+			while (c != -1) {
+				if (c != '<') {
+					c = read();
+					continue;
+				}
+				c = read();
+				if (c == '/' || c == '?' || c == '!') {
+					c = skipTo('>');
+					continue;
+				}
+				clearToken();
+				while (c != -1 && c != '>' && c != '/' && !Character.isWhitespace(c)) {
+					appendToken(c);
+					c = read();
+				}
+				if (c != '>') {
+					boolean empty = c == '/';
+					c = c == -1 ? -1 : skipTo('>');
+					if (empty || c == -1) {
+						c = read();
+						continue;
+					}
+				}
+				int field = field();
+				if (isNumeric(field)) {
+					setNumber(field, readNumber());
+				}
+				else if (field != F_NONE) {
+					readText();
+					if (text.length() > 0) setText(field, text.toString());
+				}
+				c = read();
+			}
+		}
+
+		private int field() {
+			if (tokenIs("temp_f")) return F_TEMPERATURE;
+			if (tokenIs("dewpoint_f")) return F_DEW_POINT;
+			if (tokenIs("relative_humidity")) return F_HUMIDITY;
+			if (tokenIs("pressure_in")) return F_PRESSURE_INCHES;
+			if (tokenIs("wind_mph")) return F_WIND_SPEED;
+			if (tokenIs("wind_degrees")) return F_WIND_DIRECTION;
+			if (tokenIs("wind_string")) return F_WIND;
+			if (tokenIs("weather")) return F_WEATHER;
+			if (tokenIs("observation_time_rfc822")) return F_TIME_RFC822;
+			return F_NONE;
+		}
+
+		private void readText() throws IOException {
+			text.setLength(0);
+			int c = peek();
+			while (c != -1 && c != '<') {
+				text.append((char) read());
+				c = peek();
+			}
+			trimText();
+		}
+	}
+}
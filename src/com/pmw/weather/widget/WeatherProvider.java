@@ -0,0 +1,79 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * A conditions format the widget can read. Providers are found with
+ * {@link java.util.ServiceLoader}, so another format can be added by putting a
+ * jar on the class path that lists its implementation in
+ * META-INF/services/com.pmw.weather.widget.WeatherProvider.
+ *
+ * The format of each location's URL is decided once, from the first response:
+ * by its Content-Type when a provider claims it, otherwise by the first
+ * characters of the body. The location then keeps the parser the provider
+ * created for as long as the server sends the same Content-Type.
+ *
+ * A provider whose service can return several locations in one response may
+ * also implement the batch methods. Locations due at the same time whose URLs
+ * have the same batch key are then fetched together, once their parser has
+ * learned the id that names them in a batch request.
+ */
+public interface WeatherProvider {
+
+	/** Short name of the format, for messages */
+	String getName();
+
+	/**
+	 * Whether responses of this media type, in lower case without parameters
+	 * such as charset, are in this provider's format.
+	 */
+	boolean acceptsContentType(String mediaType);
+
+	/**
+	 * Whether a response beginning with <code>head</code> is in this provider's
+	 * format. The head has any byte order mark and leading whitespace removed
+	 * and holds at most the first few hundred characters.
+	 */
+	boolean acceptsContent(CharSequence head);
+
+	/** A new parser for this format, which will be used for a single location or batch request */
+	ObservationParser newParser();
+
+	/**
+	 * Key shared by the URLs that can be fetched in one batch request, such as
+	 * the endpoint and API key, or null if <code>uri</code> can't be batched.
+	 */
+	default String getBatchKey(URI uri) {
+		return null;
+	}
+
+	/** The most locations one batch request may name */
+	default int getMaxBatchSize() {
+		return 1;
+	}
+
+	/**
+	 * URL of one request for the locations named by <code>ids</code>, whose
+	 * URLs all have the batch key of <code>uri</code>.
+	 */
+	default URI getBatchURI(URI uri, List<String> ids) {
+		throw new UnsupportedOperationException(getName() + " does not batch requests");
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2026 Paul Walters
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pmw.weather.widget;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The {@link WeatherProvider}s on the class path, in the order they are
+ * listed, and the detection of which one reads a response. The built in
+ * providers are used if none are registered, as when the resources folder is
+ * not on the class path.
+ */
+public class WeatherProviders {
+
+	/** Bytes looked at to recognize a response whose Content-Type is not claimed */
+	static final int HEAD_SIZE = 256;
+
+	private final List<WeatherProvider> providers = new ArrayList<WeatherProvider>();
+
+	public WeatherProviders() {
+		try {
+			for (WeatherProvider provider : ServiceLoader.load(WeatherProvider.class, WeatherProviders.class.getClassLoader())) {
+				providers.add(provider);
+			}
+		}
+		catch (ServiceConfigurationError ex) {
+			System.err.println("Error loading weather providers: " + ex.getMessage());
+		}
+		if (providers.isEmpty()) {
+			providers.add(new OpenWeatherMapProvider());
+			providers.add(new WeatherGovProvider());
+			providers.add(new PipeFeedProvider());
+		}
+	}
+
+	public List<WeatherProvider> getProviders() { return providers; }
+
+	/** The first provider claiming a Content-Type header value, or null */
+	public WeatherProvider forContentType(String contentType) {
+		String mediaType = mediaType(contentType);
+		if (mediaType == null) return null;
+		for (WeatherProvider provider : providers) {
+			if (provider.acceptsContentType(mediaType)) return provider;
+		}
+		return null;
+	}
+
+	/** The first provider recognizing the start of a response, or null */
+	public WeatherProvider forContent(CharSequence content) {
+		int start = 0;
+		while (start < content.length() && isSkipped(content.charAt(start))) start++;
+		CharSequence head = content.subSequence(start, Math.min(content.length(), start + HEAD_SIZE));
+		for (WeatherProvider provider : providers) {
+			if (provider.acceptsContent(head)) return provider;
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the provider for a response by its Content-Type, or failing that
+	 * by peeking at the start of <code>in</code>, which must support mark and
+	 * is left where it was.
+	 */
+	public WeatherProvider detect(String contentType, InputStream in) throws IOException {
+		WeatherProvider provider = forContentType(contentType);
+		if (provider != null) return provider;
+
+		byte[] head = new byte[HEAD_SIZE];
+		int length = 0;
+		in.mark(HEAD_SIZE);
+		try {
+			int n;
+			while (length < head.length && (n = in.read(head, length, head.length - length)) > 0) {
+				length += n;
+			}
+		}
+		finally {
+			in.reset();
+		}
+		// Only ASCII markers are looked for, so each byte can stand for a character
+		int start = length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF ? 3 : 0;
+		return forContent(new String(head, start, length - start, StandardCharsets.ISO_8859_1));
+	}
+
+	/** The lower case type/subtype of a Content-Type header value, or null */
+	static String mediaType(String contentType) {
+		if (contentType == null) return null;
+		int end = contentType.indexOf(';');
+		String type = (end >= 0 ? contentType.substring(0, end) : contentType).trim();
+		return type.isEmpty() ? null : type.toLowerCase(Locale.ROOT);
+	}
+
+	private static boolean isSkipped(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\uFEFF';
+	}
+}
@@ -17,42 +17,127 @@
 package com.pmw.weather.widget;
 
 import java.awt.EventQueue;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.security.KeyStore;
-import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
-import javax.net.ssl.KeyManager;
-import javax.net.ssl.KeyManagerFactory;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.TrustManagerFactory;
-
+import com.pmw.AppPropertiesListener;
 import com.pmw.pmwApplication;
 
-public class WeatherWidget extends pmwApplication {
+public class WeatherWidget extends pmwApplication implements ObservationListener, AppPropertiesListener {
+
+	static final String appName = new String("Weather Widget");
+	static final String appVersion = new String("v2024.1");
+    static final String appCopyright = new String("Copyright 2015-2024");
+    static final String appAuthor = new String("Paul Walters");
+
+	/** Quit once the first icon is up, for a class data sharing training run */
+	private static boolean exitAfterStartup;
 
-	private static final String appName = new String("Weather Widget");
-	private static final String appVersion = new String("v2024.1");
-    private static final String appCopyright = new String("Copyright 2015-2024");
-    private static final String appAuthor = new String("Paul Walters");
+	private final WeatherWidgetFrame frame;
+	private final PollingEngine engine;
+	private final ObservationHistory history;
+	private final TrendTracker trends = new TrendTracker();
+	private final AlertEngine alerts;
+	private final Map<Location,String> toolTips = new LinkedHashMap<Location,String>();
+	private Location primaryLocation;
+	/** When each location's displayed conditions were saved, while they still come from the snapshot */
+	private final Map<Location,Long> staleSince = new HashMap<Location,Long>();
+	private boolean networkIconShown;
 
 	public WeatherWidget() {
 		super(appName, appVersion, appCopyright, appAuthor);
 		
-		final WeatherWidgetFrame frame = new WeatherWidgetFrame(this);
+		frame = new WeatherWidgetFrame(this);
+		StartupTimeline.mark("tray");
+
+		String propFile = loadSettings(this);
+		StartupTimeline.mark("settings");
+
+		List<Location> locations = Location.fromProperties(getAppProperties());
+		for (Location location : locations) {
+			toolTips.put(location, null);
+		}
+		primaryLocation = locations.isEmpty() ? null : locations.get(0);
+
+		// Show the last good conditions before anything touches the network
+		final ObservationSnapshot snapshot = new ObservationSnapshot(new File(getAppDataDir(), "snapshot.bin"), locations);
+		Map<Location,Observation> saved = snapshot.load();
+		if (!saved.isEmpty()) {
+			synchronized (this) {
+				for (Map.Entry<Location,Observation> entry : saved.entrySet()) {
+					staleSince.put(entry.getKey(), snapshot.getSavedTime(entry.getKey()));
+					showObservation(entry.getKey(), entry.getValue());
+				}
+			}
+			if (saved.containsKey(primaryLocation)) {
+				StartupTimeline.mark("snapshot icon");
+			}
+		}
 
-		String propFile = this.getAppDataDir() + "/weatherWidget.properties";
+		engine = new PollingEngine(locations, getAppProperties());
+		// Ahead of the tooltip, so it shows trends including the new observation
+		engine.addListener(trends);
+		engine.addListener(this);
+		alerts = new AlertEngine(new AlertEngine.Listener() {
+			@Override
+			public void alertRaised(Location location, AlertRule rule, String message) {
+				frame.showAlert(location.getName() != null ? location.getName() : "Weather Alert", message);
+			}
+		});
+		alerts.configure(locations, getAppProperties());
+		engine.addListener(alerts);
+		engine.setIdleDetector(new PointerIdleDetector());
+		engine.addListener(snapshot);
+
+		history = new ObservationHistory(new File(getAppDataDir(), "history"), engine.getLocations(), getAppProperties());
+		engine.addListener(history);
+		trends.open(engine.getLocations(), history);
 
+		addAppPropertiesListener(this);
 		try {
-			loadAppProperties(propFile);
-			Properties props = getAppProperties();
-			if (props.isEmpty()) {
+			watchAppProperties();
+		}
+		catch (IOException ex) {
+			System.err.println("Unable to watch " + propFile + " for changes: " + ex.getMessage());
+		}
+
+		final FetchCache cache = engine.getCache();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				System.out.println("Response cache: " + cache);
+				history.close();
+			}
+		});
+
+		frame.setQuitAction(new Runnable() {
+			@Override
+			public void run() {
+				engine.shutdown();
+			}
+		});
+
+		StartupTimeline.mark("polling");
+		if (frame.isRunning()) engine.run();
+	}
+
+	/**
+	 * Loads weatherWidget.properties from the application data folder, writing
+	 * the default settings on first run. Returns the path of the file.
+	 */
+	static String loadSettings(pmwApplication app) {
+		String propFile = app.getAppDataDir() + "/weatherWidget.properties";
+
+		try {
+			app.loadAppProperties(propFile);
+			if (app.getAppProperties().isEmpty()) {
+				Properties props = new Properties();
 				props.put("showWeatherURL", "https://www.weather.gov/lwx");
 
 				String apiKey = ""; // TODO must provide an valid openweathermap API key and desired location
@@ -62,152 +147,93 @@ public class WeatherWidget extends pmwApplication {
 						+ "&units=imperial&mode=json"
 						+ "&appid="+apiKey);
 
-				saveAppProperties(new File(propFile));
+				app.setAppProperties(props);
+				app.saveAppProperties(new File(propFile));
 			}
 
-			props.put("propertiesFile", propFile);
-
 		} catch (IOException ex) {
 			System.err.println("ERROR loading " + propFile + ": " + ex.getMessage());
 		}
+		return propFile;
+	}
 
-		// Event dispatch thread
-	 	EventQueue.invokeLater(new Runnable()
-    	{
-	 		@Override
-    		public void run()
-    		{
-	 			frame.start();
-    		}
-    	});
-
-		String myCert = getAppProperties().getProperty("trustStore");
-		if (myCert != null && !myCert.isBlank()) {
-			 try (InputStream is = WeatherWidget.class.getResourceAsStream(myCert)) {
-				 
-				 KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
-				 keyStore.load(null);
-
-				 KeyManagerFactory keyFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
-				 keyFactory.init(keyStore, null);
-
-				 KeyManager[] keyManagers = keyFactory.getKeyManagers();
-				 KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
-				 trustStore.load(is, null);
-				 TrustManagerFactory trustFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-				 trustFactory.init(trustStore);
-				 TrustManager[] trustManagers = trustFactory.getTrustManagers();
-				 SSLContext sslContext = SSLContext.getInstance("SSL");
-				 sslContext.init(keyManagers, trustManagers,  null);
-				 SSLContext.setDefault(sslContext);
-			 }
-			 catch (Exception ex) {
-				 ex.printStackTrace();
-				 System.err.println("Error opening " + myCert + ": " + ex.getMessage());
-				 System.exit(-1);
-			 }
-		}
-		
-		DecimalFormat df = new DecimalFormat("###.0");
-		DecimalFormat pf = new DecimalFormat("##.00");
-		DecimalFormat wf = new DecimalFormat("###");
-	 			
-		while (frame != null && frame.isRunning()) {
-			
-			try {
-				URL wx = new URL(getAppProperties().getProperty("wxConditionsURL"));
-				BufferedReader in = new BufferedReader(new InputStreamReader(wx.openStream()));
-				String line = null;
-				StringBuffer sb = new StringBuffer();
-				sb.append("Weather Conditions:");
-				while ((line = in.readLine()) != null) {
-					// System.out.println("DEBUG " + line);
-					if (line.startsWith("temperature|")) {
-						String temperature = getWeatherValue(line, "temperature|");
-						frame.setIconTemperature(Math.round(Double.parseDouble(temperature)));
-						sb.append("\n Temperature: " + temperature + WeatherWidgetFrame.DEGREES + " ");
-					}
-					if (line.contains("<temp_f>")) {
-						String temperature = getXMLValue(line, "<temp_f>");
-						frame.setIconTemperature(Math.round(Double.parseDouble(temperature)));
-						sb.append("\n Temperature: " + temperature + WeatherWidgetFrame.DEGREES + " ");
-					}
-					if (line.contains("\"temp\":")) {
-						double temperature = getJSONDouble(line, "temp");
-						frame.setIconTemperature(Math.round(temperature));
-						sb.append("\n Temperature: " + df.format(temperature) + WeatherWidgetFrame.DEGREES + " ");
-					}
-					if (line.startsWith("wind_gust|") && line.length() > 10) {
-						sb.append("\n Wind Speed: " + getWeatherValue(line, "wind_gust|") + " ");
-					}
-					if (line.contains("<wind_string>")) {
-						sb.append("\n Wind Speed: " + getXMLValue(line, "<wind_string>") + " ");
-					}
-					if (line.contains("\"speed\":")) {
-						sb.append("\n Wind Speed: " + df.format(getJSONDouble(line, "speed")) + " MPH ");
-					}
-					if (line.contains("\"deg\":")) {
-						sb.append("\n Wind Direction: " + wf.format(getJSONDouble(line, "deg")) + WeatherWidgetFrame.DEGREES + " ");
-					}
-					if (line.startsWith("dew_point|")) {
-						sb.append("\n Dew Point: " + getWeatherValue(line, "dew_point|") + WeatherWidgetFrame.DEGREES + " ");
-					}
-					if (line.contains("<dewpoint_f>")) {
-						sb.append("\n Dew Point: " + getXMLValue(line, "<dewpoint_f>") + WeatherWidgetFrame.DEGREES + " ");
-					}
-					if (line.contains("\"feels_like\":")) {
-						sb.append("\n Feels Like: " + df.format(getJSONDouble(line, "feels_like")) + WeatherWidgetFrame.DEGREES + " ");
-					}
-					if (line.startsWith("humidity|")) {
-						sb.append("\n Humidity: " + getWeatherValue(line, "humidity|") + " ");
-					}
-					if (line.contains("<relative_humidity>")) {
-						sb.append("\n Humidity: " + getXMLValue(line, "<relative_humidity>") + "% ");
-					}
-					if (line.contains("\"humidity\":")) {
-						sb.append("\n Humidity: " + getJSONDouble(line, "humidity") + "% ");
-					}
-					if (line.startsWith("pressure|")) {
-						sb.append("\n Pressure: " + getWeatherValue(line, "pressure|") + " ");
-					}
-					if (line.contains("<pressure_in>")) {
-						sb.append("\n Pressure: " + getXMLValue(line, "<pressure_in>") + " inches ");
-					}
-					if (line.contains("\"pressure\":")) {
-						sb.append("\n Pressure: " + pf.format((Double.valueOf(getJSONDouble(line, "pressure"))/33.863889532610884)) + " inches ");
-					}
-					if (line.startsWith("rain|")) {
-						sb.append("\n Rainfall: " + getWeatherValue(line, "rain|") + " inches ");
-					}
-					if (line.startsWith("current_wx|")) {
-						sb.append("\n Weather: " + getWeatherValue(line, "current_wx|") + " ");
-					}
-					if (line.contains("<weather>")) {
-						sb.append("\n Weather: " + getXMLValue(line, "<weather>") + " ");
-					}
-					if (line.startsWith("period_0_weather|")) {
-						if (sb.length() > 0) sb.append("\n");
-						sb.append("\n" + getWeatherValue(line, "period_0_weather|") + " ");
-					}
-					if (line.contains("\"main\":")) {
-						sb.append("\n Weather: " + getJSONValue(line, "main") + " ");
-					}
-				}
-				in.close();
-				frame.setToolTip(sb.toString());
-			} catch (Exception ex) {
-				ex.printStackTrace();
+	/** Applies edits to the properties file without a restart */
+	@Override
+	public void appPropertiesChanged(Properties props) {
+		List<Location> locations = Location.fromProperties(props);
+		synchronized (this) {
+			Map<Location,String> previous = new HashMap<Location,String>(toolTips);
+			toolTips.clear();
+			for (Location location : locations) {
+				toolTips.put(location, previous.get(location));
 			}
+			staleSince.keySet().retainAll(locations);
+			primaryLocation = locations.isEmpty() ? null : locations.get(0);
+			showToolTips();
+		}
+		history.open(locations, props);
+		trends.open(locations, history);
+		alerts.configure(locations, props);
+		engine.reconfigure(locations, props);
+	}
 
-			try {
-				Thread.sleep(60000);
-			} catch (InterruptedException ex) {
-				System.exit(0);
+	@Override
+	public synchronized void observationUpdated(Location location, Observation observation) {
+		final long start = System.nanoTime();
+		final LocationMetrics metrics = engine.getMetrics().get(location);
+		staleSince.remove(location);
+		showObservation(location, observation);
+		final boolean firstIcon = !networkIconShown && location.equals(primaryLocation) && !Double.isNaN(observation.getTemperature());
+		if (firstIcon) networkIconShown = true;
+		// Runs after the tray updates queued above
+		EventQueue.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				metrics.recordTrayUpdate(System.nanoTime() - start);
+				if (firstIcon) startupFinished("network icon");
 			}
+		});
+	}
+
+	private static void startupFinished(String event) {
+		StartupTimeline.finish(event);
+		if (exitAfterStartup) System.exit(0);
+	}
+
+	private void showObservation(Location location, Observation observation) {
+		// Ignore a poll that finished just after its location was removed
+		if (!toolTips.containsKey(location)) return;
+		if (location.equals(primaryLocation) && !Double.isNaN(observation.getTemperature())) {
+			frame.setIconTemperature(Math.round(observation.getTemperature()));
+		}
+		Long saved = staleSince.get(location);
+		toolTips.put(location, toolTipFormatter.format(location, observation, saved != null ? saved : 0, trends.get(location)));
+		showToolTips();
+	}
+
+	private void showToolTips() {
+		StringBuilder sb = toolTipText;
+		sb.setLength(0);
+		for (String toolTip : toolTips.values()) {
+			if (toolTip == null) continue;
+			if (sb.length() > 0) sb.append("\n\n");
+			sb.append(toolTip);
 		}
+		frame.setToolTip(sb.toString());
 	}
 
-	private String getWeatherValue(String line, String key) {
+	@Override
+	public void pollFailed(Location location, Throwable cause) {
+		System.err.println("Error polling " + location.getDisplayName() + ": "
+				+ (cause.getMessage() != null ? cause.getMessage() : cause.toString()));
+		cause.printStackTrace();
+		if (!networkIconShown && location.equals(primaryLocation)) startupFinished("first poll failed");
+	}
+
+	private final ToolTipFormatter toolTipFormatter = new ToolTipFormatter();
+	private final StringBuilder toolTipText = new StringBuilder(1024);
+
+	static String getWeatherValue(String line, String key) {
 		String value = line.substring(key.length());
 		int htmlIndex = value.indexOf("&");
 		if (htmlIndex >0 && value.endsWith(";")) {
@@ -217,7 +243,7 @@ public class WeatherWidget extends pmwApplication {
 		return value;
 	}
 	
-	public String getXMLValue(String line, String key) {
+	public static String getXMLValue(String line, String key) {
 		int keyIndex = line.indexOf(key);
 		if (keyIndex < 0) return line;
 		
@@ -227,11 +253,11 @@ public class WeatherWidget extends pmwApplication {
 		return line.substring(keyIndex+key.length(),endIndex);
 	}
 	
-	public double getJSONDouble(String line, String key) {
+	public static double getJSONDouble(String line, String key) {
 		return Double.parseDouble(getJSONValue(line, key));
 	}
 
-	public String getJSONValue(String line, String key) {
+	public static String getJSONValue(String line, String key) {
 		if (!key.startsWith("\"")) {
 			key = "\"" + key + "\"";
 		}
@@ -264,9 +290,19 @@ public class WeatherWidget extends pmwApplication {
 	}
 
 	public static void main(String[] args) {
+		StartupTimeline.begin();
+		if (Arrays.asList(args).contains("--headless")) {
+			HeadlessWidget.main(args);
+			return;
+		}
+		if (Arrays.asList(args).contains("--export")) {
+			HistoryExport.main(args);
+			return;
+		}
 		System.setProperty("apple.laf.useScreenMenuBar", "true");
 		System.setProperty("apple.awt.brushMetalLook", "true");
 		System.setProperty("apple.awt.UIElement", "true");	// Removes dock icon since we only need it in the tray
+		exitAfterStartup = Arrays.asList(args).contains("--exit-after-startup");
 		new WeatherWidget();
 	}
 }
@@ -17,55 +17,50 @@
 package com.pmw.weather.widget;
 
 import java.awt.AWTException;
-import java.awt.Color;
-import java.awt.Component;
 import java.awt.Desktop;
-import java.awt.Font;
-import java.awt.Graphics2D;
+import java.awt.EventQueue;
 import java.awt.MenuItem;
 import java.awt.PopupMenu;
 import java.awt.SystemTray;
-import java.awt.Toolkit;
 import java.awt.TrayIcon;
 import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.awt.image.BufferedImage;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
-import javax.swing.AbstractAction;
-import javax.swing.Action;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
-import javax.swing.JPanel;
 import javax.swing.UIManager;
 
 import com.pmw.pmwApplication;
 
-@SuppressWarnings("serial")
-public class WeatherWidgetFrame extends JFrame {
+/**
+ * The widget's presence in the system tray. Only the tray icon and its AWT
+ * menu are made at startup; Swing, with the Nimbus look and feel, the
+ * application window and the About dialog, is loaded the first time
+ * something needs it, which keeps it off the path to the first icon.
+ */
+public class WeatherWidgetFrame {
 
 	private pmwApplication app = null;
-	private ImageIcon icon96 = null;
+
+	/** Made by {@link #getWindow()} on first use */
+	private JFrame window;
+	private Map<String,JDialog> dialogSet;
 
 	public WeatherWidgetFrame(final pmwApplication app) {
 
 		this.app = app;
 
-		icon96 = new ImageIcon(Toolkit.getDefaultToolkit().getImage(WeatherWidgetFrame.class.getResource("/Images/Widget96.png")));
-		
-		try {
-			UIManager.setLookAndFeel("javax.swing.plaf.nimbus.NimbusLookAndFeel");
-		}
-		catch (Exception ignore) {}
-		
 		createSystemTray();
 	}
 	
@@ -75,89 +70,140 @@ public class WeatherWidgetFrame extends JFrame {
 		return isRunning;
 	}
 
+	private Runnable quitAction;
+
+	/** Called on the event dispatch thread when the user quits from the tray menu */
+	public void setQuitAction(Runnable quitAction) {
+		this.quitAction = quitAction;
+	}
+
 	private SystemTray systemTray;
 	private TrayIcon trayIcon;
-	
-	public void start() {
-		Thread t = new Thread() {
+
+	/**
+	 * The hidden application window, owner of the widget's dialogs, made on
+	 * first use on the event dispatch thread.
+	 */
+	private JFrame getWindow() {
+		if (window != null) return window;
+		setLookAndFeel();
+		window = new JFrame(app.getAppName() + " " + app.getAppVersion());
+		window.setIconImage(new ImageIcon(WeatherWidgetFrame.class.getResource("/Images/Widget128.png")).getImage());
+		window.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+		window.addWindowListener(new WindowAdapter() {
 			@Override
-			public void run() {
-				setIconImage(Toolkit.getDefaultToolkit().getImage(WeatherWidgetFrame.class.getResource("/Images/Widget128.png")));
-				setTitle(app.getAppName() + " " + app.getAppVersion());
-				setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
-				
-				addWindowListener(new WindowAdapter() {
-					@Override
-					public void windowIconified(WindowEvent event) {
-						setVisible(false);	// hide to the system tray
-					}
-				});
-
-				addWindowListener(new WindowAdapter() {
-					@Override
-					public void windowClosing(WindowEvent event) {
-						setVisible(false);
-					}
-				});
-
-				setVisible(false);
+			public void windowIconified(WindowEvent event) {
+				window.setVisible(false);	// hide to the system tray
 			}
-		};
-		t.start();
+
+			@Override
+			public void windowClosing(WindowEvent event) {
+				window.setVisible(false);
+			}
+		});
+		return window;
 	}
-	
-	public static String DEGREES = "\u00b0";
-
-	public void setIconTemperature(Long temperature) {
-		
-		BufferedImage image = new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB);
-		Graphics2D g2d = image.createGraphics();
-		g2d.setColor(Color.LIGHT_GRAY);
-		int fontSize = temperature != null && temperature >= 100 ? 16 : 22;
-		g2d.setFont(new Font("Helvetica Neue", Font.PLAIN, fontSize));
-		if (temperature != null) {
-			g2d.drawString(temperature+DEGREES,0,24);
-		}
-		else {
-			g2d.drawString("?"+DEGREES, 0, 24);
+
+	private static void setLookAndFeel() {
+		try {
+			UIManager.setLookAndFeel("javax.swing.plaf.nimbus.NimbusLookAndFeel");
 		}
-		g2d.dispose();
+		catch (Exception ignore) {}
+	}
+	
+	public static String DEGREES = ToolTipFormatter.DEGREES;
+
+	private final TemperatureIcons icons = new TemperatureIcons();
+	private Long iconTemperature;
 
-		if (trayIcon == null) {
-			trayIcon = new TrayIcon(image);
-			trayIcon.setImageAutoSize(true);
+	/**
+	 * Shows a temperature, or "?" for null, in the tray. The image is only
+	 * replaced when the displayed value changes. May be called from any thread;
+	 * the update is made on the event dispatch thread.
+	 */
+	public void setIconTemperature(final Long temperature) {
+		if (!EventQueue.isDispatchThread()) {
+			EventQueue.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					setIconTemperature(temperature);
+				}
+			});
+			return;
 		}
-		trayIcon.setImage(image);
+
+		if (Objects.equals(temperature, iconTemperature)) return;
+		iconTemperature = temperature;
+		trayIcon.setImage(icons.get(temperature));
 		if (temperature == null) trayIcon.setToolTip(null);
 	}
-	
-	public void setToolTip(String toolTip) {
+
+	public void setToolTip(final String toolTip) {
+		if (!EventQueue.isDispatchThread()) {
+			EventQueue.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					trayIcon.setToolTip(toolTip);
+				}
+			});
+			return;
+		}
 		trayIcon.setToolTip(toolTip);
 	}
 
+	/** Pops up a warning from the tray icon. May be called from any thread. */
+	public void showAlert(final String caption, final String text) {
+		if (!EventQueue.isDispatchThread()) {
+			EventQueue.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					showAlert(caption, text);
+				}
+			});
+			return;
+		}
+		if (trayIcon != null) trayIcon.displayMessage(caption, text, TrayIcon.MessageType.WARNING);
+	}
+
 	private void createSystemTray() {
 		systemTray = SystemTray.getSystemTray();
 
-		setIconTemperature(null);
+		trayIcon = new TrayIcon(icons.get(null));
+		trayIcon.setImageAutoSize(true);
 
-        // Popup menu
+        // Popup menu, plain AWT so that no Swing is loaded until it is used
 
         PopupMenu systemTrayMenu = new PopupMenu();
 
 		MenuItem mi = new MenuItem("About");
-		mi.addActionListener(new AppAction("About"));
+		mi.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				showAbout();
+			}
+		});
 		systemTrayMenu.add(mi);
 
         // systemTrayMenu.addSeparator();
 
         mi = new MenuItem("Show Weather");
-        mi.addActionListener(new AppAction("Show Weather"));
+		mi.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				showWeather();
+			}
+		});
         systemTrayMenu.add(mi);
 
         systemTrayMenu.addSeparator();
 
         mi = new MenuItem("Quit");
-        mi.addActionListener(new AppAction("Quit " + app.getAppName()));
+		mi.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent event) {
+				quit();
+			}
+		});
         systemTrayMenu.add(mi);
 
         trayIcon.setPopupMenu(systemTrayMenu);
@@ -187,47 +233,24 @@ public class WeatherWidgetFrame extends JFrame {
 		}
 	}
 
-	class AppAction extends AbstractAction
-	{
-		private static final long serialVersionUID = 1L;
-		
-		private JPanel component = null;
-		
-		public AppAction(String name) {
-			super(name);
-		}
-		
-		public AppAction(String name, JPanel component) {
-			this(name);
-			this.component = component;
-		}
-		
-		@Override
-		public void actionPerformed(ActionEvent event) {
-			
-			if (getValue(Action.NAME).equals("Show Weather")) {
-				showWeather();
-			}
-
-			if (getValue(Action.NAME).equals("Quit " + app.getAppName())) {
-				isRunning = false;
-				System.exit(0);
-			}
+	private void quit() {
+		isRunning = false;
+		systemTray.remove(trayIcon);
+		if (window != null) window.dispose();
+		if (quitAction != null) quitAction.run();
+	}
 
-			if (getValue(Action.NAME).equals("About")) {
-        		String message = app.getAppName() + " " 
-						+ app.getAppVersion() + "\n"
-						+ app.getAppAuthor() + "\n"
-						+ app.getAppCopyright();
-               
-		       	showMessageDialog(this.component, message, "About " + app.getAppName(), JOptionPane.INFORMATION_MESSAGE, icon96);	
-			}
-		}
+	private void showAbout() {
+		String message = app.getAppName() + " " 
+				+ app.getAppVersion() + "\n"
+				+ app.getAppAuthor() + "\n"
+				+ app.getAppCopyright();
+		ImageIcon icon96 = new ImageIcon(WeatherWidgetFrame.class.getResource("/Images/Widget96.png"));
+		showMessageDialog(getWindow(), message, "About " + app.getAppName(), JOptionPane.INFORMATION_MESSAGE, icon96);
 	}
-	
-	private Map<String,JDialog> dialogSet = new HashMap<String,JDialog>();
-	
-	private JDialog showMessageDialog(Component parent, String message, String title, int messageType, Icon icon) {
+
+	private JDialog showMessageDialog(JFrame parent, String message, String title, int messageType, Icon icon) {
+		if (dialogSet == null) dialogSet = new HashMap<String,JDialog>();
 		String key = message + "|" + title + "|" + messageType;
 		JDialog d = null;
 		if (dialogSet.containsKey(key)) {